@@ -0,0 +1,101 @@
+package Controller;
+
+import Model.Message;
+
+import Service.MessageSink;
+
+import io.javalin.http.Context;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * The JsonMessageStreamer class writes a page of messages to the response as a JSON array while the page is still
+ * being read, so the response never exists as a List or a String. Paging headers are set in Begin, before the first
+ * byte of the body is written. Each message is copied in from the MessageJsonCache, so hot messages are not
+ * serialized again.
+ */
+class JsonMessageStreamer implements MessageSink {
+    private final Context ctx;
+    private final int bufferSize;
+    private final MessageJsonCache jsonCache;
+    /**
+     * Link target of the next page without the cursor value, e.g. "/messages?limit=10&cursor="
+     */
+    private final String nextLink;
+    private OutputStream out;
+    private boolean first = true;
+
+    /***
+     * @param ctx the response to write to
+     * @param bufferSize bytes collected before they are handed to the response, at least the compression minimum
+     * @param jsonCache supplies the JSON of each message
+     * @param nextLink Link target of the next page, to which the cursor is appended
+     */
+    JsonMessageStreamer(Context ctx, int bufferSize, MessageJsonCache jsonCache, String nextLink)
+    {
+        this.ctx = ctx;
+        this.bufferSize = bufferSize;
+        this.jsonCache = jsonCache;
+        this.nextLink = nextLink;
+    }
+
+    @Override
+    public void Begin(String nextCursor)
+    {
+        // Telling the client where the next page starts; headers must go out before the body does
+        if(nextCursor != null)
+        {
+            ctx.header("X-Next-Cursor", nextCursor);
+            ctx.header("Link", "<" + nextLink + nextCursor + ">; rel=\"next\"");
+        }
+
+        ctx.status(200); // Success!
+        ctx.contentType("application/json");
+
+        try
+        {
+            // Collecting whole chunks, so the small writes below are cheap and compression sees a full first chunk
+            out = new BufferedOutputStream(ctx.outputStream(), bufferSize);
+            out.write('[');
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void Accept(Message message)
+    {
+        try
+        {
+            if(!first)
+                out.write(',');
+            first = false;
+
+            out.write(jsonCache.Get(message)); // Copied straight into the response buffer
+        }
+        catch(IOException e)
+        {
+            // Usually the client went away; unwinding closes the database cursor
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void End()
+    {
+        try
+        {
+            out.write(']');
+            out.close(); // Flushes, and closes the response stream
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package Controller;
+
+import Model.Message;
+import Util.AppConfig;
+import Util.CacheMetrics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * The MessageJsonCache class keeps the UTF-8 JSON of recently written messages, so that responses can copy the bytes
+ * instead of running the ObjectMapper again. Each entry remembers the message it was serialized from and is only used
+ * for an equal message, so a stale entry can never be served even if an invalidation was missed; Invalidate just
+ * frees the memory early.
+ */
+public class MessageJsonCache {
+    /**
+     * Approximate heap the cached JSON may take, in bytes
+     */
+    public static final long MAX_BYTES = AppConfig.getLong("messages.jsonCache.maxBytes", 16L * 1024 * 1024);
+
+    private final ObjectWriter writer;
+    private final Cache<Integer, Entry> entries;
+
+    /***
+     * @param om used to serialize the messages that are not cached
+     */
+    public MessageJsonCache(ObjectMapper om)
+    {
+        this.writer = om.writerFor(Message.class); // Resolved once rather than on every message
+        this.entries = Caffeine.newBuilder()
+            .maximumWeight(MAX_BYTES)
+            .weigher((Integer id, Entry entry) -> 64 + entry.json.length)
+            .recordStats()
+            .build();
+    }
+
+    /***
+     * Gets the JSON of a message, serializing and caching it if needed
+     * @param message to serialize; must not be modified afterwards
+     * @return the JSON bytes, which callers must not modify
+     * @throws JsonProcessingException
+     */
+    public byte[] Get(Message message) throws JsonProcessingException
+    {
+        Entry entry = entries.getIfPresent(message.getMessage_id());
+        if(entry != null && entry.source.equals(message))
+            return entry.json;
+
+        byte[] json = writer.writeValueAsBytes(message);
+        entries.put(message.getMessage_id(), new Entry(message, json));
+
+        return json;
+    }
+
+    /***
+     * Drops the cached JSON of a message that was updated or deleted
+     * @param id of the message
+     */
+    public void Invalidate(int id)
+    {
+        entries.invalidate(id);
+    }
+
+    /***
+     * @return the size and hit / eviction counters of the cache; the bound is in bytes
+     */
+    public CacheMetrics GetMetrics()
+    {
+        return CacheMetrics.of(entries, MAX_BYTES);
+    }
+
+    /**
+     * The JSON and the message it was made from
+     */
+    private static final class Entry {
+        final Message source;
+        final byte[] json;
+
+        Entry(Message source, byte[] json)
+        {
+            this.source = source;
+            this.json = json;
+        }
+    }
+}
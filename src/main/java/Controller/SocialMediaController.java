@@ -1,18 +1,55 @@
 package Controller;
 
 import Model.Account;
+import Model.BatchItemResult;
 import Model.Message;
 
 import Service.AccountService;
 import Service.MessageService;
 
+import Util.AppConfig;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import Util.MessageTextIndex;
+import Util.RateLimiter;
+
 import io.javalin.Javalin;
+import io.javalin.compression.Brotli;
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Gzip;
 import io.javalin.http.Context;
-
-import com.fasterxml.jackson.core.JsonProcessingException;
+import io.javalin.http.HandlerType;
+import io.javalin.http.HttpResponseException;
+import io.javalin.http.HttpStatus;
+import io.javalin.http.ServiceUnavailableResponse;
+import io.javalin.util.ConcurrencyUtil;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * TODO: You will need to write your own endpoints and handlers for your controller. The endpoints you will need can be
@@ -24,137 +61,687 @@ public class SocialMediaController {
     AccountService accountService;
     MessageService messageService;
 
+    private static final Logger LOG = LoggerFactory.getLogger(SocialMediaController.class);
+
     // Declaring an object mapper so that it can be used throughout the class
     ObjectMapper om;
 
+    // Readers and writers resolved once for each body type; they are immutable, so every request thread shares them
+    ObjectReader accountReader;
+    ObjectReader messageReader;
+    ObjectReader messageListReader;
+    ObjectWriter accountWriter;
+    ObjectWriter messageWriter;
+    ObjectWriter batchResultsWriter;
+    ObjectWriter metricsWriter;
+
+    // Left as the "message" attribute for a body of null, which an attribute can not hold; compared by identity
+    private static final Message NO_MESSAGE = new Message();
+
+    // Serialized messages, shared by the single-message and list responses
+    MessageJsonCache messageJsonCache;
+
+    // Runs the database work of the requests, so that the HTTP threads never wait on the database
+    DatabaseExecutor databaseExecutor;
+
+    // One token bucket per account for creating and updating messages; null when messages.rateLimit.perSecond is 0
+    RateLimiter writeRateLimiter;
+
+    // Bodies written as a stream are collected in chunks of this size before they reach Javalin
+    int responseBufferSize;
+
+    // Bounds the requests running at once in virtual-thread mode; platform threads are bounded by their pool instead
+    Semaphore requestPermits;
+    long requestPermitTimeoutMillis;
+
     /***
      * Default Constructor
      */
     public SocialMediaController()
     {
-        accountService = new AccountService();
-        messageService = new MessageService();
+        this(new AccountService(), new MessageService());
+    }
+
+    /***
+     * This serves the API from provided services, e.g. ones on the in-memory repositories for testing
+     * @param accountService
+     * @param messageService
+     */
+    public SocialMediaController(AccountService accountService, MessageService messageService)
+    {
+        this.accountService = accountService;
+        this.messageService = messageService;
 
         om = new ObjectMapper();
+        om.registerModule(new BlackbirdModule()); // Generated accessors instead of reflection
+
+        accountReader = om.readerFor(Account.class);
+        messageReader = om.readerFor(Message.class);
+        messageListReader = om.readerFor(new TypeReference<List<Message>>(){});
+        accountWriter = om.writerFor(Account.class);
+        messageWriter = om.writerFor(Message.class);
+        batchResultsWriter = om.writerFor(new TypeReference<List<BatchItemResult>>(){});
+        metricsWriter = om.writer();
+
+        messageJsonCache = new MessageJsonCache(om);
+
+        databaseExecutor = new DatabaseExecutor(
+            AppConfig.getInt("db.executor.threads", ConnectionUtil.getPoolStats().getMaxSize()),
+            AppConfig.getInt("db.executor.queueSize", 1024)
+        );
+
+        int writesPerSecond = AppConfig.getInt("messages.rateLimit.perSecond", 50);
+        if(writesPerSecond > 0)
+        {
+            writeRateLimiter = new RateLimiter(writesPerSecond,
+                AppConfig.getInt("messages.rateLimit.burst", writesPerSecond * 2),
+                AppConfig.getInt("messages.rateLimit.maxAccounts", 100000));
+        }
     }
 
     /**
      * In order for the test cases to work, you will need to write the endpoints in the startAPI() method, as the test
      * suite must receive a Javalin object from this method.
+     * Requests run on Jetty's pool of platform threads unless server.virtualThreads is set, in which case each
+     * request gets a virtual thread of its own (JDK 21+). Virtual threads are not bounded by a pool, so at most
+     * server.virtualThreads.maxActiveRequests of them (the connection pool size by default) go past the before-handler
+     * at once, and the rest park there until one finishes.
+     *
+     * The permit is taken for the whole request rather than around each connection borrow. A virtual thread inside a
+     * synchronized block is pinned to its carrier thread, and the caches load from the database inside one; a pinned
+     * thread parked on a permit would keep its carrier from the very thread that is to give the permit back. With as
+     * many permits as connections, nothing that holds a permit waits for a connection.
+     *
+     * Handlers parse the request on the HTTP thread and hand their database work, together with the response that
+     * depends on it, to the database executor through ctx.future. When its queue is full the request is answered
+     * with 503 right away.
+     *
+     * Responses of at least server.compression.minSize bytes are compressed for clients that accept it: with gzip,
+     * or with brotli where the client takes it and server.compression is "brotli"; "none" switches compression off.
+     *
+     * Each account may create and update messages at messages.rateLimit.perSecond, with bursts of up to
+     * messages.rateLimit.burst; past that, POST /messages and PATCH /messages/{message_id} are answered with 429 and
+     * a Retry-After before they take a permit or any database time.
      * @return a Javalin app object which defines the behavior of the Javalin controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
+        boolean virtualThreads = AppConfig.getBoolean("server.virtualThreads", false);
+
+        String compression = AppConfig.getString("server.compression", "gzip");
+        int minCompressionSize = AppConfig.getInt("server.compression.minSize", 1500);
+
+        // Javalin compresses a streamed body only if its first write reaches the minimum, so no chunk may be smaller
+        responseBufferSize = Math.max(8192, minCompressionSize);
+
+        Javalin app = Javalin.create(config -> {
+            if(virtualThreads)
+                config.jetty.server(SocialMediaController::CreateVirtualThreadServer);
+
+            config.compression.custom(CreateCompressionStrategy(compression, minCompressionSize));
+        });
+
+        if(virtualThreads)
+        {
+            // Javalin's own Loom mode, on by default whenever the JDK has virtual threads, also moves Jetty's selector
+            // and acceptor loops onto virtual threads, where they pin the carriers and starve the requests; the server
+            // built below puts only the requests on them. Javalin 5 only has the JVM-wide switch, so it is turned off
+            // while this server runs and put back as it was once it stops, for the other apps of the JVM.
+            boolean javalinLoom = ConcurrencyUtil.INSTANCE.getUseLoom();
+            app.events(events -> {
+                events.serverStarting(() -> ConcurrencyUtil.INSTANCE.setUseLoom(false));
+                events.serverStartFailed(() -> ConcurrencyUtil.INSTANCE.setUseLoom(javalinLoom));
+                events.serverStopped(() -> ConcurrencyUtil.INSTANCE.setUseLoom(javalinLoom));
+            });
+        }
+
+        // The body differs by Accept-Encoding, which shared caches have to know
+        if(!compression.equalsIgnoreCase("none"))
+            app.before(ctx -> ctx.header("Vary", "Accept-Encoding"));
+
+        if(writeRateLimiter != null)
+        {
+            app.before("/messages", this::LimitCreateMessage);
+            app.before("/messages/batch", this::LimitCreateMessages);
+            app.before("/messages/{message_id}", this::LimitUpdateMessage);
+        }
+
+        if(virtualThreads)
+        {
+            requestPermits = new Semaphore(AppConfig.getInt("server.virtualThreads.maxActiveRequests",
+                ConnectionUtil.getPoolStats().getMaxSize()), true);
+            requestPermitTimeoutMillis = AppConfig.getLong("server.virtualThreads.permitTimeoutMillis", 30000);
+
+            app.before(this::AcquireRequestPermit);
+            app.after(this::ReleaseRequestPermit);
+        }
+
+        // The database executor is full; failing fast keeps the HTTP threads free for requests it can take
+        app.exception(RejectedExecutionException.class, (e, ctx) -> ctx.status(503));
+        app.events(events -> events.serverStopped(databaseExecutor::shutdown));
         
         // All Endpoints for the application
         app.post("/register", this::ProcessRegisterAccount);
         app.post("/login", this::ProcessLoginAccount);
         
         app.post("/messages", this::ProcessCreateMessage);
+        app.post("/messages/batch", this::ProcessCreateMessages);
         app.get("/messages", this::ProcessGetAllMessages);
+        app.get("/messages/search", this::ProcessSearchMessages); // Before {message_id}, which would also match it
         app.get("/messages/{message_id}", this::ProcessGetMessageByID);
         app.delete("/messages/{message_id}", this::ProcessDeleteMessage);
         app.patch("/messages/{message_id}", this::ProcessUpdateMessage);
         app.get("/accounts/{account_id}/messages", this::ProcessGetMessagesByAccountID);
 
+        app.get("/metrics", this::ProcessGetMetrics);
+
         return app;
     }
 
+    /***
+     * Builds a Jetty server that keeps its selectors and acceptors on a pool of platform threads, sized like
+     * Javalin's default pool, and hands each request to a new virtual thread
+     * @return the server
+     */
+    private static Server CreateVirtualThreadServer()
+    {
+        QueuedThreadPool threads = new QueuedThreadPool(250, 8, 60000);
+        threads.setName("JettyServerThreadPool");
+
+        if(VirtualThreads.areSupported())
+            threads.setUseVirtualThreads(true);
+        else
+            LOG.warn("server.virtualThreads is set but this JDK has no virtual threads, using platform threads");
+
+        return new Server(threads);
+    }
+
+    /***
+     * Builds the compression settings from server.compression and its levels
+     * @param compression "gzip", "brotli" (brotli with gzip for clients without it) or "none"
+     * @param minSize smallest body that is compressed, in bytes
+     * @return the strategy for Javalin
+     */
+    private static CompressionStrategy CreateCompressionStrategy(String compression, int minSize)
+    {
+        int gzipLevel = AppConfig.getInt("server.compression.gzipLevel", 6); // 0 to 9
+        int brotliLevel = AppConfig.getInt("server.compression.brotliLevel", 4); // 0 to 11
+
+        CompressionStrategy strategy;
+        switch(compression.toLowerCase())
+        {
+            case "none":
+                return CompressionStrategy.NONE;
+            case "brotli":
+                strategy = new CompressionStrategy(new Brotli(brotliLevel), new Gzip(gzipLevel));
+                break;
+            case "gzip":
+                strategy = new CompressionStrategy(null, new Gzip(gzipLevel));
+                break;
+            default:
+                System.out.println("Invalid value for server.compression: " + compression + ", using gzip");
+                strategy = new CompressionStrategy(null, new Gzip(gzipLevel));
+                break;
+        }
+
+        strategy.setMinSizeForCompression(minSize);
+        return strategy;
+    }
+
+    /***
+     * Holds back a POST /messages from an account that has used up its writes. The body names the account, so it is
+     * read here and left for the handler as the "message" attribute. An account that does not exist gets no bucket;
+     * the handler turns the message down anyway.
+     * @param ctx
+     * @throws IOException
+     */
+    private void LimitCreateMessage(Context ctx) throws IOException
+    {
+        if(ctx.method() != HandlerType.POST)
+            return;
+
+        Message message = messageReader.readValue(ctx.bodyInputStream());
+        ctx.attribute("message", message != null ? message : NO_MESSAGE); // The body can only be read once
+
+        if(message != null && accountService.GetAccountByID(message.getPosted_by()))
+            CheckWriteRate(ctx, message.getPosted_by(), 1);
+    }
+
+    /***
+     * Holds back a POST /messages/batch when any of its posters has used up its writes. Every existing poster is
+     * charged one write per item it posts, all or none: when one of them is out, the writes already taken from the
+     * others are given back. More items than the burst need a full bucket and leave the account owing the rest, so a
+     * batch is no way around the rate. The body is left for the handler as the "messages" attribute.
+     * @param ctx
+     * @throws IOException
+     */
+    private void LimitCreateMessages(Context ctx) throws IOException
+    {
+        if(ctx.method() != HandlerType.POST)
+            return;
+
+        List<Message> messages = messageListReader.readValue(ctx.bodyInputStream());
+        ctx.attribute("messages", messages != null ? messages : List.of()); // The body can only be read once
+
+        // A batch the handler turns down as a whole costs nothing
+        if(messages == null || messages.isEmpty() || messages.size() > MessageService.MAX_BATCH_SIZE)
+            return;
+
+        Map<Integer, Integer> items = new HashMap<>();
+        for(Message message : messages)
+        {
+            if(message != null)
+                items.merge(message.getPosted_by(), 1, Integer::sum);
+        }
+        items.keySet().retainAll(accountService.GetExistingAccountIDs(items.keySet()));
+
+        List<Map.Entry<Integer, Integer>> charged = new ArrayList<>(items.size());
+        try
+        {
+            for(Map.Entry<Integer, Integer> account : items.entrySet())
+            {
+                CheckWriteRate(ctx, account.getKey(), account.getValue());
+                charged.add(account);
+            }
+        }
+        catch(HttpResponseException e)
+        {
+            for(Map.Entry<Integer, Integer> account : charged)
+                writeRateLimiter.release(account.getKey(), account.getValue());
+            throw e;
+        }
+    }
+
+    /***
+     * Holds back a PATCH /messages/{message_id} from an account that has used up its writes. The account is the
+     * message's owner, taken from the message cache, or read from the database when the message is not cached.
+     * @param ctx
+     */
+    private void LimitUpdateMessage(Context ctx)
+    {
+        if(ctx.method() != HandlerType.PATCH)
+            return;
+
+        int id;
+        try
+        {
+            id = Integer.parseInt(ctx.pathParam("message_id"));
+        }
+        catch(NumberFormatException e)
+        {
+            return; // Not a message; left for the router
+        }
+
+        Message cached = messageService.GetCachedMessageByID(id);
+        if(cached != null)
+        {
+            CheckWriteRate(ctx, cached.getPosted_by(), 1);
+            return;
+        }
+
+        OnDatabase(ctx, () -> {
+            // A message that does not exist is left for the handler to turn down
+            Message message = messageService.GetMessageByID(id);
+            if(message != null)
+                CheckWriteRate(ctx, message.getPosted_by(), 1);
+        });
+    }
+
+    /***
+     * Takes writes from the account's bucket
+     * @param ctx
+     * @param accountID
+     * @param writes
+     * @throws HttpResponseException 429, which skips the endpoint handler, when the account has too few left or no
+     * bucket could be made for it
+     */
+    private void CheckWriteRate(Context ctx, int accountID, int writes)
+    {
+        long waitNanos = writeRateLimiter.tryAcquire(accountID, writes);
+        if(waitNanos > 0)
+        {
+            ctx.header("Retry-After", Long.toString((waitNanos + 999999999) / 1000000000)); // Whole seconds, rounded up
+            throw new HttpResponseException(HttpStatus.TOO_MANY_REQUESTS.getCode(), "Too many writes from account " + accountID);
+        }
+    }
+
+    /***
+     * Waits for one of the permits of the virtual-thread mode
+     * @param ctx
+     * @throws InterruptedException
+     */
+    private void AcquireRequestPermit(Context ctx) throws InterruptedException
+    {
+        if(!requestPermits.tryAcquire(requestPermitTimeoutMillis, TimeUnit.MILLISECONDS))
+            throw new ServiceUnavailableResponse(); // Javalin answers 503 and skips the endpoint handler
+
+        ctx.attribute("requestPermit", true);
+    }
+
+    /***
+     * Gives the permit back. After-handlers also run when the before-handler gave up, which holds no permit.
+     * @param ctx
+     */
+    private void ReleaseRequestPermit(Context ctx)
+    {
+        if(ctx.attribute("requestPermit") != null)
+            requestPermits.release();
+    }
+
     /**
      * Utilizes the service to process a register request
      * @param ctx The Javalin Context object manages information about both the HTTP request and response.
-     * @throws JsonProcessingException
+     * @throws IOException
+     */
+    private void ProcessRegisterAccount(Context ctx) throws IOException
+    {
+        Account account = accountReader.readValue(ctx.bodyInputStream()); // mapping the body to an object
+
+        OnDatabase(ctx, () -> {
+            // Attempting to register an account
+            Account attemptedAccount = accountService.Register(account);
+            if(attemptedAccount != null)
+            {
+                ctx.status(200); // Success!
+                WriteJson(ctx, accountWriter, attemptedAccount); // returning the object as a JSON
+            }
+            else
+                ctx.status(400); // Failure!
+        });
+    }
+
+    /***
+     * Utilizes the service to process a login request
+     * @param ctx
+     * @throws IOException
+     */
+    private void ProcessLoginAccount(Context ctx) throws IOException
+    {
+        Account account = accountReader.readValue(ctx.bodyInputStream()); // mapping body to object
+
+        OnDatabase(ctx, () -> {
+            // Attempting to log in with the provided account
+            Account attemptedLogin = accountService.Login(account);
+
+            if(attemptedLogin != null)
+            {
+                ctx.status(200); // Success!
+                WriteJson(ctx, accountWriter, attemptedLogin); // returning the object as a JSON object
+            }
+            else
+                ctx.status(401); // Failure!
+        });
+    }
+
+    /***
+     * Utilizes the service to process a create message request
+     * @param ctx
+     * @throws IOException
      */
-    private void ProcessRegisterAccount(Context ctx) throws JsonProcessingException 
+    private void ProcessCreateMessage(Context ctx) throws IOException
     {
-        Account account = om.readValue(ctx.body(), Account.class); // mapping the body to an object
+        // Already read by the rate limit check, if there is one
+        Message message = ctx.attribute("message") != null ? ctx.attribute("message") : messageReader.readValue(ctx.bodyInputStream());
 
-        // Attempting to register an account
-        Account attemptedAccount = accountService.Register(account);
-        if(attemptedAccount != null)
+        // Check to see the account exists; there is no point in going further if it doesn't
+        if(message == null || message == NO_MESSAGE || !accountService.GetAccountByID(message.getPosted_by()))
         {
-            ctx.json(om.writeValueAsString(attemptedAccount)); // returning the object as a JSON
-            ctx.status(200); // Success!
-        }
-        else
             ctx.status(400); // Failure!
+            return;
+        }
+
+        OnDatabase(ctx, () -> {
+            // Attempt to create a new message
+            Message attemptedMessage = messageService.CreateMessage(message);
+
+            if(attemptedMessage != null)
+            {
+                ctx.status(200); // Success!
+                WriteJson(ctx, messageWriter, attemptedMessage); // writing the object to a JSON object
+            }
+            else
+                ctx.status(400); // Failure!
+        });
     }
 
     /***
-     * Utilizes the service to process a login request
+     * Utilizes the service to process a batch of new messages. Every item is validated, the valid ones are stored
+     * in a single transaction, and the response lists the outcome of each item in request order.
      * @param ctx
-     * @throws JsonProcessingException
+     * @throws IOException
      */
-    private void ProcessLoginAccount(Context ctx) throws JsonProcessingException
+    private void ProcessCreateMessages(Context ctx) throws IOException
     {
-        Account account = om.readValue(ctx.body(), Account.class); // mapping body to object
+        List<Message> messages = ctx.attribute("messages") != null ? ctx.attribute("messages") : messageListReader.readValue(ctx.bodyInputStream());
 
-        // Attempting to log in with the provided account
-        Account attemptedLogin = accountService.Login(account);
+        // An empty or oversized batch is a client error
+        if(messages == null || messages.isEmpty() || messages.size() > MessageService.MAX_BATCH_SIZE)
+        {
+            ctx.status(400); // Failure!
+            return;
+        }
 
-        if(attemptedLogin != null)
+        // Looking up every distinct poster with one query
+        Set<Integer> postedBy = new HashSet<>();
+        for(Message message : messages)
         {
-            ctx.json(om.writeValueAsString(attemptedLogin)); // returning the object as a JSON object
-            ctx.status(200); // Success!
+            if(message != null)
+                postedBy.add(message.getPosted_by());
         }
-        else
-            ctx.status(401); // Failure!
+
+        OnDatabase(ctx, () -> {
+            ArrayList<BatchItemResult> results = messageService.CreateMessages(messages, accountService.GetExistingAccountIDs(postedBy));
+
+            ctx.status(200); // Success!
+            WriteJson(ctx, batchResultsWriter, results); // returning the outcome of every item
+        });
     }
 
     /***
-     * Utilizes the service to process a create message request
+     * Gets one page of stored messages upon request. The page size comes from ?limit (capped by the server) and the
+     * starting point from either ?after_id or the opaque ?cursor handed out with the previous page. When there are
+     * more messages, the cursor of the next page is returned in the X-Next-Cursor and Link headers.
      * @param ctx
-     * @throws JsonProcessingException
+     * @throws IOException
      */
-    private void ProcessCreateMessage(Context ctx) throws JsonProcessingException
+    private void ProcessGetAllMessages(Context ctx) throws IOException
     {
-        Message message = om.readValue(ctx.body(), Message.class);
+        // Any of the time range parameters selects the time range listing
+        if(ctx.queryParam("from") != null || ctx.queryParam("to") != null || ctx.queryParam("posted_by") != null)
+        {
+            ProcessGetMessagesInTimeRange(ctx);
+            return;
+        }
 
-        // Check to see the account exists
-        if(!accountService.GetAccountByID(message.getMessage_id()))
-            ctx.status(400);
+        int limit;
+        int afterID;
 
-        // Attempt to create a new message
-        Message attemptedMessage = messageService.CreateMessage(message);
+        // Reading the paging parameters; anything malformed is a client error
+        try
+        {
+            limit = ParseIntQueryParam(ctx, "limit", MessageService.DEFAULT_PAGE_SIZE);
+            afterID = ParseIntQueryParam(ctx, "after_id", 0);
 
-        if(attemptedMessage != null)
+            String cursor = ctx.queryParam("cursor");
+            if(cursor != null)
+                afterID = messageService.DecodeMessageCursor(cursor);
+        }
+        catch(IllegalArgumentException e)
         {
-            ctx.json(om.writeValueAsString(attemptedMessage)); // writing the object to a JSON object
-            ctx.status(200); // Success!
+            ctx.status(400); // Failure!
+            return;
         }
-        else
+
+        if(limit < 1)
+        {
             ctx.status(400); // Failure!
+            return;
+        }
+
+        // Streaming the page straight from the database cursor into the response
+        JsonMessageStreamer streamer = new JsonMessageStreamer(ctx, responseBufferSize, messageJsonCache, "/messages?limit=" + limit + "&cursor=");
+        int pageAfterID = afterID;
+        int pageLimit = limit;
+        OnDatabase(ctx, () -> {
+            if(!messageService.StreamMessagesPage(pageAfterID, pageLimit, streamer))
+                throw new IOException("Reading the messages page failed"); // The body is already partly written
+        });
     }
 
     /***
-     * Gets all stored messages upon request
+     * Gets one page of the messages posted in a time range upon request, newest first. ?from (inclusive) and ?to
+     * (exclusive) bound time_posted_epoch and default to an open end; ?posted_by keeps only one account's messages.
+     * Paging works like a timeline with ?limit and ?cursor.
      * @param ctx
-     * @throws JsonProcessingException
+     * @throws IOException
      */
-    private void ProcessGetAllMessages(Context ctx) throws JsonProcessingException
+    private void ProcessGetMessagesInTimeRange(Context ctx) throws IOException
     {
-        ArrayList<Message> messages = new ArrayList<>();
+        long from;
+        long to;
+        Integer postedBy = null; // null means every account
+        int limit;
+        long[] after = null; // null means the newest page
+
+        // Reading the range and paging parameters; anything malformed is a client error
+        try
+        {
+            from = ParseLongQueryParam(ctx, "from", Long.MIN_VALUE);
+            to = ParseLongQueryParam(ctx, "to", Long.MAX_VALUE);
+            limit = ParseIntQueryParam(ctx, "limit", MessageService.DEFAULT_PAGE_SIZE);
 
-        messages = messageService.GetAllMessages(); // Gets all messages from the database
+            String postedByParam = ctx.queryParam("posted_by");
+            if(postedByParam != null && !postedByParam.isEmpty())
+                postedBy = Integer.parseInt(postedByParam);
 
-        ctx.json(om.writeValueAsString(messages)); // Return the list as a JSON object (even if it is empty)
-        ctx.status(200); // Success!
+            String cursor = ctx.queryParam("cursor");
+            if(cursor != null)
+                after = messageService.DecodeTimeRangeCursor(cursor);
+        }
+        catch(IllegalArgumentException e)
+        {
+            ctx.status(400); // Failure!
+            return;
+        }
+
+        if(limit < 1 || from > to)
+        {
+            ctx.status(400); // Failure!
+            return;
+        }
+
+        // Repeating the range in the next link so the client only has to follow it
+        StringBuilder nextLink = new StringBuilder("/messages?");
+        if(ctx.queryParam("from") != null)
+            nextLink.append("from=").append(from).append('&');
+        if(ctx.queryParam("to") != null)
+            nextLink.append("to=").append(to).append('&');
+        if(postedBy != null)
+            nextLink.append("posted_by=").append(postedBy).append('&');
+        nextLink.append("limit=").append(limit).append("&cursor=");
+
+        // Streaming the page straight from the index or the database cursor into the response
+        JsonMessageStreamer streamer = new JsonMessageStreamer(ctx, responseBufferSize, messageJsonCache, nextLink.toString());
+        Integer pagePostedBy = postedBy;
+        long pageFrom = from;
+        long pageTo = to;
+        long[] pageAfter = after;
+        int pageLimit = limit;
+        OnDatabase(ctx, () -> {
+            if(!messageService.StreamTimeRangePage(pagePostedBy, pageFrom, pageTo, pageAfter, pageLimit, streamer))
+                throw new IOException("Reading the time range page failed"); // The body is already partly written
+        });
+    }
+
+    /***
+     * Searches message text upon request. ?q holds the words that must all be in a message, with words in double
+     * quotes matched as a phrase; matches come most recent first and are paged like a timeline with ?limit and
+     * ?cursor.
+     * @param ctx
+     */
+    private void ProcessSearchMessages(Context ctx)
+    {
+        String q = ctx.queryParam("q");
+
+        int limit;
+        MessageTextIndex.Query query;
+        long[] after = null; // null means the first page
+
+        // Reading the query and paging parameters; anything missing or malformed is a client error
+        try
+        {
+            query = messageService.ParseSearchQuery(q);
+            limit = ParseIntQueryParam(ctx, "limit", MessageService.DEFAULT_PAGE_SIZE);
+
+            String cursor = ctx.queryParam("cursor");
+            if(cursor != null)
+                after = messageService.DecodeSearchCursor(cursor);
+        }
+        catch(IllegalArgumentException e)
+        {
+            ctx.status(400); // Failure!
+            return;
+        }
+
+        if(limit < 1)
+        {
+            ctx.status(400); // Failure!
+            return;
+        }
+
+        JsonMessageStreamer streamer = new JsonMessageStreamer(ctx, responseBufferSize, messageJsonCache,
+            "/messages/search?q=" + URLEncoder.encode(q, StandardCharsets.UTF_8) + "&limit=" + limit + "&cursor=");
+        MessageTextIndex.Query pageQuery = query;
+        long[] pageAfter = after;
+        int pageLimit = limit;
+        OnDatabase(ctx, () -> {
+            // Matches not in the cache are read from the database, all in one query
+            if(!messageService.StreamSearchPage(pageQuery, pageAfter, pageLimit, streamer))
+                throw new IOException("Reading the search page failed");
+        });
     }
 
     /***
-     * Gets a message by its id upon request
+     * Gets a message by its id upon request. A found message carries a weak ETag, and a request whose If-None-Match
+     * holds the current tag gets 304 Not Modified.
      * @param ctx
-     * @throws JsonProcessingException
+     * @throws IOException
      */
-    private void ProcessGetMessageByID(Context ctx) throws JsonProcessingException
+    private void ProcessGetMessageByID(Context ctx) throws IOException
     {
         int message_id = Integer.parseInt(ctx.pathParam("message_id")); // Getting the parameter with the id
 
-        Message message = messageService.GetMessageByID(message_id); // Getting the message with the id
-        
+        // The version is read before the message, so a concurrent write can only make the tag older than the body
+        String etag = "W/\"m" + message_id + "-" + messageService.GetMessageVersion(message_id) + "\"";
+        if(IsNotModified(ctx, etag))
+            return; // The client's copy is current; no query and no serialization
+
+        // A cached message is answered right here; only a miss waits for the database
+        Message cached = messageService.GetCachedMessageByID(message_id);
+        if(cached != null)
+        {
+            WriteMessage(ctx, etag, cached);
+            return;
+        }
+
+        OnDatabase(ctx, () -> WriteMessage(ctx, etag, messageService.GetMessageByID(message_id))); // Getting the message with the id
+    }
+
+    /***
+     * Answers a GET of one message
+     * @param ctx
+     * @param etag of the message
+     * @param message or null if there is none
+     * @throws IOException
+     */
+    private void WriteMessage(Context ctx, String etag, Message message) throws IOException
+    {
         // Only attaching a body if the message object is not null
         if(message != null)
-            ctx.json(om.writeValueAsString(message)); // Storing the object as a JSON object (even if it is empty)
+        {
+            ctx.header("ETag", etag); // Only tagging a message that exists
+            ctx.contentType("application/json");
+            ctx.result(messageJsonCache.Get(message)); // Reusing the cached JSON of the message
+        }
         
         ctx.status(200); // Success!
     }
@@ -162,62 +749,225 @@ public class SocialMediaController {
     /***
      * Deletes a message by its id upon request
      * @param ctx
-     * @throws JsonProcessingException
+     * @throws IOException
      */
-    private void ProcessDeleteMessage(Context ctx) throws JsonProcessingException
+    private void ProcessDeleteMessage(Context ctx) throws IOException
     {
         // Getting the id from the context
         int id = Integer.parseInt(ctx.pathParam("message_id"));
 
-        // Storing the message before it gets deleted in order to return it
-        Message messageBeforeDeleted = messageService.GetMessageByID(id);
+        OnDatabase(ctx, () -> {
+            // Deleting the message; the service hands back the row as it was before the delete
+            Message messageBeforeDeleted = messageService.DeleteMessage(id);
 
-        // Checking to see if the deletion was a success
-        if(messageService.DeleteMessage(id))
-            ctx.json(om.writeValueAsString(messageBeforeDeleted)); // Attaching the object as a JSON object
+            ctx.status(200); // Success!
 
-        ctx.status(200); // Success!
+            // Checking to see if the deletion was a success
+            if(messageBeforeDeleted != null)
+            {
+                messageJsonCache.Invalidate(id); // The cached JSON is of a message that no longer exists
+                WriteJson(ctx, messageWriter, messageBeforeDeleted); // Attaching the object as a JSON object
+            }
+        });
     }
 
     /***
      * Updates a message upon request utilizing its id
      * @param ctx
-     * @throws JsonProcessingException
+     * @throws IOException
      */
-    private void ProcessUpdateMessage(Context ctx) throws JsonProcessingException
+    private void ProcessUpdateMessage(Context ctx) throws IOException
     {
         int id = Integer.parseInt(ctx.pathParam("message_id")); // storing the id in a local variable
-        Message newMessage = om.readValue(ctx.body(), Message.class); // Retrieving the message from the body
-        
-        System.out.println("Created Variables: " + newMessage.toString());
+        Message newMessage = messageReader.readValue(ctx.bodyInputStream()); // Retrieving the message from the body
+
+        OnDatabase(ctx, () -> {
+            // Storing the updated object in a local object and calling the update method
+            Message message = messageService.UpdateMessage(id, newMessage.getMessage_text());
+
+            // Checking to see if the update was successful
+            if(message != null)
+            {
+                messageJsonCache.Invalidate(id); // The cached JSON has the old text
+                ctx.status(200); // Success!
+                WriteJson(ctx, messageWriter, message); // Writing the updated object as a JSON object
+            }
+            else
+                ctx.status(400); // Failure!
+        });
+    }
 
-        // Storing the updated object in a local object and calling the update method
-        Message message = messageService.UpdateMessage(id, newMessage.getMessage_text());
+    /***
+     * Gets one page of the messages that belong to an account upon request, newest first. Paging works like
+     * GET /messages: ?limit sets the page size and ?cursor continues from the X-Next-Cursor of the previous page.
+     * The page carries a weak ETag of the account's timeline version, answered with 304 Not Modified on If-None-Match.
+     * @param ctx
+     * @throws IOException
+     */
+    private void ProcessGetMessagesByAccountID(Context ctx) throws IOException
+    {
+        int accountID = Integer.parseInt(ctx.pathParam("account_id")); // storing the integer from the path parameter
 
-        // Checking to see if the update was successful
-        if(message != null)
+        int limit;
+        long[] after = null; // null means the newest page
+
+        // Reading the paging parameters; anything malformed is a client error
+        try
         {
-            ctx.json(om.writeValueAsString(message)); // Writing the updated object as a JSON object
-            ctx.status(200); // Success!
+            limit = ParseIntQueryParam(ctx, "limit", MessageService.DEFAULT_PAGE_SIZE);
+
+            String cursor = ctx.queryParam("cursor");
+            if(cursor != null)
+                after = messageService.DecodeTimelineCursor(cursor);
         }
-        else
-            ctx.status(400); // Failure!   
+        catch(IllegalArgumentException e)
+        {
+            ctx.status(400); // Failure!
+            return;
+        }
+
+        if(limit < 1)
+        {
+            ctx.status(400); // Failure!
+            return;
+        }
+
+        // The version is read before the page, so a concurrent write can only make the tag older than the body
+        String etag = "W/\"t" + accountID + "-" + messageService.GetTimelineVersion(accountID) + "\"";
+        if(IsNotModified(ctx, etag))
+            return; // The client's copy is current; no query and no serialization
+
+        ctx.header("ETag", etag);
+
+        // Streaming the page straight from the database cursor into the response
+        JsonMessageStreamer streamer = new JsonMessageStreamer(ctx, responseBufferSize, messageJsonCache,
+            "/accounts/" + accountID + "/messages?limit=" + limit + "&cursor=");
+        long[] pageAfter = after;
+        int pageLimit = limit;
+        OnDatabase(ctx, () -> {
+            if(!messageService.StreamTimelinePage(accountID, pageAfter, pageLimit, streamer))
+                throw new IOException("Reading the timeline page failed"); // The body is already partly written
+        });
     }
 
     /***
-     * Gets all messages that belong to an account upon request
+     * Reports the runtime counters used to size the application (connection pool, etc.)
      * @param ctx
-     * @throws JsonProcessingException
+     * @throws IOException
      */
-    private void ProcessGetMessagesByAccountID(Context ctx) throws JsonProcessingException
+    private void ProcessGetMetrics(Context ctx) throws IOException
     {
-        ArrayList<Message> messages = new ArrayList<>(); // creating an array to store the Messages in
+        Map<String, Object> metrics = new LinkedHashMap<>(); // keeping the sections in a stable order
+
+        metrics.put("connectionPool", ConnectionUtil.getPoolStats());
+        metrics.put("messageCache", messageService.GetMessageCacheMetrics());
+        metrics.put("timelineCache", messageService.GetTimelineCacheMetrics());
+        metrics.put("accountCache", accountService.GetUsernameCacheMetrics());
+        metrics.put("messageJsonCache", messageJsonCache.GetMetrics());
+        metrics.put("groupCommit", messageService.GetGroupCommitStats());
+        metrics.put("postedByIndex", messageService.GetPostedByIndexStats());
+        metrics.put("searchIndex", messageService.GetSearchIndexStats());
+        metrics.put("timeIndex", messageService.GetTimeIndexStats());
+        metrics.put("databaseExecutor", databaseExecutor.getStats());
+        metrics.put("rateLimiter", writeRateLimiter != null ? writeRateLimiter.getStats() : null);
 
-        int accountID = Integer.parseInt(ctx.pathParam("account_id")); // storing the integer from the path parameter
+        ctx.status(200); // Success!
+        WriteJson(ctx, metricsWriter, metrics);
+    }
+
+    /***
+     * Finishes a request on the database executor: the task does the database work and writes the response, and
+     * Javalin completes the request once it has run. A full queue rejects the task here, which is answered with 503.
+     * @param ctx
+     * @param task the database part of the handler and everything after it
+     */
+    private void OnDatabase(Context ctx, DatabaseExecutor.Task task)
+    {
+        ctx.future(() -> databaseExecutor.submit(task));
+    }
+
+    /***
+     * Serializes a response body straight into the response stream, without building a String or byte array first.
+     * The status must be set before, as the body may start going out while it is written.
+     * @param ctx
+     * @param writer resolved for the type of value
+     * @param value the body
+     * @throws IOException
+     */
+    private void WriteJson(Context ctx, ObjectWriter writer, Object value) throws IOException
+    {
+        ctx.contentType("application/json");
+        writer.writeValue(new BufferedOutputStream(ctx.outputStream(), responseBufferSize), value); // Closes the stream, which flushes the body
+    }
+
+    /***
+     * Answers a conditional GET with 304 Not Modified if the client already holds the current representation.
+     *
+     * The tags are weak because one version is sent as gzip, brotli or identity bodies depending on Accept-Encoding.
+     * A strong tag shared by those would claim they are byte-for-byte the same. Weak tags only claim the same
+     * content, which is all If-None-Match needs.
+     * @param ctx
+     * @param etag the current weak ETag of the resource
+     * @return true if the response is complete
+     */
+    private boolean IsNotModified(Context ctx, String etag)
+    {
+        String ifNoneMatch = ctx.header("If-None-Match");
+        if(ifNoneMatch == null)
+            return false;
+
+        // A list of tags, compared weakly as RFC 9110 asks for If-None-Match: the opaque parts alone
+        String opaque = etag.substring(2);
+        for(String candidate : ifNoneMatch.split(","))
+        {
+            String tag = candidate.trim();
+            if(tag.startsWith("W/"))
+                tag = tag.substring(2);
+
+            if(tag.equals(opaque))
+            {
+                ctx.header("ETag", etag);
+                ctx.status(304); // Not Modified
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /***
+     * Reads an optional integer query parameter
+     * @param ctx
+     * @param name of the query parameter
+     * @param defaultValue returned when the parameter is absent
+     * @return the parsed value
+     * @throws NumberFormatException if the parameter is present but not an integer
+     */
+    private int ParseIntQueryParam(Context ctx, String name, int defaultValue)
+    {
+        String value = ctx.queryParam(name);
+
+        if(value == null || value.isEmpty())
+            return defaultValue;
+
+        return Integer.parseInt(value);
+    }
+
+    /***
+     * Reads an optional long query parameter
+     * @param ctx
+     * @param name of the query parameter
+     * @param defaultValue returned when the parameter is absent
+     * @return the parsed value
+     * @throws NumberFormatException if the parameter is present but not a long
+     */
+    private long ParseLongQueryParam(Context ctx, String name, long defaultValue)
+    {
+        String value = ctx.queryParam(name);
 
-        messages = messageService.GetAllMessagesByAccountID(accountID); // Getting all the messages
+        if(value == null || value.isEmpty())
+            return defaultValue;
 
-        ctx.json(om.writeValueAsString(messages)); // writing the array of messages as a JSON object
-        ctx.status(200); // Sucess!
+        return Long.parseLong(value);
     }
-}
\ No newline at end of file
+}
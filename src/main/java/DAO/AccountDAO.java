@@ -1,185 +1,281 @@
 package DAO;
 
 import Model.Account;
+import Util.AppConfig;
+import Util.CacheMetrics;
+import Util.ConcurrentBitSet;
 import Util.ConnectionUtil;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
 import java.sql.*;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+public class AccountDAO implements AccountRepository {
+    /**
+     * Ids of every existing account, so that existence checks cost no SQL. Loaded once when the DAO is created and
+     * kept current by Register; accounts are never deleted, so nothing ever clears a bit.
+     */
+    private final ConcurrentBitSet accountIDs = new ConcurrentBitSet(1024);
+
+    /**
+     * Most usernames held by the username cache, found or not
+     */
+    public static final int USERNAME_CACHE_SIZE = AppConfig.getInt("accounts.cache.maxSize", 10000);
+    /**
+     * How long a found account stays cached
+     */
+    public static final long USERNAME_CACHE_TTL_MILLIS = AppConfig.getLong("accounts.cache.ttlMillis", 600000);
+    /**
+     * How long a username that was not found stays cached as missing. Kept short because Register is not the only
+     * way rows can appear (the test scripts insert directly).
+     */
+    public static final long USERNAME_CACHE_NEGATIVE_TTL_MILLIS = AppConfig.getLong("accounts.cache.negativeTtlMillis", 5000);
 
-public class AccountDAO {
-    private Connection connection; // local connection variable to be used throughout the class
+    /**
+     * Accounts by username, including short-lived Optional.empty() entries for usernames that do not exist, so that
+     * repeated logins and signups for the same names are answered without SQL. Register replaces the entry of the
+     * name it takes.
+     */
+    private final Cache<String, Optional<Account>> usernameCache = Caffeine.newBuilder()
+        .maximumSize(USERNAME_CACHE_SIZE)
+        .expireAfter(new Expiry<String, Optional<Account>>() {
+            @Override
+            public long expireAfterCreate(String username, Optional<Account> account, long currentTime)
+            {
+                long ttl = account.isPresent() ? USERNAME_CACHE_TTL_MILLIS : USERNAME_CACHE_NEGATIVE_TTL_MILLIS;
+                return TimeUnit.MILLISECONDS.toNanos(ttl);
+            }
+
+            @Override
+            public long expireAfterUpdate(String username, Optional<Account> account, long currentTime, long currentDuration)
+            {
+                return expireAfterCreate(username, account, currentTime);
+            }
+
+            @Override
+            public long expireAfterRead(String username, Optional<Account> account, long currentTime, long currentDuration)
+            {
+                return currentDuration; // Reads do not extend an entry
+            }
+        })
+        .recordStats()
+        .build();
 
     /***
      * Default Constructor
-     * Initializes the connection to the database
+     * Connections are borrowed from the pool per operation, so there is nothing to hold on to
      */
     public AccountDAO()
     {
-        connection = ConnectionUtil.getConnection(); // Instantiating the local connection to database via the Utility class
+        LoadAccountIDs();
     }
 
+    /**
+     * SQLState of a unique constraint violation
+     */
+    private static final String DUPLICATE_KEY_STATE = "23505";
+
     /***
-     * Registers a new user within the database
+     * Registers a new user within the database with a single INSERT. The username UNIQUE constraint decides whether
+     * the name is free, so two concurrent signups for the same name cannot both succeed.
      * @param newAccount
-     * @return null if unsuccessful and returns the user if inserted successfully
+     * @return null if the username is taken or the insert failed and returns the user (with its id) if inserted successfully
      */
+    @Override
     public Account Register(Account newAccount)
     {
-        try
-        {
-            String sql = "INSERT INTO account (username, password) VALUES (?, ?);"; // SQL for inseration
+        // A name known to be taken needs no INSERT to be refused
+        Optional<Account> known = usernameCache.getIfPresent(newAccount.getUsername());
+        if(known != null && known.isPresent())
+            return null;
 
-            // Creating the statement for SQL
-            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        String sql = "INSERT INTO account (username, password) VALUES (?, ?);"; // SQL for inseration
 
+        // Borrowing a pooled connection and its cached statement for this operation; both go back on close
+        try(Connection connection = ConnectionUtil.borrowConnection();
+            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS))
+        {
             // Setting the parameters of the query
-            ps.setString(1, newAccount.getPassword());
+            ps.setString(1, newAccount.getUsername());
             ps.setString(2, newAccount.getPassword());
 
             ps.executeUpdate(); // Inserting the record
-            ResultSet pkResultSet = ps.getGeneratedKeys(); // Getting the generated keys
-            
-            if(pkResultSet.next())
+
+            try(ResultSet pkResultSet = ps.getGeneratedKeys()) // Getting the generated keys
             {
-                int generated_account_id = (int) pkResultSet.getInt(1); // Getting the generated pk
-                // Creating an object to return with the original values + the primary key
-                
-                Account returnAccount = new Account(
-                    generated_account_id,
-                    newAccount.getUsername(),
-                    newAccount.getPassword()
-                );
-
-                return returnAccount; // Success!
+                if(pkResultSet.next())
+                {
+                    int generated_account_id = (int) pkResultSet.getInt(1); // Getting the generated pk
+                    accountIDs.set(generated_account_id); // The new account now exists for message checks
+
+                    // Creating an object to return with the original values + the primary key
+                    Account returnAccount = new Account(
+                        generated_account_id,
+                        newAccount.getUsername(),
+                        newAccount.getPassword()
+                    );
+
+                    usernameCache.put(returnAccount.getUsername(), Optional.of(returnAccount)); // Replacing any "missing" entry
+
+                    return returnAccount; // Success!
+                }
             }
 
             return newAccount; // Returning the inserted user (w/o primary key)
         }
         catch (SQLException e)
         {
-            // POTENTIAL TODO: Add Logging
-            System.out.println(e.getStackTrace());
+            // A duplicate key just means the username is taken, which is an expected outcome
+            if(!DUPLICATE_KEY_STATE.equals(e.getSQLState()))
+                System.out.println(e.toString()); // POTENTIAL TODO: Add Logging
+
             return null; // Returning null if the attempt was unsuccessful
         }
     }
 
     /***
-     * Account that authenticates that this user is able to login
+     * Account that authenticates that this user is able to login. The account is looked up by username through the
+     * username cache and the password is compared in memory, so repeated attempts for the same name cost no SQL.
      * @param account
      * @return null if invalid credentials and returns the full object if the credentials were valid
      */
+    @Override
     public Account Login(Account account)
     {
-        try
-        {
-            String sql = "SELECT * FROM account WHERE username = ? AND password = ?;"; // Prepared SQL
-
-            // Creating a statment to submit to the database
-            PreparedStatement ps = connection.prepareStatement(sql);
+        Account stored = GetAccountByUsername(account.getUsername());
 
-            // Setting the parameters of the statment
-            ps.setString(1, account.getUsername());
-            ps.setString(2, account.getPassword());
-
-            ResultSet rs = ps.executeQuery(); // Storing the results of the query in a ResultSet
-            
-            while(rs.next())
-            {
-                // Creating a new account object to return the results of the result set
-                Account accessedAccount = new Account (
-                  rs.getInt("account_id"),
-                  rs.getString("username"),
-                  rs.getString("password")  
-                );
-                
-                return accessedAccount; // Returning the first result because there will only be one match if any
-            }
-        }
-        catch(SQLException e)
-        {
-            // POTENTIAL TODO: Log this error
-            System.out.println(e.getStackTrace());
-        }
+        if(stored != null && stored.getPassword().equals(account.getPassword()))
+            return stored;
 
         return null; // No account was found
     }
 
     /***
      * Checks to see if there is an existing account with the given username
-     * @param id
+     * @param username
      * @return null if nothing was found and return the object of the record of the account if found
      */
+    @Override
     public Account GetAccountByUsername(String username)
     {
+        if(username == null)
+            return null;
+
         try
         {
-            String sql = "SELECT * FROM account WHERE username = ?;"; // SQL Statement
-
-            // Creating a prepared statement for the database
-            PreparedStatement ps = connection.prepareStatement(sql);
-
-            // Setting the parameters of the query
-            ps.setString(1, username);
-
-            // Storing the results of the query in a ResultSet
-            ResultSet rs = ps.executeQuery();
-
-            while(rs.next())
-            {
-                // Creating a new object from the result set
-                Account foundAccount = new Account(
-                    rs.getInt("account_id"),
-                    rs.getString("username"),
-                    rs.getString("password")
-                );
-
-                return foundAccount; // Returning the first account found of the first iteration since there should only be one record
-            }
+            // A miss queries once per name, even with concurrent callers, and caches the answer either way
+            return usernameCache.get(username, this::SelectAccountByUsername).orElse(null);
         }
-        catch(SQLException e)
+        catch(DataAccessException e)
         {
-            System.out.println(e.getStackTrace());
+            System.out.println(e.getCause().toString()); // Failures are not cached
         }
 
         return null; // No account with that username
     }
 
     /***
-     * Checks to see if there is an existing account with the given username
+     * Gets the account with the given id
      * @param id
      * @return null if nothing was found and return the object of the record of the account if found
      */
+    @Override
     public Account GetAccountByID(int id)
     {
+        String sql = "SELECT account_id, username, password FROM account WHERE account_id = ?;"; // SQL Statement
+
         try
         {
-            String sql = "SELECT * FROM account WHERE account_id = ?;"; // SQL Statement
+            return QueryRunner.QueryFirst(sql, ps -> ps.setInt(1, id), new AccountRowMapper());
+        }
+        catch(SQLException e)
+        {
+            System.out.println(e.toString());
+        }
 
-            // Creating a prepared statement for the database
-            PreparedStatement ps = connection.prepareStatement(sql);
+        return null; // No account with that id
+    }
 
-            // Setting the parameters of the query
-            ps.setInt(1, id);
+    /***
+     * Checks whether an account exists without touching the database
+     * @param id
+     * @return true if there is an account with that id
+     */
+    @Override
+    public boolean AccountExists(int id)
+    {
+        return accountIDs.get(id);
+    }
 
-            // Storing the results of the query in a ResultSet
-            ResultSet rs = ps.executeQuery();
+    /***
+     * Finds which of the given account ids exist, without touching the database
+     * @param ids to look up
+     * @return the subset of ids that belong to an existing account
+     */
+    @Override
+    public HashSet<Integer> GetExistingAccountIDs(Collection<Integer> ids)
+    {
+        HashSet<Integer> existing = new HashSet<>();
 
-            while(rs.next())
-            {
-                // Creating a new object from the result set
-                Account foundAccount = new Account(
-                    rs.getInt("account_id"),
-                    rs.getString("username"),
-                    rs.getString("password")
-                );
-
-                return foundAccount; // Returning the first account found of the first iteration since there should only be one record
-            }
+        for(int id : ids)
+        {
+            if(accountIDs.get(id))
+                existing.add(id);
+        }
+
+        return existing;
+    }
+
+    /***
+     * Reads every account id into the existence index
+     */
+    private void LoadAccountIDs()
+    {
+        String sql = "SELECT account_id FROM account;"; // SQL Statement
+
+        try
+        {
+            // Streaming the ids straight into the bitset rather than through a list
+            QueryRunner.QueryForEach(sql, ParameterBinder.NONE, rs -> rs.getInt(1), accountIDs::set);
         }
         catch(SQLException e)
         {
-            System.out.println(e.getStackTrace());
+            System.out.println(e.toString());
         }
+    }
 
-        return null; // No account with that username
+    /***
+     * @return the size and hit / eviction counters of the username cache
+     */
+    @Override
+    public CacheMetrics GetUsernameCacheMetrics()
+    {
+        return CacheMetrics.of(usernameCache, USERNAME_CACHE_SIZE);
+    }
+
+    /***
+     * Loads the username cache entry of one name
+     * @param username
+     * @return the account, or empty if there is none
+     * @throws DataAccessException if the query failed, so that nothing is cached
+     */
+    private Optional<Account> SelectAccountByUsername(String username)
+    {
+        String sql = "SELECT account_id, username, password FROM account WHERE username = ?;"; // SQL Statement
+
+        try
+        {
+            return Optional.ofNullable(QueryRunner.QueryFirst(sql, ps -> ps.setString(1, username), new AccountRowMapper()));
+        }
+        catch(SQLException e)
+        {
+            throw new DataAccessException(e);
+        }
     }
 }
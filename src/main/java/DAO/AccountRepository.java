@@ -0,0 +1,55 @@
+package DAO;
+
+import Model.Account;
+import Util.CacheMetrics;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Storage of accounts as the service layer sees it. AccountDAO keeps them in H2 and InMemoryAccountRepository in
+ * process memory; Repositories picks one at startup.
+ */
+public interface AccountRepository {
+    /***
+     * Stores a new account if its username is free
+     * @param newAccount
+     * @return the stored account with its generated account_id, or null if the username is taken or the insert failed
+     */
+    Account Register(Account newAccount);
+
+    /***
+     * @param account the username and password to check
+     * @return the stored account if the credentials match, otherwise null
+     */
+    Account Login(Account account);
+
+    /***
+     * @param username
+     * @return the account or null if there is none
+     */
+    Account GetAccountByUsername(String username);
+
+    /***
+     * @param id
+     * @return the account or null if there is none
+     */
+    Account GetAccountByID(int id);
+
+    /***
+     * @param id
+     * @return true if there is an account with that id
+     */
+    boolean AccountExists(int id);
+
+    /***
+     * @param ids to look up
+     * @return the subset of ids that belong to an existing account
+     */
+    Set<Integer> GetExistingAccountIDs(Collection<Integer> ids);
+
+    /***
+     * @return the counters of the repository's username cache, or null if it keeps none
+     */
+    CacheMetrics GetUsernameCacheMetrics();
+}
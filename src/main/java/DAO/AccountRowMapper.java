@@ -0,0 +1,35 @@
+package DAO;
+
+import Model.Account;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps rows of the account table to Account objects. Column positions are looked up by name on the first row only.
+ */
+public class AccountRowMapper implements RowMapper<Account> {
+    private int accountIDColumn;
+    private int usernameColumn;
+    private int passwordColumn;
+    private boolean resolved; // true once the column positions are known
+
+    @Override
+    public Account MapRow(ResultSet rs) throws SQLException
+    {
+        if(!resolved)
+        {
+            // Resolving the names once instead of on every row
+            accountIDColumn = rs.findColumn("account_id");
+            usernameColumn = rs.findColumn("username");
+            passwordColumn = rs.findColumn("password");
+            resolved = true;
+        }
+
+        return new Account(
+            rs.getInt(accountIDColumn),
+            rs.getString(usernameColumn),
+            rs.getString(passwordColumn)
+        );
+    }
+}
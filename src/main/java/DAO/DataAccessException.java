@@ -0,0 +1,22 @@
+package DAO;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps a SQLException raised where a checked exception cannot be thrown, such as inside a cache loader.
+ */
+public class DataAccessException extends RuntimeException {
+    /***
+     * @param cause the underlying database error
+     */
+    public DataAccessException(SQLException cause)
+    {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause()
+    {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,142 @@
+package DAO;
+
+import Model.Account;
+import Util.CacheMetrics;
+import Util.ConcurrentBitSet;
+import Util.SnapshotFiles;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The InMemoryAccountRepository class keeps every account in process memory, the account counterpart of
+ * InMemoryMessageRepository. The username map is the source of truth for uniqueness: putIfAbsent plays the part of
+ * the UNIQUE constraint.
+ */
+public class InMemoryAccountRepository implements AccountRepository, Snapshottable {
+    private static final int SNAPSHOT_MAGIC = 0x41434331; // "ACC1"
+
+    private final ConcurrentHashMap<String, Account> byUsername = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Account> byID = new ConcurrentHashMap<>();
+    private final ConcurrentBitSet accountIDs = new ConcurrentBitSet(1024);
+    private final AtomicInteger lastID = new AtomicInteger();
+
+    @Override
+    public Account Register(Account newAccount)
+    {
+        Account stored = new Account(lastID.incrementAndGet(), newAccount.getUsername(), newAccount.getPassword());
+
+        // Losing a race for the name costs an id, as a failed INSERT does
+        if(byUsername.putIfAbsent(stored.getUsername(), stored) != null)
+            return null;
+
+        Index(stored);
+        return stored;
+    }
+
+    @Override
+    public Account Login(Account account)
+    {
+        Account stored = GetAccountByUsername(account.getUsername());
+
+        if(stored != null && stored.getPassword().equals(account.getPassword()))
+            return stored;
+
+        return null;
+    }
+
+    @Override
+    public Account GetAccountByUsername(String username)
+    {
+        return username == null ? null : byUsername.get(username);
+    }
+
+    @Override
+    public Account GetAccountByID(int id)
+    {
+        return byID.get(id);
+    }
+
+    @Override
+    public boolean AccountExists(int id)
+    {
+        return accountIDs.get(id);
+    }
+
+    @Override
+    public HashSet<Integer> GetExistingAccountIDs(Collection<Integer> ids)
+    {
+        HashSet<Integer> existing = new HashSet<>();
+        for(int id : ids)
+        {
+            if(accountIDs.get(id))
+                existing.add(id);
+        }
+
+        return existing;
+    }
+
+    /***
+     * @return null, every lookup is already in memory
+     */
+    @Override
+    public CacheMetrics GetUsernameCacheMetrics()
+    {
+        return null;
+    }
+
+    @Override
+    public void SaveSnapshot(Path file) throws IOException
+    {
+        SnapshotFiles.save(file, SNAPSHOT_MAGIC, out -> {
+            out.writeInt(lastID.get());
+            for(Account account : byUsername.values())
+            {
+                out.writeBoolean(true); // Another account follows
+                out.writeInt(account.getAccount_id());
+                SnapshotFiles.writeString(out, account.getUsername());
+                SnapshotFiles.writeString(out, account.getPassword());
+            }
+            out.writeBoolean(false);
+        });
+    }
+
+    @Override
+    public void LoadSnapshot(Path file) throws IOException
+    {
+        int savedLastID;
+        ArrayList<Account> loaded = new ArrayList<>();
+        try(DataInputStream in = SnapshotFiles.open(file, SNAPSHOT_MAGIC))
+        {
+            savedLastID = in.readInt();
+            while(in.readBoolean())
+            {
+                loaded.add(new Account(in.readInt(), SnapshotFiles.readString(in), SnapshotFiles.readString(in)));
+            }
+        }
+
+        // Only a snapshot read to its end marker is stored
+        for(Account account : loaded)
+        {
+            byUsername.put(account.getUsername(), account);
+            Index(account);
+        }
+        lastID.accumulateAndGet(savedLastID, Math::max);
+    }
+
+    /***
+     * Makes an account that owns its username findable by id
+     */
+    private void Index(Account account)
+    {
+        byID.put(account.getAccount_id(), account);
+        accountIDs.set(account.getAccount_id());
+        lastID.accumulateAndGet(account.getAccount_id(), Math::max);
+    }
+}
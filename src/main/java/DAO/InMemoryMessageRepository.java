@@ -0,0 +1,300 @@
+package DAO;
+
+import Model.Message;
+import Util.PostedByIndex;
+import Util.SnapshotFiles;
+import Util.TimePostedIndex;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The InMemoryMessageRepository class keeps every message in process memory, for edge nodes and benchmarks that want
+ * the service layer without SQL. Messages live in a concurrent sorted map keyed by message_id, which also serves the
+ * message_id paging, a PostedByIndex serves the timelines and a TimePostedIndex serves time ranges. MessageService
+ * reads the same two indexes instead of keeping copies.
+ *
+ * Stored messages are never modified; an update replaces the message with a new object. A message is added to the
+ * map before the index and removed from the map first, so an id read from the index whose message is gone has simply
+ * been deleted and is skipped.
+ */
+public class InMemoryMessageRepository implements IndexedMessageRepository, Snapshottable {
+    private static final int SNAPSHOT_MAGIC = 0x4D534731; // "MSG1"
+
+    private final ConcurrentSkipListMap<Integer, Message> messages = new ConcurrentSkipListMap<>();
+    private final PostedByIndex byAccount = new PostedByIndex(1024);
+    private final TimePostedIndex byTime = new TimePostedIndex();
+    private final AtomicInteger lastID = new AtomicInteger();
+
+    @Override
+    public Message CreateMessage(Message message)
+    {
+        Message stored = new Message(
+            lastID.incrementAndGet(),
+            message.getPosted_by(),
+            message.getMessage_text(),
+            message.getTime_posted_epoch()
+        );
+
+        Store(stored);
+        return stored;
+    }
+
+    @Override
+    public ArrayList<Message> CreateMessages(List<Message> messages)
+    {
+        ArrayList<Message> created = new ArrayList<>(messages.size());
+        for(Message message : messages)
+            created.add(CreateMessage(message)); // Nothing here can fail part way
+
+        return created;
+    }
+
+    @Override
+    public boolean ForEachMessage(Consumer<Message> consumer)
+    {
+        messages.values().forEach(consumer);
+        return true;
+    }
+
+    @Override
+    public Integer GetPageEndAfterID(int afterID, int pageSize)
+    {
+        Iterator<Integer> following = messages.tailMap(afterID, false).keySet().iterator();
+        Integer last = null;
+        for(int i = 0; i < pageSize && following.hasNext(); i++)
+            last = following.next();
+
+        return following.hasNext() ? last : null;
+    }
+
+    @Override
+    public boolean ForEachMessageInRange(int afterID, int throughID, int limit, Consumer<Message> consumer)
+    {
+        if(afterID >= throughID)
+            return true; // An empty range
+
+        int count = 0;
+        for(Message message : messages.subMap(afterID, false, throughID, true).values())
+        {
+            if(count++ == limit)
+                break;
+            consumer.accept(message);
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean ForEachMessageWithID(int[] ids, int count, Consumer<Message> consumer)
+    {
+        int[] sorted = Arrays.copyOf(ids, count);
+        Arrays.sort(sorted);
+        for(int i = 0; i < count; i++)
+        {
+            Message message = i > 0 && sorted[i] == sorted[i - 1] ? null : messages.get(sorted[i]);
+            if(message != null)
+                consumer.accept(message);
+        }
+
+        return true;
+    }
+
+    @Override
+    public Message GetMessageByID(int id)
+    {
+        return messages.get(id);
+    }
+
+    @Override
+    public Message DeleteMessage(int id)
+    {
+        Message deleted = messages.remove(id);
+        if(deleted != null)
+        {
+            byAccount.remove(deleted.getPosted_by(), id, deleted.getTime_posted_epoch());
+            byTime.remove(id, deleted.getTime_posted_epoch());
+        }
+
+        return deleted;
+    }
+
+    @Override
+    public Message UpdateMessage(int id, String newMessage)
+    {
+        Message[] previous = new Message[1];
+
+        // posted_by and time_posted_epoch do not change, so the index needs no update
+        messages.computeIfPresent(id, (key, message) -> {
+            previous[0] = message;
+            return new Message(key, message.getPosted_by(), newMessage, message.getTime_posted_epoch());
+        });
+
+        return previous[0];
+    }
+
+    @Override
+    public PostedByIndex GetPostedByIndex()
+    {
+        return byAccount;
+    }
+
+    @Override
+    public TimePostedIndex GetTimePostedIndex()
+    {
+        return byTime;
+    }
+
+    @Override
+    public ArrayList<Message> GetAllMessagesByAccountID(int id)
+    {
+        ArrayList<Message> timeline = new ArrayList<>();
+        ForEachTimelineMessage(id, Long.MAX_VALUE, Integer.MIN_VALUE, Long.MIN_VALUE, Integer.MAX_VALUE,
+            Integer.MAX_VALUE, timeline::add);
+
+        return timeline;
+    }
+
+    @Override
+    public boolean ForEachTimelineMessage(int accountID, long afterTime, int afterID, long throughTime, int throughID,
+        int limit, Consumer<Message> consumer)
+    {
+        int chunk = Math.max(1, Math.min(limit, Math.min(256, byAccount.count(accountID))));
+        return ForEachIndexed((time, id, ids, times) -> byAccount.page(accountID, time, id, ids, times), chunk,
+            afterTime, afterID, throughTime, throughID, limit, consumer);
+    }
+
+    @Override
+    public long[] GetTimeRangePageEnd(long afterTime, int afterID, long throughTime, int throughID, int pageSize)
+    {
+        int[] ids = new int[pageSize + 1];
+        long[] times = new long[pageSize + 1];
+
+        // Only keys are needed; the message after the page must still be inside the range
+        int read = byTime.page(afterTime, afterID, ids, times);
+        if(read <= pageSize || IsPast(times[pageSize], ids[pageSize], throughTime, throughID))
+            return null;
+
+        return new long[] { times[pageSize - 1], ids[pageSize - 1] };
+    }
+
+    @Override
+    public boolean ForEachMessageInTimeRange(long afterTime, int afterID, long throughTime, int throughID, int limit,
+        Consumer<Message> consumer)
+    {
+        return ForEachIndexed(byTime::page, Math.max(1, Math.min(limit, 256)),
+            afterTime, afterID, throughTime, throughID, limit, consumer);
+    }
+
+    /**
+     * Reads keys in timeline order from one of the indexes, like PostedByIndex.page
+     */
+    private interface KeyPager {
+        int Page(long afterTime, int afterID, int[] ids, long[] times);
+    }
+
+    /***
+     * Hands the messages of a slice of an index to a callback, reading the index in chunks
+     */
+    private boolean ForEachIndexed(KeyPager pager, int chunk, long afterTime, int afterID, long throughTime,
+        int throughID, int limit, Consumer<Message> consumer)
+    {
+        int[] ids = new int[chunk];
+        long[] times = new long[chunk];
+        int delivered = 0;
+
+        // Reading the index in chunks; a deleted message leaves a gap that the next chunk fills
+        while(delivered < limit)
+        {
+            int read = pager.Page(afterTime, afterID, ids, times);
+            for(int i = 0; i < read && delivered < limit; i++)
+            {
+                if(IsPast(times[i], ids[i], throughTime, throughID))
+                    return true;
+
+                Message message = messages.get(ids[i]);
+                if(message != null)
+                {
+                    consumer.accept(message);
+                    delivered++;
+                }
+            }
+
+            if(read < chunk)
+                break; // The index ends here
+
+            afterTime = times[read - 1];
+            afterID = ids[read - 1];
+        }
+
+        return true;
+    }
+
+    /***
+     * @return true if the key sorts after the inclusive end of a slice in timeline order
+     */
+    private static boolean IsPast(long time, int id, long throughTime, int throughID)
+    {
+        return time < throughTime || (time == throughTime && id > throughID);
+    }
+
+    /***
+     * Writes every message to a snapshot file. Messages written while the snapshot is taken may or may not be in
+     * it, but each message is either fully in or out.
+     */
+    @Override
+    public void SaveSnapshot(Path file) throws IOException
+    {
+        SnapshotFiles.save(file, SNAPSHOT_MAGIC, out -> {
+            out.writeInt(lastID.get());
+            for(Message message : messages.values())
+            {
+                out.writeBoolean(true); // Another message follows
+                out.writeInt(message.getMessage_id());
+                out.writeInt(message.getPosted_by());
+                SnapshotFiles.writeString(out, message.getMessage_text());
+                out.writeLong(message.getTime_posted_epoch());
+            }
+            out.writeBoolean(false);
+        });
+    }
+
+    @Override
+    public void LoadSnapshot(Path file) throws IOException
+    {
+        int savedLastID;
+        ArrayList<Message> loaded = new ArrayList<>();
+        try(DataInputStream in = SnapshotFiles.open(file, SNAPSHOT_MAGIC))
+        {
+            savedLastID = in.readInt();
+            while(in.readBoolean())
+            {
+                loaded.add(new Message(in.readInt(), in.readInt(), SnapshotFiles.readString(in), in.readLong()));
+            }
+        }
+
+        // Only a snapshot read to its end marker is stored
+        for(Message message : loaded)
+            Store(message);
+        lastID.accumulateAndGet(savedLastID, Math::max);
+    }
+
+    /***
+     * Adds a stored message to the map and then the indexes
+     */
+    private void Store(Message message)
+    {
+        messages.put(message.getMessage_id(), message);
+        byAccount.add(message.getPosted_by(), message.getMessage_id(), message.getTime_posted_epoch());
+        byTime.add(message.getMessage_id(), message.getTime_posted_epoch());
+        lastID.accumulateAndGet(message.getMessage_id(), Math::max);
+    }
+}
@@ -0,0 +1,20 @@
+package DAO;
+
+import Util.PostedByIndex;
+import Util.TimePostedIndex;
+
+/**
+ * A message repository that keeps a posted_by index and a time index of its messages itself, current with every
+ * write it makes. MessageService reads these rather than building copies of its own.
+ */
+public interface IndexedMessageRepository extends MessageRepository {
+    /***
+     * @return the index of every stored message by account, in timeline order
+     */
+    PostedByIndex GetPostedByIndex();
+
+    /***
+     * @return the index of every stored message by time_posted_epoch
+     */
+    TimePostedIndex GetTimePostedIndex();
+}
@@ -5,16 +5,37 @@ import Util.ConnectionUtil;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
-public class MessageDAO {
-    private Connection connection; // Local instance of the connection to the database for this entire class
+public class MessageDAO implements MessageRepository {
+    /**
+     * Columns of the message table in the order MessageRowMapper expects them
+     */
+    private static final String SELECT_MESSAGE = "SELECT message_id, posted_by, message_text, time_posted_epoch ";
+
+    /**
+     * Seeks message_posted_by_time_idx and reads it in order, so timeline queries need no sort. H2 only skips the
+     * sort when the ORDER BY starts with the index's leading column, hence the redundant posted_by.
+     */
+    private static final String TIMELINE_FROM = "FROM message USE INDEX (message_posted_by_time_idx) WHERE posted_by = ? ";
+    private static final String TIMELINE_ORDER = "ORDER BY posted_by, time_posted_epoch DESC, message_id ";
+
+    /**
+     * Every message in timeline order, read from the (time_posted_epoch DESC, message_id) index so that a time
+     * range is one index range scan with no sort
+     */
+    private static final String TIME_RANGE_FROM = "FROM message USE INDEX (message_time_idx) "
+        + "WHERE time_posted_epoch <= ? AND (time_posted_epoch < ? OR message_id > ?) "
+        + "AND time_posted_epoch >= ? AND (time_posted_epoch > ? OR message_id <= ?) ";
+    private static final String TIME_RANGE_ORDER = "ORDER BY time_posted_epoch DESC, message_id ";
 
     /***
      * Default Constructor
+     * Connections are borrowed from the pool per operation, so there is nothing to hold on to
      */
     public MessageDAO()
     {
-        connection = ConnectionUtil.getConnection(); // Initializing the connection variable with the util class
     }
 
     /***
@@ -22,15 +43,15 @@ public class MessageDAO {
      * @param message
      * @return null if unsuccessful insertion and return the provided message if successful insertion occurred
      */
+    @Override
     public Message CreateMessage(Message message)
     {
-        try
-        {
-            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);"; // SQL Statment
-
-            // Prepared statement for the sql query to be executed through on the database
-            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);"; // SQL Statment
 
+        // Borrowing a pooled connection and its cached statement for this operation; both go back on close
+        try(Connection connection = ConnectionUtil.borrowConnection();
+            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS))
+        {
             // Setting the parameters of the prepared statment
             ps.setInt(1, message.getPosted_by());
             ps.setString(2, message.getMessage_text());
@@ -38,19 +59,20 @@ public class MessageDAO {
 
             ps.executeUpdate(); // Executing the query on the database
 
-            ResultSet pkeyResultSet = ps.getGeneratedKeys();
-
-            if(pkeyResultSet.next())
+            try(ResultSet pkeyResultSet = ps.getGeneratedKeys())
             {
-                int generated_message_id = (int) pkeyResultSet.getInt(1);
-                Message returnMessage = new Message(
-                generated_message_id,
-                message.getPosted_by(),
-                message.getMessage_text(),
-                message.getTime_posted_epoch()
-            );
-
-            return returnMessage;
+                if(pkeyResultSet.next())
+                {
+                    int generated_message_id = (int) pkeyResultSet.getInt(1);
+                    Message returnMessage = new Message(
+                        generated_message_id,
+                        message.getPosted_by(),
+                        message.getMessage_text(),
+                        message.getTime_posted_epoch()
+                    );
+
+                    return returnMessage;
+                }
             }
         }
         catch(SQLException e)
@@ -63,175 +85,392 @@ public class MessageDAO {
     }
 
     /***
-     * Gets all messages stored in the database and returns them as a list
-     * @return
+     * Inserts several messages with one JDBC batch in a single transaction. Either every message is stored or, if
+     * any insert fails, none of them are.
+     * @param messages to insert, already validated
+     * @return the stored messages with their generated ids in the same order, or null if the batch failed
+     */
+    @Override
+    public ArrayList<Message> CreateMessages(List<Message> messages)
+    {
+        String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);"; // SQL Statment
+
+        try(Connection connection = ConnectionUtil.borrowConnection())
+        {
+            connection.setAutoCommit(false); // One transaction (and one commit) for the whole batch
+
+            try(PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS))
+            {
+                // Queuing every insert on the statement
+                for(Message message : messages)
+                {
+                    ps.setInt(1, message.getPosted_by());
+                    ps.setString(2, message.getMessage_text());
+                    ps.setLong(3, message.getTime_posted_epoch());
+                    ps.addBatch();
+                }
+
+                ps.executeBatch(); // Sending the whole batch to the database
+
+                ArrayList<Message> created = new ArrayList<>(messages.size());
+
+                // The generated keys come back in the order the rows were added
+                try(ResultSet pkeyResultSet = ps.getGeneratedKeys())
+                {
+                    for(Message message : messages)
+                    {
+                        if(!pkeyResultSet.next())
+                            throw new SQLException("Missing generated key for batch row " + created.size());
+
+                        created.add(new Message(
+                            pkeyResultSet.getInt(1),
+                            message.getPosted_by(),
+                            message.getMessage_text(),
+                            message.getTime_posted_epoch()
+                        ));
+                    }
+                }
+
+                connection.commit();
+                return created;
+            }
+            catch(SQLException e)
+            {
+                connection.rollback(); // Nothing from a failed batch is kept
+                throw e;
+            }
+        }
+        catch(SQLException e)
+        {
+            // POTENTIAL TODO: Log the stack trace
+            System.out.println(e.toString());
+        }
+
+        return null; // Unsuccessful batch
+    }
+
+    /***
+     * Hands every stored message to a callback, one row at a time, without building a list
+     * @param consumer called once per message in message_id order
+     * @return false if the scan failed part way through
      */
-    public ArrayList<Message> GetAllMessages()
+    @Override
+    public boolean ForEachMessage(Consumer<Message> consumer)
     {
-        ArrayList<Message> messages = new ArrayList<>(); // List to hold all of the messages stored in the database
+        String sql = SELECT_MESSAGE + "FROM message ORDER BY message_id;"; // SQL Statement
 
         try
         {
-            String sql = "SELECT * FROM message;"; // SQL Statement
+            QueryRunner.QueryForEach(sql, ParameterBinder.NONE, new MessageRowMapper(), consumer);
+            return true;
+        }
+        catch (SQLException e)
+        {
+            // POTENTIAL TODO: Log this
+            System.out.println(e.toString());
+        }
+
+        return false;
+    }
 
-            PreparedStatement ps = connection.prepareStatement(sql); // Creating a statement to execute on the database
+    /***
+     * Finds where a page of messages in message_id order ends, reading only the primary key index. Knowing the end
+     * up front lets a page be streamed with its next cursor already known.
+     * @param afterID the last message_id the caller has already seen
+     * @param pageSize number of messages on the page
+     * @return the message_id of the last message on the page if more messages follow it, or null if this is the last page
+     */
+    @Override
+    public Integer GetPageEndAfterID(int afterID, int pageSize)
+    {
+        // The page's last row and the row after it, if any
+        String sql = "SELECT message_id FROM message WHERE message_id > ? ORDER BY message_id LIMIT 2 OFFSET ?;"; // SQL Statement
 
-            ResultSet rs = ps.executeQuery(); // Executing query and storing the results
+        try
+        {
+            ArrayList<Integer> ids = QueryRunner.QueryList(sql, ps -> {
+                ps.setInt(1, afterID);
+                ps.setInt(2, pageSize - 1);
+            }, rs -> rs.getInt(1));
 
-            // Iterating through the results and adding objects to the list of type Message
-            while(rs.next())
-            {
-                // Adding a new object to the array list
-                messages.add(new Message(
-                    rs.getInt("message_id"),
-                    rs.getInt("posted_by"),
-                    rs.getString("message_text"),
-                    rs.getLong("time_posted_epoch")
-                ));
-            }
+            return ids.size() == 2 ? ids.get(0) : null;
         }
         catch (SQLException e)
         {
             // POTENTIAL TODO: Log this
-            System.out.println(e.getStackTrace());
+            System.out.println(e.toString());
         }
 
-        return messages; // Returns the list of all messages (will be empty if nothing was found)
+        return null; // Treated as the last page
     }
 
     /***
-     * Gets a message by its id
-     * @return
-     * @param id of the message to retrieve
+     * Hands the messages of a message_id range to a callback one row at a time
+     * @param afterID exclusive lower bound
+     * @param throughID inclusive upper bound
+     * @param limit maximum number of messages
+     * @param consumer called once per message in message_id order
+     * @return false if the scan failed
      */
-    public Message GetMessageByID(int id)
+    @Override
+    public boolean ForEachMessageInRange(int afterID, int throughID, int limit, Consumer<Message> consumer)
     {
+        String sql = SELECT_MESSAGE + "FROM message WHERE message_id > ? AND message_id <= ? "
+            + "ORDER BY message_id LIMIT ?;"; // SQL Statement
+
         try
         {
-            String sql = "SELECT * FROM message WHERE message_id = ?;"; // SQL Statement
+            QueryRunner.QueryForEach(sql, ps -> {
+                ps.setInt(1, afterID);
+                ps.setInt(2, throughID);
+                ps.setInt(3, limit);
+            }, new MessageRowMapper(), consumer);
+            return true;
+        }
+        catch (SQLException e)
+        {
+            // POTENTIAL TODO: Log this
+            System.out.println(e.toString());
+        }
 
-            PreparedStatement ps = connection.prepareStatement(sql); // Creating a statement to execute on the database
+        return false;
+    }
+
+    /***
+     * Hands the messages with any of a set of ids to a callback one row at a time, with one query
+     * @param ids message ids, in any order; ids with no message are skipped
+     * @param count number of ids used from the start of the array
+     * @param consumer called once per message in message_id order
+     * @return false if the query failed
+     */
+    @Override
+    public boolean ForEachMessageWithID(int[] ids, int count, Consumer<Message> consumer)
+    {
+        if(count == 0)
+            return true; // Nothing to read
 
-            // Setting the parameters of the query
-            ps.setInt(1, id);
+        // One array parameter rather than IN (?, ?, ...), so every set of ids shares one cached statement; H2 looks
+        // each one up in the primary key index
+        String sql = SELECT_MESSAGE + "FROM message WHERE message_id = ANY(?) ORDER BY message_id;"; // SQL Statement
 
-            ResultSet rs = ps.executeQuery(); // Executing query and storing the results
+        Integer[] boxed = new Integer[count];
+        for(int i = 0; i < count; i++)
+            boxed[i] = ids[i];
 
-            while(rs.next())
-            {
-                // Creating a message object from the result set to return
-                Message message = new Message(
-                    id,
-                    rs.getInt("posted_by"),
-                    rs.getString("message_text"),
-                    rs.getLong("time_posted_epoch")
-                );
-
-                return message; // Returning the first message found (it should be the only one with that id)
-            }
+        try
+        {
+            QueryRunner.QueryForEach(sql, ps -> ps.setObject(1, boxed), new MessageRowMapper(), consumer);
+            return true;
         }
         catch (SQLException e)
         {
             // POTENTIAL TODO: Log this
-            System.out.println(e.getStackTrace());
+            System.out.println(e.toString());
         }
 
-        return null; // Returns null if nothing was found
+        return false;
     }
 
     /***
-     * Deletes a message by its id
+     * Gets a message by its id
      * @return
-     * @param id of the message to delete
+     * @param id of the message to retrieve
      */
-    public boolean DeleteMessage(int id)
+    @Override
+    public Message GetMessageByID(int id)
     {
+        String sql = SELECT_MESSAGE + "FROM message WHERE message_id = ?;"; // SQL Statement
+
         try
         {
-            String sql = "DELETE FROM message WHERE message_id = ?;"; // SQL Statement
-
-            PreparedStatement ps = connection.prepareStatement(sql); // Creating a statement to execute on the database
+            // Cached per connection, so this is only a bind and an execute
+            return QueryRunner.QueryFirst(sql, ps -> ps.setInt(1, id), new MessageRowMapper());
+        }
+        catch (SQLException e)
+        {
+            // POTENTIAL TODO: Log this
+            System.out.println(e.toString());
+        }
 
-            // Setting the parameters of the query
-            ps.setInt(1, id);
+        return null; // Returns null if nothing was found
+    }
 
-            int rowsAffected = ps.executeUpdate(); // Executing the query
+    /***
+     * Deletes a message by its id and returns the row as it was before the delete, in one statement
+     * @return the deleted message or null if there was nothing to delete
+     * @param id of the message to delete
+     */
+    @Override
+    public Message DeleteMessage(int id)
+    {
+        // OLD TABLE exposes the deleted rows, so there is no need to read the message first
+        String sql = SELECT_MESSAGE + "FROM OLD TABLE (DELETE FROM message WHERE message_id = ?);"; // SQL Statement
 
-            if(rowsAffected > 0)
-                return true; // True if the value was deleted
-            else
-                return false; // False if there was nothing to delete
+        try
+        {
+            return QueryRunner.QueryFirst(sql, ps -> ps.setInt(1, id), new MessageRowMapper());
         }
         catch (SQLException e)
         {
             // POTENTIAL TODO: Log this
-            System.out.println(e.getStackTrace());
+            System.out.println(e.toString());
         }
 
-        return false;
+        return null; // Nothing to delete
     }
 
     /***
-     * Updates a message of a given id to a provided new message
+     * Updates the text of a message and returns the row as it was before, in one statement
      * @param id
      * @param newMessage
-     * @return
+     * @return the message before the update or null if there is no message with that id
      */
+    @Override
     public Message UpdateMessage(int id, String newMessage)
     {
+        // OLD TABLE exposes the rows as they were before the update, so there is no need to read the message first
+        String sql = SELECT_MESSAGE + "FROM OLD TABLE (UPDATE message SET message_text = ? WHERE message_id = ?);"; // SQL Statment
+
         try
         {
-            String sql = "UPDATE message SET message_text = ? WHERE message_id = ?;"; // SQL Statment
+            return QueryRunner.QueryFirst(sql, ps -> {
+                ps.setString(1, newMessage);
+                ps.setInt(2, id);
+            }, new MessageRowMapper());
+        }
+        catch(SQLException e)
+        {
+            // POTENTIAL TODO: Log this
+            System.out.println(e.toString());
+        }
 
-            PreparedStatement ps = connection.prepareStatement(sql); // Creating a statment to execute on the database
+        return null; // No message to update
+    }
 
-            // Setting the parameters of the query
-            ps.setString(1, newMessage);
-            ps.setInt(2, id);
+    /***
+     * Gets all messages posted by an account, newest first
+     * @param id of the account
+     * @return the account's messages (empty if there are none)
+     */
+    @Override
+    public ArrayList<Message> GetAllMessagesByAccountID(int id)
+    {
+        String sql = SELECT_MESSAGE + TIMELINE_FROM + TIMELINE_ORDER + ";"; // SQL Statement
 
-            ps.executeUpdate(); // Executing the query
+        try
+        {
+            return QueryRunner.QueryList(sql, ps -> ps.setInt(1, id), new MessageRowMapper());
+        }
+        catch (SQLException e)
+        {
+            // POTENTIAL TODO: Log this
+            System.out.println(e.toString());
+        }
+
+        return new ArrayList<>(); // Nothing could be read
+    }
+
+    /***
+     * Hands the messages of a slice of an account's timeline to a callback one row at a time. The slice starts
+     * after (afterTime, afterID) and ends at (throughTime, throughID) inclusive, in timeline order.
+     * @param accountID of the poster
+     * @param afterTime exclusive start (Long.MAX_VALUE to start at the newest message)
+     * @param afterID exclusive start (Integer.MIN_VALUE to start at the newest message)
+     * @param throughTime inclusive end (Long.MIN_VALUE to run to the oldest message)
+     * @param throughID inclusive end (Integer.MAX_VALUE to run to the oldest message)
+     * @param limit maximum number of messages
+     * @param consumer called once per message, newest first
+     * @return false if the scan failed
+     */
+    @Override
+    public boolean ForEachTimelineMessage(int accountID, long afterTime, int afterID, long throughTime, int throughID,
+        int limit, Consumer<Message> consumer)
+    {
+        String sql = SELECT_MESSAGE + TIMELINE_FROM
+            + "AND time_posted_epoch <= ? AND (time_posted_epoch < ? OR message_id > ?) "
+            + "AND time_posted_epoch >= ? AND (time_posted_epoch > ? OR message_id <= ?) "
+            + TIMELINE_ORDER + "LIMIT ?;"; // SQL Statement
 
-            return GetMessageByID(id); // Returning the updated object by getting it by ID
+        try
+        {
+            QueryRunner.QueryForEach(sql, ps -> {
+                ps.setInt(1, accountID);
+                ps.setLong(2, afterTime);
+                ps.setLong(3, afterTime);
+                ps.setInt(4, afterID);
+                ps.setLong(5, throughTime);
+                ps.setLong(6, throughTime);
+                ps.setInt(7, throughID);
+                ps.setInt(8, limit);
+            }, new MessageRowMapper(), consumer);
+            return true;
         }
-        catch(SQLException e)
+        catch (SQLException e)
         {
             // POTENTIAL TODO: Log this
-            System.out.println(e.getStackTrace());
+            System.out.println(e.toString());
         }
-        
-        return null; // No message to update
+
+        return false;
     }
 
     /***
-     * Gets all messages stored in the database and returns them as a list
-     * @return
+     * Finds where a page of a time range ends, reading only the keys of two rows from the time index
+     * @param afterTime exclusive start (Long.MAX_VALUE to start at the newest message)
+     * @param afterID exclusive start (Integer.MIN_VALUE to start at the newest message)
+     * @param throughTime inclusive end (Long.MIN_VALUE to run to the oldest message)
+     * @param throughID inclusive end (Integer.MAX_VALUE to run to the oldest message)
+     * @param pageSize number of messages on the page
+     * @return the key of the last message on the page if more of the range follows it, or null
      */
-    public ArrayList<Message> GetAllMessagesByAccountID(int id)
+    @Override
+    public long[] GetTimeRangePageEnd(long afterTime, int afterID, long throughTime, int throughID, int pageSize)
     {
-        ArrayList<Message> messages = new ArrayList<>(); // List to hold all of the messages stored in the database
+        // The page's last key and the key after it, if any
+        String sql = "SELECT time_posted_epoch, message_id " + TIME_RANGE_FROM
+            + TIME_RANGE_ORDER + "LIMIT 2 OFFSET ?;"; // SQL Statement
 
         try
         {
-            String sql = "SELECT * FROM message WHERE message_id = ?;"; // SQL Statement
+            ArrayList<long[]> keys = QueryRunner.QueryList(sql, ps -> {
+                BindTimeRange(ps, afterTime, afterID, throughTime, throughID);
+                ps.setInt(7, pageSize - 1);
+            }, rs -> new long[] { rs.getLong(1), rs.getInt(2) });
 
-            PreparedStatement ps = connection.prepareStatement(sql); // Creating a statement to execute on the database
+            return keys.size() == 2 ? keys.get(0) : null;
+        }
+        catch (SQLException e)
+        {
+            // POTENTIAL TODO: Log this
+            System.out.println(e.toString());
+        }
 
-            // Setting the parameters of the query
-            ps.setInt(1, id);
+        return null; // Treated as the last page
+    }
 
-            ResultSet rs = ps.executeQuery(); // Executing query and storing the results
+    /***
+     * Hands the messages of a time range to a callback one row at a time, newest first
+     * @param afterTime exclusive start (Long.MAX_VALUE to start at the newest message)
+     * @param afterID exclusive start (Integer.MIN_VALUE to start at the newest message)
+     * @param throughTime inclusive end (Long.MIN_VALUE to run to the oldest message)
+     * @param throughID inclusive end (Integer.MAX_VALUE to run to the oldest message)
+     * @param limit maximum number of messages
+     * @param consumer called once per message
+     * @return false if the scan failed
+     */
+    @Override
+    public boolean ForEachMessageInTimeRange(long afterTime, int afterID, long throughTime, int throughID, int limit,
+        Consumer<Message> consumer)
+    {
+        String sql = SELECT_MESSAGE + TIME_RANGE_FROM + TIME_RANGE_ORDER + "LIMIT ?;"; // SQL Statement
 
-            // Iterating through the results and adding objects to the list of type Message
-            while(rs.next())
-            {
-                // Adding a new object to the array list
-                messages.add(new Message(
-                    rs.getInt("message_id"),
-                    rs.getInt("posted_by"),
-                    rs.getString("message_text"),
-                    rs.getLong("time_posted_epoch")
-                ));
-            }
+        try
+        {
+            QueryRunner.QueryForEach(sql, ps -> {
+                BindTimeRange(ps, afterTime, afterID, throughTime, throughID);
+                ps.setInt(7, limit);
+            }, new MessageRowMapper(), consumer);
+            return true;
         }
         catch (SQLException e)
         {
@@ -239,6 +478,20 @@ public class MessageDAO {
             System.out.println(e.toString());
         }
 
-        return messages; // Returns the list of all messages (will be empty if nothing was found)
+        return false;
+    }
+
+    /***
+     * Binds the six parameters of TIME_RANGE_FROM
+     */
+    private static void BindTimeRange(PreparedStatement ps, long afterTime, int afterID, long throughTime, int throughID)
+        throws SQLException
+    {
+        ps.setLong(1, afterTime);
+        ps.setLong(2, afterTime);
+        ps.setInt(3, afterID);
+        ps.setLong(4, throughTime);
+        ps.setLong(5, throughTime);
+        ps.setInt(6, throughID);
     }
 }
@@ -0,0 +1,190 @@
+package DAO;
+
+import Model.Message;
+import Util.GroupCommitStats;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The MessageGroupCommitter class turns concurrent single-message inserts into shared transactions. Callers queue
+ * their message and wait; one writer thread collects whatever arrives within the flush interval (or until the batch
+ * is full), inserts it with CreateMessages of the repository and commits once, then wakes every caller of that batch. A
+ * caller is only answered after the commit that holds its message, so acknowledged messages are durable exactly as
+ * they are with one commit per insert.
+ *
+ * With a flush interval of 0 the writer never waits: a batch is whatever queued up while the previous batch was
+ * committing, so batches grow with load on their own. If a batch fails, its messages are retried one at a time so
+ * that one bad row cannot fail the others.
+ */
+public class MessageGroupCommitter {
+    private final MessageRepository messageDAO;
+    private final long flushIntervalNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+    private final AtomicLong totalCommitNanos = new AtomicLong();
+    private final AtomicLong maxCommitNanos = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /***
+     * Starts the writer thread
+     * @param messageDAO performs the inserts
+     * @param flushIntervalMillis longest a message waits for others to join its batch
+     * @param maxBatchSize a batch is flushed as soon as it has this many messages
+     */
+    public MessageGroupCommitter(MessageRepository messageDAO, long flushIntervalMillis, int maxBatchSize)
+    {
+        this.messageDAO = messageDAO;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, flushIntervalMillis));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+
+        Thread writer = new Thread(this::Run, "message-group-commit");
+        writer.setDaemon(true); // Only ever waiting on the queue when the application stops
+        writer.start();
+    }
+
+    /***
+     * Queues a message and waits until the transaction holding it has committed
+     * @param message to insert, already validated
+     * @return the stored message with its generated id, or null if it could not be stored
+     */
+    public Message CreateMessage(Message message)
+    {
+        Pending pending = new Pending(message);
+        queue.add(pending);
+
+        return pending.result.join();
+    }
+
+    /***
+     * @return a snapshot of the batch and commit counters
+     */
+    public GroupCommitStats GetStats()
+    {
+        long batchCount = batches.get();
+        return new GroupCommitStats(
+            true,
+            TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos),
+            maxBatchSize,
+            queue.size(),
+            batchCount,
+            messages.get(),
+            largestBatch.get(),
+            batchCount == 0 ? 0 : totalCommitNanos.get() / batchCount / 1000,
+            maxCommitNanos.get() / 1000,
+            fallbacks.get()
+        );
+    }
+
+    /***
+     * The writer loop: one batch per iteration
+     */
+    private void Run()
+    {
+        ArrayList<Pending> batch = new ArrayList<>(maxBatchSize);
+
+        while(true)
+        {
+            try
+            {
+                batch.add(queue.take()); // Sleeping until there is work
+
+                // Letting the batch fill until it is full or the first message has waited long enough
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while(batch.size() < maxBatchSize)
+                {
+                    if(queue.drainTo(batch, maxBatchSize - batch.size()) > 0)
+                        continue;
+
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if(next == null)
+                        break;
+
+                    batch.add(next);
+                }
+
+                Flush(batch);
+            }
+            catch(InterruptedException e)
+            {
+                Fail(batch);
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch(Throwable e)
+            {
+                // Never leaving a caller waiting, whatever went wrong, Errors included: the thread lives on for the
+                // next batch, as a dead writer would leave every later caller blocked in join() for good
+                System.out.println(e.toString()); // POTENTIAL TODO: Log this
+                Fail(batch);
+            }
+            finally
+            {
+                batch.clear();
+            }
+        }
+    }
+
+    /***
+     * Inserts and commits one batch, then answers its callers
+     */
+    private void Flush(ArrayList<Pending> batch)
+    {
+        ArrayList<Message> toInsert = new ArrayList<>(batch.size());
+        for(Pending pending : batch)
+            toInsert.add(pending.message);
+
+        long start = System.nanoTime();
+        ArrayList<Message> created = messageDAO.CreateMessages(toInsert); // One transaction, one commit
+        long elapsed = System.nanoTime() - start;
+
+        batches.incrementAndGet();
+        messages.addAndGet(batch.size());
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+        totalCommitNanos.addAndGet(elapsed);
+        maxCommitNanos.accumulateAndGet(elapsed, Math::max);
+
+        if(created != null)
+        {
+            for(int i = 0; i < batch.size(); i++)
+                batch.get(i).result.complete(created.get(i));
+            return;
+        }
+
+        // The whole batch was rolled back; inserting one at a time so only the bad rows fail
+        fallbacks.incrementAndGet();
+        for(Pending pending : batch)
+            pending.result.complete(messageDAO.CreateMessage(pending.message));
+    }
+
+    /***
+     * Answers every caller of the batch that is still waiting with null, the same as a failed insert
+     */
+    private void Fail(ArrayList<Pending> batch)
+    {
+        for(Pending pending : batch)
+            pending.result.complete(null);
+    }
+
+    /**
+     * A queued message and the caller waiting for it
+     */
+    private static final class Pending {
+        final Message message;
+        final CompletableFuture<Message> result = new CompletableFuture<>();
+
+        Pending(Message message)
+        {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package DAO;
+
+import Model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage of messages as the service layer sees it. MessageDAO keeps them in H2 and InMemoryMessageRepository in
+ * process memory; Repositories picks one at startup.
+ *
+ * Every method reports failure through its return value (null, false or an empty list) rather than an exception.
+ * Timeline order is time_posted_epoch descending, then message_id ascending.
+ */
+public interface MessageRepository {
+    /***
+     * Stores a new message
+     * @param message
+     * @return the stored message with its generated message_id, or null if it could not be stored
+     */
+    Message CreateMessage(Message message);
+
+    /***
+     * Stores several messages, all or none
+     * @param messages to insert, already validated
+     * @return the stored messages with their generated ids in the same order, or null if none were stored
+     */
+    ArrayList<Message> CreateMessages(List<Message> messages);
+
+    /***
+     * Hands every message to a callback one at a time, without building a list
+     * @param consumer called once per message in message_id order
+     * @return false if the scan failed part way through
+     */
+    boolean ForEachMessage(Consumer<Message> consumer);
+
+    /***
+     * Finds where a page of messages in message_id order ends
+     * @param afterID the last message_id already seen
+     * @param pageSize number of messages on the page
+     * @return the message_id of the last message on the page if more messages follow it, or null if this is the last page
+     */
+    Integer GetPageEndAfterID(int afterID, int pageSize);
+
+    /***
+     * Hands the messages of a message_id range to a callback one at a time
+     * @param afterID exclusive lower bound
+     * @param throughID inclusive upper bound
+     * @param limit maximum number of messages
+     * @param consumer called once per message in message_id order
+     * @return false if the scan failed
+     */
+    boolean ForEachMessageInRange(int afterID, int throughID, int limit, Consumer<Message> consumer);
+
+    /***
+     * Hands the stored messages among a set of ids to a callback one at a time, with a single read
+     * @param ids message ids, in any order; ids with no message are skipped
+     * @param count number of ids used from the start of the array
+     * @param consumer called once per stored message in message_id order
+     * @return false if the read failed
+     */
+    boolean ForEachMessageWithID(int[] ids, int count, Consumer<Message> consumer);
+
+    /***
+     * @param id
+     * @return the message or null if there is none
+     */
+    Message GetMessageByID(int id);
+
+    /***
+     * @param id
+     * @return the message as it was before it was deleted, or null if there was no such message
+     */
+    Message DeleteMessage(int id);
+
+    /***
+     * @param id
+     * @param newMessage the new message_text
+     * @return the message as it was before the update, or null if there was no such message
+     */
+    Message UpdateMessage(int id, String newMessage);
+
+    /***
+     * @param id of the poster
+     * @return every message of the account in timeline order
+     */
+    ArrayList<Message> GetAllMessagesByAccountID(int id);
+
+    /***
+     * Hands a slice of an account's timeline to a callback one message at a time. The slice starts after
+     * (afterTime, afterID) and ends at (throughTime, throughID) inclusive.
+     * @param accountID of the poster
+     * @param afterTime exclusive start (Long.MAX_VALUE to start at the newest message)
+     * @param afterID exclusive start (Integer.MIN_VALUE to start at the newest message)
+     * @param throughTime inclusive end (Long.MIN_VALUE to run to the oldest message)
+     * @param throughID inclusive end (Integer.MAX_VALUE to run to the oldest message)
+     * @param limit maximum number of messages
+     * @param consumer called once per message in timeline order
+     * @return false if the scan failed
+     */
+    boolean ForEachTimelineMessage(int accountID, long afterTime, int afterID, long throughTime, int throughID,
+        int limit, Consumer<Message> consumer);
+
+    /***
+     * Finds where a page of the messages of a time range ends. The range is a slice of all messages in timeline
+     * order, time_posted_epoch descending then message_id ascending, from after (afterTime, afterID) through
+     * (throughTime, throughID).
+     * @param afterTime exclusive start (Long.MAX_VALUE to start at the newest message)
+     * @param afterID exclusive start (Integer.MIN_VALUE to start at the newest message)
+     * @param throughTime inclusive end (Long.MIN_VALUE to run to the oldest message)
+     * @param throughID inclusive end (Integer.MAX_VALUE to run to the oldest message)
+     * @param pageSize number of messages on the page
+     * @return the (time_posted_epoch, message_id) of the last message on the page if more messages of the range
+     *         follow it, or null if this is the last page
+     */
+    long[] GetTimeRangePageEnd(long afterTime, int afterID, long throughTime, int throughID, int pageSize);
+
+    /***
+     * Hands the messages of a time range to a callback one at a time, bounded like GetTimeRangePageEnd
+     * @param afterTime exclusive start (Long.MAX_VALUE to start at the newest message)
+     * @param afterID exclusive start (Integer.MIN_VALUE to start at the newest message)
+     * @param throughTime inclusive end (Long.MIN_VALUE to run to the oldest message)
+     * @param throughID inclusive end (Integer.MAX_VALUE to run to the oldest message)
+     * @param limit maximum number of messages
+     * @param consumer called once per message, newest first
+     * @return false if the scan failed
+     */
+    boolean ForEachMessageInTimeRange(long afterTime, int afterID, long throughTime, int throughID, int limit,
+        Consumer<Message> consumer);
+}
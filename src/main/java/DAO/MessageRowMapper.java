@@ -0,0 +1,39 @@
+package DAO;
+
+import Model.Message;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps rows of the message table (or any query selecting its four columns) to Message objects. Column positions
+ * are looked up by name on the first row only.
+ */
+public class MessageRowMapper implements RowMapper<Message> {
+    private int messageIDColumn;
+    private int postedByColumn;
+    private int messageTextColumn;
+    private int timePostedColumn;
+    private boolean resolved; // true once the column positions are known
+
+    @Override
+    public Message MapRow(ResultSet rs) throws SQLException
+    {
+        if(!resolved)
+        {
+            // Resolving the names once instead of on every row
+            messageIDColumn = rs.findColumn("message_id");
+            postedByColumn = rs.findColumn("posted_by");
+            messageTextColumn = rs.findColumn("message_text");
+            timePostedColumn = rs.findColumn("time_posted_epoch");
+            resolved = true;
+        }
+
+        return new Message(
+            rs.getInt(messageIDColumn),
+            rs.getInt(postedByColumn),
+            rs.getString(messageTextColumn),
+            rs.getLong(timePostedColumn)
+        );
+    }
+}
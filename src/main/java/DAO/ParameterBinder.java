@@ -0,0 +1,21 @@
+package DAO;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Sets the parameters of a prepared statement before it is executed.
+ */
+@FunctionalInterface
+public interface ParameterBinder {
+    /**
+     * Binds nothing, for statements without parameters
+     */
+    ParameterBinder NONE = ps -> { };
+
+    /***
+     * @param ps the statement to bind
+     * @throws SQLException
+     */
+    void Bind(PreparedStatement ps) throws SQLException;
+}
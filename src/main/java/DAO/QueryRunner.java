@@ -0,0 +1,119 @@
+package DAO;
+
+import Util.AppConfig;
+import Util.ConnectionUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The QueryRunner class holds the borrow / prepare / bind / execute / map / close sequence that every DAO query
+ * shares, so the DAOs only supply the SQL, how to bind it and how to map a row.
+ *
+ * QueryList and QueryFirst build their whole result before returning. QueryForEach hands rows over one at a time
+ * while the cursor is open, so a large scan never holds more than one row in memory; it runs with H2's lazy query
+ * execution so the database does not materialize the result either.
+ */
+public class QueryRunner {
+    /**
+     * Rows the driver is asked to fetch per round trip
+     */
+    public static final int FETCH_SIZE = AppConfig.getInt("dao.fetchSize", 256);
+
+    private static final String LAZY_ON = "SET LAZY_QUERY_EXECUTION TRUE";
+    private static final String LAZY_OFF = "SET LAZY_QUERY_EXECUTION FALSE";
+
+    /***
+     * Runs a query and maps every row
+     * @param sql the query
+     * @param binder sets the parameters
+     * @param mapper a fresh mapper for this query
+     * @return all mapped rows in result order
+     * @throws SQLException
+     */
+    public static <T> ArrayList<T> QueryList(String sql, ParameterBinder binder, RowMapper<T> mapper) throws SQLException
+    {
+        ArrayList<T> rows = new ArrayList<>();
+
+        try(Connection connection = ConnectionUtil.borrowConnection();
+            PreparedStatement ps = connection.prepareStatement(sql))
+        {
+            binder.Bind(ps);
+
+            try(ResultSet rs = ps.executeQuery())
+            {
+                while(rs.next())
+                    rows.add(mapper.MapRow(rs));
+            }
+        }
+
+        return rows;
+    }
+
+    /***
+     * Runs a query and maps its first row
+     * @param sql the query
+     * @param binder sets the parameters
+     * @param mapper a fresh mapper for this query
+     * @return the first mapped row or null if there were no rows
+     * @throws SQLException
+     */
+    public static <T> T QueryFirst(String sql, ParameterBinder binder, RowMapper<T> mapper) throws SQLException
+    {
+        try(Connection connection = ConnectionUtil.borrowConnection();
+            PreparedStatement ps = connection.prepareStatement(sql))
+        {
+            binder.Bind(ps);
+
+            try(ResultSet rs = ps.executeQuery())
+            {
+                return rs.next() ? mapper.MapRow(rs) : null;
+            }
+        }
+    }
+
+    /***
+     * Runs a query and hands each row to a callback while the cursor is open
+     * @param sql the query
+     * @param binder sets the parameters
+     * @param mapper a fresh mapper for this query
+     * @param consumer called once per row, in result order
+     * @throws SQLException
+     */
+    public static <T> void QueryForEach(String sql, ParameterBinder binder, RowMapper<T> mapper,
+        Consumer<? super T> consumer) throws SQLException
+    {
+        try(Connection connection = ConnectionUtil.borrowConnection())
+        {
+            SetLazy(connection, LAZY_ON);
+
+            try(PreparedStatement ps = connection.prepareStatement(sql))
+            {
+                ps.setFetchSize(FETCH_SIZE);
+                binder.Bind(ps);
+
+                try(ResultSet rs = ps.executeQuery())
+                {
+                    while(rs.next())
+                        consumer.accept(mapper.MapRow(rs));
+                }
+            }
+            finally
+            {
+                SetLazy(connection, LAZY_OFF);
+            }
+        }
+    }
+
+    private static void SetLazy(Connection connection, String sql) throws SQLException
+    {
+        try(PreparedStatement ps = connection.prepareStatement(sql))
+        {
+            ps.execute();
+        }
+    }
+}
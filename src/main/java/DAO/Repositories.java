@@ -0,0 +1,147 @@
+package DAO;
+
+import Util.AppConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Repositories class picks the storage engine the services run on, once, from the storage.engine setting:
+ * "h2" (the default) for the DAOs or "memory" for the in-memory repositories.
+ *
+ * In memory mode, setting storage.memory.snapshotDir makes the repositories load messages.snapshot and
+ * accounts.snapshot from that directory when they are created, save them every storage.memory.snapshotIntervalMillis
+ * and save them once more when the JVM shuts down. A snapshot that cannot be read is kept as <name>.corrupt.
+ */
+public class Repositories {
+    /**
+     * "h2" or "memory"
+     */
+    public static final String ENGINE = AppConfig.getString("storage.engine", "h2");
+    /**
+     * Directory of the in-memory snapshots; empty keeps the in-memory engine purely in memory
+     */
+    public static final String SNAPSHOT_DIR = AppConfig.getString("storage.memory.snapshotDir", "");
+    /**
+     * Time between two snapshots
+     */
+    public static final long SNAPSHOT_INTERVAL_MILLIS = AppConfig.getLong("storage.memory.snapshotIntervalMillis", 60000);
+
+    private static ScheduledExecutorService snapshotScheduler; // Created with the first snapshotting repository
+
+    /***
+     * @return true if the in-memory engine is selected
+     */
+    public static boolean IsInMemory()
+    {
+        return "memory".equalsIgnoreCase(ENGINE);
+    }
+
+    /***
+     * @return a message repository on the selected engine
+     */
+    public static MessageRepository CreateMessageRepository()
+    {
+        if(!IsInMemory())
+            return new MessageDAO();
+
+        InMemoryMessageRepository repository = new InMemoryMessageRepository();
+        EnableSnapshots(repository, "messages.snapshot");
+        return repository;
+    }
+
+    /***
+     * @return an account repository on the selected engine
+     */
+    public static AccountRepository CreateAccountRepository()
+    {
+        if(!IsInMemory())
+            return new AccountDAO();
+
+        InMemoryAccountRepository repository = new InMemoryAccountRepository();
+        EnableSnapshots(repository, "accounts.snapshot");
+        return repository;
+    }
+
+    /***
+     * Restores a repository from its snapshot, if there is one, and schedules its saves
+     * @param repository
+     * @param fileName within SNAPSHOT_DIR
+     */
+    private static void EnableSnapshots(Snapshottable repository, String fileName)
+    {
+        if(SNAPSHOT_DIR.isEmpty())
+            return;
+
+        Path file = Paths.get(SNAPSHOT_DIR, fileName);
+        LoadSnapshot(repository, file);
+
+        Runnable save = () -> {
+            try
+            {
+                repository.SaveSnapshot(file);
+            }
+            catch(IOException e)
+            {
+                System.out.println("Could not save " + file + ": " + e.toString()); // POTENTIAL TODO: Add Logging
+            }
+        };
+
+        SnapshotScheduler().scheduleWithFixedDelay(save, SNAPSHOT_INTERVAL_MILLIS, SNAPSHOT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(save, "snapshot-" + fileName));
+    }
+
+    /***
+     * Restores a repository from its snapshot, if there is one. A snapshot that cannot be read is moved aside to
+     * <file>.corrupt before the repository starts empty, so that the first save does not overwrite the only copy.
+     * @param repository
+     * @param file
+     * @throws UncheckedIOException if the unreadable snapshot cannot be moved aside; starting would lose it
+     */
+    static void LoadSnapshot(Snapshottable repository, Path file)
+    {
+        if(!Files.exists(file))
+            return;
+
+        try
+        {
+            repository.LoadSnapshot(file);
+        }
+        catch(IOException e)
+        {
+            Path corrupt = file.resolveSibling(file.getFileName() + ".corrupt");
+            System.out.println("Could not load " + file + ", moving it to " + corrupt + ": " + e.toString()); // POTENTIAL TODO: Add Logging
+
+            try
+            {
+                Files.move(file, corrupt, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch(IOException moveFailure)
+            {
+                moveFailure.addSuppressed(e);
+                throw new UncheckedIOException("Could not move unreadable snapshot " + file + " aside", moveFailure);
+            }
+        }
+    }
+
+    private static synchronized ScheduledExecutorService SnapshotScheduler()
+    {
+        if(snapshotScheduler == null)
+        {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "repository-snapshots");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return snapshotScheduler;
+    }
+}
@@ -0,0 +1,20 @@
+package DAO;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Turns the current row of a ResultSet into an object. A mapper instance is used for one query only, which lets it
+ * resolve column indexes on the first row and reuse them for every following row.
+ * @param <T> the type each row becomes
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    /***
+     * Maps the row the ResultSet is currently positioned on
+     * @param rs positioned on a row; the mapper must not move it
+     * @return the mapped object
+     * @throws SQLException
+     */
+    T MapRow(ResultSet rs) throws SQLException;
+}
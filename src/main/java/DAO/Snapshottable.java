@@ -0,0 +1,25 @@
+package DAO;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * An in-memory repository whose contents can be written to and read back from a file, so that it survives a
+ * restart. Repositories schedules the saves.
+ */
+public interface Snapshottable {
+    /***
+     * Writes the current contents to a file, replacing it atomically
+     * @param file
+     * @throws IOException
+     */
+    void SaveSnapshot(Path file) throws IOException;
+
+    /***
+     * Replaces the contents with those of a file written by SaveSnapshot. The file is read to its end before anything
+     * is stored, so a file that cannot be read changes nothing.
+     * @param file
+     * @throws IOException if the file cannot be read, was not written by this repository or is cut short
+     */
+    void LoadSnapshot(Path file) throws IOException;
+}
@@ -0,0 +1,78 @@
+package Model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * This is a class that models the outcome of one item of a batch request. Items are reported in the order they were
+ * submitted, so index matches the position of the item in the request array.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+    /**
+     * Position of the item in the request array
+     */
+    private int index;
+    /**
+     * HTTP-style status of this item: 200 if it was stored, 400 if it was invalid, 500 if the insert failed
+     */
+    private int status;
+    /**
+     * The stored message including its generated message_id, only present on success
+     */
+    private Message message;
+    /**
+     * Why the item was not stored, only present on failure
+     */
+    private String error;
+
+    /***
+     * Creates the result of an item that was stored
+     * @param index
+     * @param message including its generated message_id
+     * @return the result
+     */
+    public static BatchItemResult Created(int index, Message message)
+    {
+        return new BatchItemResult(index, 200, message, null);
+    }
+
+    /***
+     * Creates the result of an item that was not stored
+     * @param index
+     * @param status 400 for invalid items, 500 for failed inserts
+     * @param error description of the problem
+     * @return the result
+     */
+    public static BatchItemResult Failed(int index, int status, String error)
+    {
+        return new BatchItemResult(index, status, null, error);
+    }
+
+    private BatchItemResult(int index, int status, Message message, String error)
+    {
+        this.index = index;
+        this.status = status;
+        this.message = message;
+        this.error = error;
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public int getStatus()
+    {
+        return status;
+    }
+
+    public Message getMessage()
+    {
+        return message;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+}
@@ -1,24 +1,29 @@
 package Service;
 
 import Model.Account;
-import DAO.AccountDAO;
+import DAO.AccountRepository;
+import DAO.Repositories;
+import Util.CacheMetrics;
+
+import java.util.Collection;
+import java.util.Set;
 
 public class AccountService {
-    private AccountDAO accountDAO; // Private instance of the DAO to be used throughout the class
+    private AccountRepository accountDAO; // The DAO, or whichever repository was selected at startup
 
     /***
      * Default Constructor
      */
     public AccountService()
     {
-        accountDAO = new AccountDAO(); // Intializing the DAO
+        accountDAO = Repositories.CreateAccountRepository(); // Intializing the DAO (H2 unless configured otherwise)
     }
 
     /***
      * This is for when an accountDAO is provided for Mock data
      * @param accountDAO
      */
-    public AccountService(AccountDAO accountDAO)
+    public AccountService(AccountRepository accountDAO)
     {
         this.accountDAO = accountDAO;
     }
@@ -31,13 +36,11 @@ public class AccountService {
     public Account Register(Account account)
     {
         // Making sure the user provided valid account info
-        if(account.getUsername() == "" || account.getPassword().length() < 4)
-            return null;
-
-        // Making sure that their username is unique
-        if(accountDAO.GetAccountByUsername(account.getUsername()) != null)
+        if(account.getUsername() == null || account.getUsername().isBlank()
+            || account.getPassword() == null || account.getPassword().length() < 4)
             return null;
 
+        // The insert itself enforces a unique username, so there is no separate lookup (or race) here
         return accountDAO.Register(account); // Returning the result of the registration
     }
 
@@ -48,6 +51,9 @@ public class AccountService {
      */
     public Account Login(Account account)
     {
+        if(account.getUsername() == null || account.getPassword() == null)
+            return null;
+
         return accountDAO.Login(account);
     }
 
@@ -58,10 +64,25 @@ public class AccountService {
      */
     public boolean GetAccountByID(int id)
     {
-        // Checking to see if the account exists
-        if(accountDAO.GetAccountByID(id) != null)
-            return true;
-        
-        return false;
+        // Checking to see if the account exists (answered from memory, no query)
+        return accountDAO.AccountExists(id);
+    }
+
+    /***
+     * Checks which of several account ids exist
+     * @param ids
+     * @return the ids that belong to an existing account
+     */
+    public Set<Integer> GetExistingAccountIDs(Collection<Integer> ids)
+    {
+        return accountDAO.GetExistingAccountIDs(ids);
+    }
+
+    /***
+     * @return the size and hit / eviction counters of the username cache
+     */
+    public CacheMetrics GetUsernameCacheMetrics()
+    {
+        return accountDAO.GetUsernameCacheMetrics();
     }
 }
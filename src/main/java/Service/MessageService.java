@@ -1,28 +1,182 @@
 package Service;
 
+import Model.BatchItemResult;
 import Model.Message;
-import DAO.MessageDAO;
+import DAO.MessageGroupCommitter;
+import DAO.MessageRepository;
+import DAO.IndexedMessageRepository;
+import DAO.Repositories;
+import Util.AppConfig;
+import Util.CacheMetrics;
+import Util.ConcurrentBitSet;
+import Util.GroupCommitStats;
+import Util.MessageTextIndex;
+import Util.PageCursor;
+import Util.PostedByIndex;
+import Util.PostedByIndexStats;
+import Util.SearchIndexStats;
+import Util.TimePostedIndex;
+import Util.TimePostedIndexStats;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class MessageService {
-    MessageDAO messageDAO; // Creating an instance of the DAO
+    /**
+     * Page size used when the client does not ask for one
+     */
+    public static final int DEFAULT_PAGE_SIZE = AppConfig.getInt("messages.page.defaultSize", 100);
+    /**
+     * Largest page the server will return no matter what the client asks for
+     */
+    public static final int MAX_PAGE_SIZE = AppConfig.getInt("messages.page.maxSize", 1000);
+    /**
+     * Most messages accepted by one batch request
+     */
+    public static final int MAX_BATCH_SIZE = AppConfig.getInt("messages.batch.maxSize", 1000);
+
+    /**
+     * Most messages held by the message-by-id cache
+     */
+    public static final int MESSAGE_CACHE_SIZE = AppConfig.getInt("messages.cache.maxSize", 10000);
+
+    /**
+     * Whether single message creates share transactions through a MessageGroupCommitter
+     */
+    public static final boolean GROUP_COMMIT = AppConfig.getBoolean("messages.groupCommit.enabled", false);
+    /**
+     * Longest a created message waits for others to join its transaction. At 0 a batch is whatever queued up while
+     * the previous one was committing, which adds no latency when the server is idle.
+     */
+    public static final long GROUP_COMMIT_INTERVAL_MILLIS = AppConfig.getLong("messages.groupCommit.flushIntervalMillis", 0);
+    /**
+     * Most messages per group-commit transaction
+     */
+    public static final int GROUP_COMMIT_MAX_BATCH = AppConfig.getInt("messages.groupCommit.maxBatchSize", 64);
+
+    MessageRepository messageDAO; // The DAO, or whichever repository was selected at startup
+
+    /**
+     * Batches concurrent creates into one transaction; null when group commit is off
+     */
+    private final MessageGroupCommitter groupCommitter;
+
+    /**
+     * Read-through cache in front of GetMessageByID of the repository. Caffeine's W-TinyLFU admission keeps the messages
+     * that are read often even when a scan of one-off ids passes through. Writes go to the database first and then
+     * replace or drop the entry, so a read never sees a message older than the last completed write.
+     */
+    private final Cache<Integer, Message> messageCache = Caffeine.newBuilder()
+        .maximumSize(MESSAGE_CACHE_SIZE)
+        .recordStats()
+        .build();
+
+    /**
+     * Newest messages of recently read accounts, kept current by every write below
+     */
+    private final TimelineCache timelineCache;
+
+    /**
+     * The ids of every account's messages in timeline order, loaded once and kept in sync by every create and
+     * delete below (or the repository's own, if it keeps one). It tells where a timeline page ends, or that it is
+     * empty, without a query.
+     */
+    private final PostedByIndex postedByIndex;
+
+    /**
+     * Threads that tokenize messages while the search index is loaded at startup
+     */
+    public static final int SEARCH_LOAD_THREADS = AppConfig.getInt("search.index.loadThreads",
+        Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Terms of every message's text, loaded with the posted_by index and kept in sync by every write below
+     */
+    private final MessageTextIndex searchIndex = new MessageTextIndex();
+
+    /**
+     * The ids of every message by time_posted_epoch, kept while the message cache is enabled: a time range page is
+     * then found without a query, and served without one when its messages are all cached. A repository that keeps
+     * its own is always used. Otherwise null when the cache is off, in which case time ranges are read from the
+     * database's time index.
+     */
+    private final TimePostedIndex timeIndex;
+
+    /**
+     * False when the two indexes above belong to the repository, which then keeps them in sync itself
+     */
+    private final boolean ownIndexes;
+
+    /**
+     * Counters shared by the keys of each version tracker
+     */
+    public static final int VERSION_SLOTS = AppConfig.getInt("versions.slots", 65536);
+
+    /**
+     * Versions of single messages and of account timelines, bumped after every write below has reached the
+     * database and the caches
+     */
+    private final VersionTracker messageVersions = new VersionTracker(VERSION_SLOTS);
+    private final VersionTracker timelineVersions = new VersionTracker(VERSION_SLOTS);
+
+    /**
+     * Locks shared by the message ids, rounded up to a power of two
+     */
+    public static final int WRITE_LOCK_STRIPES = AppConfig.getInt("messages.writeLocks", 256);
+
+    /**
+     * Serializes the updates and deletes of each message id, from the database write through the indexes and
+     * caches, and the publication of a new message to those, so that they apply the writes of one message in the
+     * order the database did. ReentrantLocks rather than monitors, which would pin a virtual thread to its carrier
+     * across the database call.
+     */
+    private final ReentrantLock[] writeLocks = NewWriteLocks(WRITE_LOCK_STRIPES);
+
+    /**
+     * Ids whose message has reached the indexes and caches. A new message is committed before its creator takes the
+     * lock to publish it, so a delete can come in between; it finds the id unpublished and leaves a tombstone, and
+     * the creator then publishes nothing rather than index a message that is gone.
+     */
+    private final ConcurrentBitSet published = new ConcurrentBitSet(1024);
+    private final Set<Integer> deletedUnpublished = ConcurrentHashMap.newKeySet();
 
     /***
      * Default Constructor
      */
     public MessageService()
     {
-        messageDAO = new MessageDAO(); // Initializing the DAO
+        this(Repositories.CreateMessageRepository()); // Initializing the DAO (H2 unless configured otherwise)
     }
 
     /***
      * This intializes the DAO to a provided one for Mock data and testing
      * @param messageDAO
      */
-    public MessageService(MessageDAO messageDAO)
+    public MessageService(MessageRepository messageDAO)
     {
         this.messageDAO = messageDAO; // Initializing the DAO to the provided arguement
+
+        // A repository that indexes its messages itself shares those indexes rather than have them built twice
+        IndexedMessageRepository indexed = messageDAO instanceof IndexedMessageRepository
+            ? (IndexedMessageRepository) messageDAO
+            : null;
+        ownIndexes = indexed == null;
+        postedByIndex = indexed != null ? indexed.GetPostedByIndex() : new PostedByIndex(1024);
+        timeIndex = indexed != null ? indexed.GetTimePostedIndex() : MESSAGE_CACHE_SIZE > 0 ? new TimePostedIndex() : null;
+
+        timelineCache = new TimelineCache(messageDAO);
+        LoadIndexes();
+        groupCommitter = GROUP_COMMIT
+            ? new MessageGroupCommitter(messageDAO, GROUP_COMMIT_INTERVAL_MILLIS, GROUP_COMMIT_MAX_BATCH)
+            : null;
     }
 
     /***
@@ -33,19 +187,128 @@ public class MessageService {
     public Message CreateMessage(Message message)
     {
         // Checking to see if the message is valid
-        if(message.getMessage_text() == "" || message.getMessage_text().length() > 255)
+        if(!IsValidMessageText(message.getMessage_text()))
             return null;
 
-        return messageDAO.CreateMessage(message);
+        // With group commit the call returns once the shared transaction holding this message has committed
+        Message created = groupCommitter != null
+            ? groupCommitter.CreateMessage(message)
+            : messageDAO.CreateMessage(message);
+        if(created != null)
+            Publish(created);
+
+        return created;
+    }
+
+    /***
+     * Validates and stores several messages at once. Invalid items are reported and skipped; the valid ones are
+     * inserted together in one transaction.
+     * @param messages in request order
+     * @param existingAccountIDs ids of the accounts that exist among the messages' posted_by values
+     * @return one result per message, in request order
+     */
+    public ArrayList<BatchItemResult> CreateMessages(List<Message> messages, Set<Integer> existingAccountIDs)
+    {
+        BatchItemResult[] results = new BatchItemResult[messages.size()];
+        ArrayList<Message> valid = new ArrayList<>();
+        ArrayList<Integer> validIndexes = new ArrayList<>();
+
+        // Validating every item in one pass
+        for(int i = 0; i < messages.size(); i++)
+        {
+            Message message = messages.get(i);
+
+            if(message == null)
+                results[i] = BatchItemResult.Failed(i, 400, "message is missing");
+            else if(!IsValidMessageText(message.getMessage_text()))
+                results[i] = BatchItemResult.Failed(i, 400, "message_text must be non-blank and at most 255 characters");
+            else if(!existingAccountIDs.contains(message.getPosted_by()))
+                results[i] = BatchItemResult.Failed(i, 400, "posted_by does not refer to an existing account");
+            else
+            {
+                valid.add(message);
+                validIndexes.add(i);
+            }
+        }
+
+        if(!valid.isEmpty())
+        {
+            ArrayList<Message> created = messageDAO.CreateMessages(valid);
+
+            for(int i = 0; i < validIndexes.size(); i++)
+            {
+                int index = validIndexes.get(i);
+
+                if(created != null)
+                {
+                    results[index] = BatchItemResult.Created(index, created.get(i));
+                    Publish(created.get(i));
+                }
+                else
+                    results[index] = BatchItemResult.Failed(index, 500, "batch insert failed");
+            }
+        }
+
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /***
+     * Checks the message_text rules: not blank and not over 255 characters
+     * @param text
+     * @return true if the text can be stored
+     */
+    private boolean IsValidMessageText(String text)
+    {
+        return text != null && !text.isBlank() && text.length() <= 255;
+    }
+
+    /***
+     * Streams one page of messages in message_id order to a sink as the rows are read. The end of the page is looked
+     * up first, on the primary key alone, so the sink learns the next cursor before the first message arrives.
+     * @param afterID the last message_id the client has already seen (0 for the first page)
+     * @param limit requested page size, clamped to MAX_PAGE_SIZE
+     * @param sink receives the cursor and then the messages
+     * @return false if reading the page failed part way, in which case End is not called
+     */
+    public boolean StreamMessagesPage(int afterID, int limit, MessageSink sink)
+    {
+        int pageSize = ClampPageSize(limit);
+
+        Integer lastID = messageDAO.GetPageEndAfterID(afterID, pageSize); // null when this is the last page
+        sink.Begin(lastID == null ? null : PageCursor.encode(lastID));
+
+        // The range alone bounds the page: a message created since the lookup is sent rather than cut off, because
+        // a cut-off message would sit before the cursor and never be seen
+        int throughID = lastID == null ? Integer.MAX_VALUE : lastID;
+        if(!messageDAO.ForEachMessageInRange(afterID, throughID, Integer.MAX_VALUE, sink::Accept))
+            return false;
+
+        sink.End();
+        return true;
     }
 
     /***
-     * Retrieves all stored messages
-     * @return a list of all the Message objects
+     * Decodes a cursor handed out by StreamMessagesPage
+     * @param cursor
+     * @return the message_id the next page starts after
+     * @throws IllegalArgumentException if the cursor is malformed
      */
-    public ArrayList<Message> GetAllMessages()
+    public int DecodeMessageCursor(String cursor)
     {
-        return messageDAO.GetAllMessages();
+        return (int) PageCursor.decode(cursor, 1)[0];
+    }
+
+    /***
+     * Keeps a requested page size within the server limits
+     * @param limit
+     * @return a page size between 1 and MAX_PAGE_SIZE
+     */
+    private int ClampPageSize(int limit)
+    {
+        if(limit < 1)
+            return 1;
+
+        return Math.min(limit, MAX_PAGE_SIZE);
     }
 
     /***
@@ -55,17 +318,58 @@ public class MessageService {
      */
     public Message GetMessageByID(int id)
     {
-        return messageDAO.GetMessageByID(id);
+        // A miss loads from the DAO once per id, even with concurrent readers; a missing message is not cached
+        return messageCache.get(id, messageDAO::GetMessageByID);
+    }
+
+    /***
+     * Looks a message up in the message cache only, never in the DAO
+     * @param id
+     * @return the cached message, or null if it is not cached, which does not mean that it does not exist
+     */
+    public Message GetCachedMessageByID(int id)
+    {
+        return messageCache.getIfPresent(id);
     }
 
     /***
      * Deletes a message by its id
      * @param id
-     * @return true or false if the message was deleted or not
+     * @return the message as it was before it was deleted, or null if there was no such message
      */
-    public boolean DeleteMessage(int id)
+    public Message DeleteMessage(int id)
     {
-        return messageDAO.DeleteMessage(id);
+        ReentrantLock lock = WriteLock(id);
+        lock.lock();
+        try
+        {
+            Message deleted = messageDAO.DeleteMessage(id);
+            messageCache.invalidate(id); // After the delete, so a concurrent load cannot put the old row back
+            if(deleted != null)
+            {
+                // The removals below are no-ops for a message not published yet; its creator is told to skip it
+                if(published.get(id))
+                    published.clear(id);
+                else
+                    deletedUnpublished.add(id);
+
+                if(ownIndexes)
+                {
+                    postedByIndex.remove(deleted.getPosted_by(), deleted.getMessage_id(), deleted.getTime_posted_epoch());
+                    if(timeIndex != null)
+                        timeIndex.remove(deleted.getMessage_id(), deleted.getTime_posted_epoch());
+                }
+                searchIndex.remove(deleted.getMessage_id(), deleted.getMessage_text());
+                timelineCache.Deleted(deleted);
+                BumpVersions(deleted);
+            }
+
+            return deleted;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /***
@@ -77,23 +381,482 @@ public class MessageService {
     public Message UpdateMessage(int id, String newMessage)
     {
         // Checking to see if the message is valid
-        if(newMessage == "" || newMessage.length() > 255)
+        if(!IsValidMessageText(newMessage))
             return null;
 
-        // Making sure the ID already exists and there is an object
-        if(messageDAO.GetMessageByID(id) == null)
-            return null;
+        ReentrantLock lock = WriteLock(id);
+        lock.lock();
+        try
+        {
+            // The update hands back the row as it was, whose text the search index is keyed by
+            Message previous = messageDAO.UpdateMessage(id, newMessage);
+
+            // Dropping the cached copy rather than putting the new row: the next read loads whatever the database
+            // holds, even if the cache was loaded from before the update while it ran
+            messageCache.invalidate(id);
+            if(previous == null)
+                return null; // A missing id updates nothing
+
+            Message updated = new Message(id, previous.getPosted_by(), newMessage, previous.getTime_posted_epoch());
+            searchIndex.update(id, previous.getMessage_text(), newMessage, updated.getTime_posted_epoch());
+            timelineCache.Updated(updated);
+            BumpVersions(updated);
+
+            return updated;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Streams one page of an account's timeline, newest first, to a sink as the rows are read. Like
+     * StreamMessagesPage, the end of the page is found first so the sink gets the next cursor up front. The index
+     * only knows the messages this process wrote or loaded at startup, so an account it has no messages for is read
+     * from the database instead, in case another writer has posted for it.
+     * @param accountID of the poster
+     * @param after key (time_posted_epoch, message_id) of the last message already seen, or null for the first page
+     * @param limit requested page size, clamped to MAX_PAGE_SIZE
+     * @param sink receives the cursor and then the messages
+     * @return false if reading the page failed part way, in which case End is not called
+     */
+    public boolean StreamTimelinePage(int accountID, long[] after, int limit, MessageSink sink)
+    {
+        int pageSize = ClampPageSize(limit);
+
+        // Pages within the cached head of the timeline cost no query
+        if(timelineCache.StreamPage(accountID, after, pageSize, sink))
+            return true;
+
+        // Sentinel keys that sort before the newest and after the oldest message
+        long afterTime = after == null ? Long.MAX_VALUE : after[0];
+        int afterID = after == null ? Integer.MIN_VALUE : (int) after[1];
+
+        if(postedByIndex.count(accountID) == 0)
+            return StreamTimelinePageFromDatabase(accountID, afterTime, afterID, pageSize, sink);
+
+        // Finding the end of the page in the index instead of with a probe query
+        int[] ids = new int[pageSize + 1];
+        long[] times = new long[pageSize + 1];
+        int found = postedByIndex.page(accountID, afterTime, afterID, ids, times);
+        if(found == 0)
+        {
+            // Nothing left to read, so no query at all
+            sink.Begin(null);
+            sink.End();
+            return true;
+        }
+
+        boolean hasNext = found > pageSize;
+        sink.Begin(hasNext ? PageCursor.encode(times[pageSize - 1], ids[pageSize - 1]) : null);
+
+        // As in StreamMessagesPage the range alone bounds the page, so a message the index does not have yet is sent
+        // rather than skipped
+        long throughTime = hasNext ? times[pageSize - 1] : Long.MIN_VALUE;
+        int throughID = hasNext ? ids[pageSize - 1] : Integer.MAX_VALUE;
+        if(!messageDAO.ForEachTimelineMessage(accountID, afterTime, afterID, throughTime, throughID, Integer.MAX_VALUE, sink::Accept))
+            return false;
+
+        sink.End();
+        return true;
+    }
+
+    /***
+     * Reads one page of a timeline the index knows nothing of, with one row past the page to tell whether there is a
+     * next one; the rows are held until then, as the sink needs the cursor first
+     */
+    private boolean StreamTimelinePageFromDatabase(int accountID, long afterTime, int afterID, int pageSize, MessageSink sink)
+    {
+        ArrayList<Message> page = new ArrayList<>();
+        if(!messageDAO.ForEachTimelineMessage(accountID, afterTime, afterID, Long.MIN_VALUE, Integer.MAX_VALUE, pageSize + 1, page::add))
+            return false;
+
+        boolean hasNext = page.size() > pageSize;
+        Message last = hasNext ? page.get(pageSize - 1) : null;
+        sink.Begin(hasNext ? PageCursor.encode(last.getTime_posted_epoch(), last.getMessage_id()) : null);
+        for(int i = 0; i < Math.min(page.size(), pageSize); i++)
+            sink.Accept(page.get(i));
+
+        sink.End();
+        return true;
+    }
 
-        return messageDAO.UpdateMessage(id, newMessage);
+    /***
+     * Decodes a cursor handed out by StreamTimelinePage
+     * @param cursor
+     * @return the (time_posted_epoch, message_id) key the next page starts after
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public long[] DecodeTimelineCursor(String cursor)
+    {
+        return PageCursor.decode(cursor, 2);
     }
 
     /***
-     * Gets all stored messages under a specific account
+     * Streams one page of the messages posted in a time range to a sink, newest first (time_posted_epoch descending,
+     * then message_id ascending, like a timeline), optionally only those of one account. The end of the page is
+     * found in memory when possible: in the posted_by index for one account, or in the time index for all of them.
+     * @param postedBy account to keep the messages of, or null for every account
+     * @param from inclusive lower bound of time_posted_epoch
+     * @param to exclusive upper bound of time_posted_epoch
+     * @param after key (time_posted_epoch, message_id) of the last message already seen, or null for the first page
+     * @param limit requested page size, clamped to MAX_PAGE_SIZE
+     * @param sink receives the cursor and then the messages
+     * @return false if reading the page failed part way, in which case End is not called
+     */
+    public boolean StreamTimeRangePage(Integer postedBy, long from, long to, long[] after, int limit, MessageSink sink)
+    {
+        int pageSize = ClampPageSize(limit);
+
+        // Sentinel keys of the range: starting after every message at `to` and running through every one at `from`
+        long afterTime = to;
+        int afterID = Integer.MAX_VALUE;
+        if(after != null && after[0] < to)
+        {
+            afterTime = after[0];
+            afterID = (int) after[1];
+        }
+        long throughTime = from;
+        int throughID = Integer.MAX_VALUE;
+
+        if(from >= to)
+        {
+            // An empty range, so no query at all
+            sink.Begin(null);
+            sink.End();
+            return true;
+        }
+
+        long[] pageEnd; // Key of the last message on the page if more of the range follows it
+        int[] ids = null;
+        int found = 0;
+
+        if(postedBy != null || timeIndex != null)
+        {
+            // Reading the page's keys in memory, one past the page to learn whether another page follows
+            ids = new int[pageSize + 1];
+            long[] times = new long[pageSize + 1];
+            int read = postedBy != null
+                ? postedByIndex.page(postedBy, afterTime, afterID, ids, times)
+                : timeIndex.page(afterTime, afterID, ids, times);
+
+            while(found < read && times[found] >= from)
+                found++; // Keys before the first one older than the range
+
+            pageEnd = found > pageSize ? new long[] { times[pageSize - 1], ids[pageSize - 1] } : null;
+            if(found == 0)
+            {
+                // Nothing left in the range, so no query at all
+                sink.Begin(null);
+                sink.End();
+                return true;
+            }
+        }
+        else
+            pageEnd = messageDAO.GetTimeRangePageEnd(afterTime, afterID, throughTime, throughID, pageSize);
+
+        sink.Begin(pageEnd == null ? null : PageCursor.encode(pageEnd));
+
+        // With the keys known, a page whose messages are all cached is served without a query
+        if(ids != null && MESSAGE_CACHE_SIZE > 0)
+        {
+            Message[] cached = new Message[Math.min(found, pageSize)];
+            int hits = 0;
+            while(hits < cached.length && (cached[hits] = messageCache.getIfPresent(ids[hits])) != null)
+                hits++;
+
+            if(hits == cached.length)
+            {
+                for(Message message : cached)
+                    sink.Accept(message);
+
+                sink.End();
+                return true;
+            }
+        }
+
+        // As in StreamTimelinePage the range alone bounds the page, so a message the indexes do not have yet is sent
+        // rather than skipped
+        if(pageEnd != null)
+        {
+            throughTime = pageEnd[0];
+            throughID = (int) pageEnd[1];
+        }
+
+        boolean streamed = postedBy != null
+            ? messageDAO.ForEachTimelineMessage(postedBy, afterTime, afterID, throughTime, throughID, Integer.MAX_VALUE, sink::Accept)
+            : messageDAO.ForEachMessageInTimeRange(afterTime, afterID, throughTime, throughID, Integer.MAX_VALUE, sink::Accept);
+        if(!streamed)
+            return false;
+
+        sink.End();
+        return true;
+    }
+
+    /***
+     * Decodes a cursor returned with a time range page
+     * @param cursor
+     * @return the (time_posted_epoch, message_id) key the next page starts after
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public long[] DecodeTimeRangeCursor(String cursor)
+    {
+        return PageCursor.decode(cursor, 2);
+    }
+
+    /***
+     * Parses the q parameter of a search
+     * @param query words that must all be in a message; words in double quotes must also be in that order
+     * @return the parsed query
+     * @throws IllegalArgumentException if the query has no words or too many
+     */
+    public MessageTextIndex.Query ParseSearchQuery(String query)
+    {
+        return MessageTextIndex.Query.parse(query);
+    }
+
+    /***
+     * Streams one page of the messages matching a search to a sink, most recent first (time_posted_epoch descending,
+     * then message_id ascending, like a timeline). Matches are found in the search index; only the messages on the
+     * page are read, from the message cache or else with a single query.
+     * @param query parsed by ParseSearchQuery
+     * @param after key (time_posted_epoch, message_id) of the last match already seen, or null for the first page
+     * @param limit requested page size, clamped to MAX_PAGE_SIZE
+     * @param sink receives the cursor and then the messages
+     * @return false if reading the messages failed, in which case the sink gets nothing
+     */
+    public boolean StreamSearchPage(MessageTextIndex.Query query, long[] after, int limit, MessageSink sink)
+    {
+        int pageSize = ClampPageSize(limit);
+
+        // Sentinel keys that sort before the most recent and after the oldest message
+        long afterTime = after == null ? Long.MAX_VALUE : after[0];
+        int afterID = after == null ? Integer.MIN_VALUE : (int) after[1];
+
+        // Asking for one extra match tells us whether there is a next page
+        int[] ids = new int[pageSize + 1];
+        long[] times = new long[pageSize + 1];
+        int found = searchIndex.search(query, afterTime, afterID, ids, times);
+        int count = Math.min(found, pageSize);
+
+        // Cached matches are taken as they are; the rest are read with one query rather than one each. Those are not
+        // put in the cache, which only single reads fill, so a delete running meanwhile cannot be undone there.
+        Message[] page = new Message[count];
+        int[] missing = new int[count];
+        HashMap<Integer, Integer> positions = new HashMap<>();
+        int missed = 0;
+        for(int i = 0; i < count; i++)
+        {
+            page[i] = messageCache.getIfPresent(ids[i]);
+            if(page[i] == null)
+            {
+                missing[missed++] = ids[i];
+                positions.put(ids[i], i);
+            }
+        }
+
+        if(missed > 0 && !messageDAO.ForEachMessageWithID(missing, missed,
+            message -> page[positions.get(message.getMessage_id())] = message))
+            return false;
+
+        boolean hasNext = found > pageSize;
+        sink.Begin(hasNext ? PageCursor.encode(times[pageSize - 1], ids[pageSize - 1]) : null);
+
+        for(Message message : page)
+        {
+            // A message changed since the lookup is checked against its current text; a deleted one is skipped
+            if(message != null && query.matches(message.getMessage_text()))
+                sink.Accept(message);
+        }
+
+        sink.End();
+        return true;
+    }
+
+    /***
+     * Decodes a cursor returned with a search page
+     * @param cursor
+     * @return the (time_posted_epoch, message_id) key the next page starts after
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public long[] DecodeSearchCursor(String cursor)
+    {
+        return PageCursor.decode(cursor, 2);
+    }
+
+    /***
+     * Gets all stored messages under a specific account, newest first
      * @param id
      * @return an ArrayList of type Message for all messages under an account id
      */
     public ArrayList<Message> GetAllMessagesByAccountID(int id)
     {
+        ArrayList<Message> cached = timelineCache.GetIfComplete(id);
+        if(cached != null)
+            return cached;
+
         return messageDAO.GetAllMessagesByAccountID(id);
     }
+
+    /***
+     * @return the size and hit / eviction counters of the message-by-id cache
+     */
+    public CacheMetrics GetMessageCacheMetrics()
+    {
+        return CacheMetrics.of(messageCache, MESSAGE_CACHE_SIZE);
+    }
+
+    /***
+     * @return the size and hit / eviction counters of the timeline cache
+     */
+    public CacheMetrics GetTimelineCacheMetrics()
+    {
+        return timelineCache.GetMetrics();
+    }
+
+    /***
+     * Gets the version of a single message, which changes whenever the message is created, updated or deleted
+     * @param id of the message
+     * @return an opaque version string
+     */
+    public String GetMessageVersion(int id)
+    {
+        return messageVersions.Get(id);
+    }
+
+    /***
+     * Gets the version of an account's timeline, which changes whenever one of its messages is created, updated or
+     * deleted
+     * @param accountID of the poster
+     * @return an opaque version string
+     */
+    public String GetTimelineVersion(int accountID)
+    {
+        return timelineVersions.Get(accountID);
+    }
+
+    /***
+     * Moves a written message and its account's timeline to new versions
+     * @param message the row that was written
+     */
+    private void BumpVersions(Message message)
+    {
+        messageVersions.Bump(message.getMessage_id());
+        timelineVersions.Bump(message.getPosted_by());
+    }
+
+    /***
+     * @return the batch and commit counters of group commit, or GroupCommitStats.DISABLED if it is off
+     */
+    public GroupCommitStats GetGroupCommitStats()
+    {
+        return groupCommitter != null ? groupCommitter.GetStats() : GroupCommitStats.DISABLED;
+    }
+
+    /***
+     * @return the size and estimated heap footprint of the posted_by index
+     */
+    public PostedByIndexStats GetPostedByIndexStats()
+    {
+        return new PostedByIndexStats(postedByIndex.accountCount(), postedByIndex.size(), postedByIndex.estimateBytes());
+    }
+
+    /***
+     * @return the term and message counts and estimated heap footprint of the search index
+     */
+    public SearchIndexStats GetSearchIndexStats()
+    {
+        return new SearchIndexStats(searchIndex.termCount(), searchIndex.documentCount(), searchIndex.estimateBytes());
+    }
+
+    /***
+     * @return the size and estimated heap footprint of the time index, or null when the message cache is off
+     */
+    public TimePostedIndexStats GetTimeIndexStats()
+    {
+        return timeIndex != null ? new TimePostedIndexStats(timeIndex.size(), timeIndex.estimateBytes()) : null;
+    }
+
+    /***
+     * @return the lock of a message id's stripe
+     */
+    private ReentrantLock WriteLock(int id)
+    {
+        int h = id * 0x9E3779B9; // Spreading sequential ids, as VersionTracker does
+        return writeLocks[(h ^ (h >>> 16)) & (writeLocks.length - 1)];
+    }
+
+    private static ReentrantLock[] NewWriteLocks(int stripes)
+    {
+        ReentrantLock[] locks = new ReentrantLock[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+        for(int i = 0; i < locks.length; i++)
+            locks[i] = new ReentrantLock();
+
+        return locks;
+    }
+
+    /***
+     * Makes a newly stored message visible to the indexes, caches and versions, unless it was deleted since
+     * @param created including its generated message_id
+     */
+    private void Publish(Message created)
+    {
+        ReentrantLock lock = WriteLock(created.getMessage_id());
+        lock.lock();
+        try
+        {
+            if(deletedUnpublished.remove(created.getMessage_id()))
+                return;
+
+            Index(created);
+            published.set(created.getMessage_id());
+            timelineCache.Created(created); // Appending to the poster's cached timeline, if any
+            BumpVersions(created);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Adds a stored message to the search index, and to the posted_by and time indexes unless the repository keeps them
+     * @param message including its generated message_id
+     */
+    private void Index(Message message)
+    {
+        if(ownIndexes)
+        {
+            postedByIndex.add(message.getPosted_by(), message.getMessage_id(), message.getTime_posted_epoch());
+            if(timeIndex != null)
+                timeIndex.add(message.getMessage_id(), message.getTime_posted_epoch());
+        }
+        searchIndex.add(message.getMessage_id(), message.getMessage_text(), message.getTime_posted_epoch());
+    }
+
+    /***
+     * Fills the search index, and the posted_by and time indexes unless the repository keeps them, with every stored
+     * message, streamed rather than collected into a list.
+     * Message text is tokenized on SEARCH_LOAD_THREADS threads while the rows are still being read.
+     */
+    private void LoadIndexes()
+    {
+        MessageTextIndex.Loader searchLoader = searchIndex.loader(SEARCH_LOAD_THREADS);
+
+        boolean loaded = messageDAO.ForEachMessage(message -> {
+            if(ownIndexes)
+            {
+                postedByIndex.add(message.getPosted_by(), message.getMessage_id(), message.getTime_posted_epoch());
+                if(timeIndex != null)
+                    timeIndex.add(message.getMessage_id(), message.getTime_posted_epoch());
+            }
+            searchLoader.add(message.getMessage_id(), message.getMessage_text(), message.getTime_posted_epoch());
+            published.set(message.getMessage_id());
+        });
+        searchLoader.finish();
+
+        if(!loaded)
+            System.out.println("The message indexes could not be loaded completely"); // POTENTIAL TODO: Add Logging
+    }
 }
@@ -0,0 +1,26 @@
+package Service;
+
+import Model.Message;
+
+/**
+ * Receives one page of messages as it is read from the database, so the page never has to be collected into a list.
+ * Begin is always called first, then Accept once per message, then End if the whole page was read.
+ */
+public interface MessageSink {
+    /***
+     * Called before the first message
+     * @param nextCursor cursor of the following page, or null if this is the last page
+     */
+    void Begin(String nextCursor);
+
+    /***
+     * Called once per message, in page order
+     * @param message
+     */
+    void Accept(Message message);
+
+    /***
+     * Called after the last message of a page that was read completely
+     */
+    void End();
+}
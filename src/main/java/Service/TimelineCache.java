@@ -0,0 +1,256 @@
+package Service;
+
+import DAO.MessageRepository;
+import Model.Message;
+import Util.AppConfig;
+import Util.CacheMetrics;
+import Util.PageCursor;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The TimelineCache class holds the newest messages of recently read accounts, newest first, so that profile pages
+ * can be served without a query. Each cached timeline is always the exact head of the account's timeline; writes
+ * patch it in place (insert, replace or remove one entry) instead of reloading it. Timelines are loaded when an
+ * account is read, never when it only posts, and the coldest ones are evicted once the cache passes its memory budget.
+ */
+public class TimelineCache {
+    /**
+     * Most messages kept per account
+     */
+    public static final int DEPTH = AppConfig.getInt("timeline.cache.depth", 200);
+    /**
+     * Approximate heap the cached timelines may take, in bytes
+     */
+    public static final long MAX_BYTES = AppConfig.getLong("timeline.cache.maxBytes", 32L * 1024 * 1024);
+
+    private final MessageRepository messageDAO;
+    private final Cache<Integer, Timeline> timelines;
+
+    /***
+     * @param messageDAO used to load the timelines that are not cached
+     */
+    public TimelineCache(MessageRepository messageDAO)
+    {
+        this.messageDAO = messageDAO;
+        this.timelines = Caffeine.newBuilder()
+            .maximumWeight(MAX_BYTES)
+            .weigher((Integer accountID, Timeline timeline) -> timeline.EstimateBytes())
+            .recordStats()
+            .build();
+    }
+
+    /***
+     * Serves one page of an account's timeline from the cache, loading the account's newest messages on a miss
+     * @param accountID of the poster
+     * @param after key (time_posted_epoch, message_id) of the last message already seen, or null for the first page
+     * @param pageSize number of messages on the page
+     * @param sink receives the cursor and then the messages
+     * @return false if the page reaches past the cached head, in which case nothing was given to the sink
+     */
+    public boolean StreamPage(int accountID, long[] after, int pageSize, MessageSink sink)
+    {
+        Timeline timeline = timelines.get(accountID, this::Load);
+        if(timeline == null)
+            return false; // The load failed; the caller reads the database instead
+
+        Message[] entries = timeline.entries;
+        int from = after == null ? 0 : timeline.IndexAfter(after[0], (int) after[1]);
+        int to = Math.min(entries.length, from + pageSize);
+
+        // Without the full timeline, the cache can only answer if it also holds the first message of the next page
+        boolean hasNext = to < entries.length;
+        if(!hasNext && !timeline.complete)
+            return false;
+
+        Message last = to > 0 ? entries[to - 1] : null;
+        sink.Begin(hasNext ? PageCursor.encode(last.getTime_posted_epoch(), last.getMessage_id()) : null);
+        for(int i = from; i < to; i++)
+            sink.Accept(entries[i]);
+        sink.End();
+
+        return true;
+    }
+
+    /***
+     * Gets the whole timeline of an account if the cache holds all of it
+     * @param accountID of the poster
+     * @return every message of the account newest first, or null if the account is not cached in full
+     */
+    public ArrayList<Message> GetIfComplete(int accountID)
+    {
+        Timeline timeline = timelines.getIfPresent(accountID);
+        if(timeline == null || !timeline.complete)
+            return null;
+
+        return new ArrayList<>(Arrays.asList(timeline.entries));
+    }
+
+    /***
+     * Adds a new message to its account's cached timeline, if that account is cached
+     * @param message including its generated message_id
+     */
+    public void Created(Message message)
+    {
+        timelines.asMap().computeIfPresent(message.getPosted_by(), (id, timeline) -> timeline.WithMessage(message));
+    }
+
+    /***
+     * Replaces an updated message in its account's cached timeline, if it is there
+     * @param message the row as it is after the update
+     */
+    public void Updated(Message message)
+    {
+        timelines.asMap().computeIfPresent(message.getPosted_by(), (id, timeline) -> timeline.WithMessage(message));
+    }
+
+    /***
+     * Removes a deleted message from its account's cached timeline, if it is there
+     * @param message the row as it was before the delete
+     */
+    public void Deleted(Message message)
+    {
+        timelines.asMap().computeIfPresent(message.getPosted_by(),
+            (id, timeline) -> timeline.Without(message.getMessage_id()));
+    }
+
+    /***
+     * @return the size and hit / eviction counters of the cache; the bound is in bytes
+     */
+    public CacheMetrics GetMetrics()
+    {
+        return CacheMetrics.of(timelines, MAX_BYTES);
+    }
+
+    /***
+     * Reads the head of an account's timeline, one message deeper than kept so that a short timeline is known to be
+     * complete
+     * @param accountID of the poster
+     * @return the timeline or null if it could not be read
+     */
+    private Timeline Load(int accountID)
+    {
+        ArrayList<Message> newest = new ArrayList<>();
+        if(!messageDAO.ForEachTimelineMessage(accountID, Long.MAX_VALUE, Integer.MIN_VALUE,
+            Long.MIN_VALUE, Integer.MAX_VALUE, DEPTH + 1, newest::add))
+            return null; // Not cached, so the next read tries again
+
+        boolean complete = newest.size() <= DEPTH;
+        if(!complete)
+            newest.remove(DEPTH);
+
+        return new Timeline(newest.toArray(new Message[0]), complete);
+    }
+
+    /**
+     * An immutable head of one account's timeline. Every change builds a new Timeline inside computeIfPresent, so
+     * readers always see a consistent array and changes to one account are applied one at a time.
+     */
+    private static final class Timeline {
+        /**
+         * Newest first, ordered like the timeline query: time_posted_epoch descending, then message_id ascending
+         */
+        final Message[] entries;
+        /**
+         * True if entries holds every message of the account, not only the newest DEPTH
+         */
+        final boolean complete;
+
+        Timeline(Message[] entries, boolean complete)
+        {
+            this.entries = entries;
+            this.complete = complete;
+        }
+
+        /***
+         * @return the position of the first entry that sorts after the given key
+         */
+        int IndexAfter(long time, int id)
+        {
+            int low = 0;
+            int high = entries.length;
+
+            while(low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if(Compare(entries[middle], time, id) <= 0)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+
+            return low;
+        }
+
+        /***
+         * Inserts a message or replaces the entry with the same id. A message that sorts after the last entry of an
+         * incomplete timeline is not part of the cached head and is left out.
+         */
+        Timeline WithMessage(Message message)
+        {
+            Timeline without = Without(message.getMessage_id());
+            Message[] current = without.entries;
+
+            int index = without.IndexAfter(message.getTime_posted_epoch(), message.getMessage_id());
+            if(index == current.length && !without.complete)
+                return without;
+
+            Message[] grown = new Message[current.length + 1];
+            System.arraycopy(current, 0, grown, 0, index);
+            grown[index] = message;
+            System.arraycopy(current, index, grown, index + 1, current.length - index);
+
+            // Dropping the oldest entry keeps the head at DEPTH; the timeline then continues past the cache
+            if(grown.length > DEPTH)
+                return new Timeline(Arrays.copyOf(grown, DEPTH), false);
+
+            return new Timeline(grown, without.complete);
+        }
+
+        /***
+         * Removes the entry with the given id, if present
+         */
+        Timeline Without(int messageID)
+        {
+            for(int i = 0; i < entries.length; i++)
+            {
+                if(entries[i].getMessage_id() == messageID)
+                {
+                    Message[] shrunk = new Message[entries.length - 1];
+                    System.arraycopy(entries, 0, shrunk, 0, i);
+                    System.arraycopy(entries, i + 1, shrunk, i, entries.length - i - 1);
+                    return new Timeline(shrunk, complete);
+                }
+            }
+
+            return this;
+        }
+
+        /***
+         * @return a rough heap size: array slots plus each Message and its text
+         */
+        int EstimateBytes()
+        {
+            long bytes = 32 + 8L * entries.length;
+            for(Message message : entries)
+                bytes += 40 + 48 + 2L * message.getMessage_text().length();
+
+            return (int) Math.min(Integer.MAX_VALUE, bytes);
+        }
+
+        /***
+         * @return negative if the message sorts before the key in timeline order, 0 if it is the key
+         */
+        private static int Compare(Message message, long time, int id)
+        {
+            if(message.getTime_posted_epoch() != time)
+                return message.getTime_posted_epoch() > time ? -1 : 1;
+
+            return Integer.compare(message.getMessage_id(), id);
+        }
+    }
+}
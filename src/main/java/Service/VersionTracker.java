@@ -0,0 +1,56 @@
+package Service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The VersionTracker class hands out a version for every key (a message_id or an account_id) that changes whenever
+ * the data behind the key changes, so that clients can be told "nothing changed" without reading the data.
+ *
+ * Keys share a fixed number of counters, so memory does not grow with the number of keys. Two keys on the same
+ * counter only cost each other an unneeded refresh, never a stale answer. Versions start over when the server
+ * restarts, so each version also carries the start time of this tracker.
+ */
+public class VersionTracker {
+    private final AtomicLongArray counters;
+    private final int mask;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /***
+     * @param slots number of counters, rounded up to a power of two
+     */
+    public VersionTracker(int slots)
+    {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        counters = new AtomicLongArray(size);
+        mask = size - 1;
+    }
+
+    /***
+     * Gets the current version of a key. Read it before reading the data, so that a concurrent change can only make
+     * the version older than the data, never newer.
+     * @param key
+     * @return an opaque version string
+     */
+    public String Get(int key)
+    {
+        return epoch + "." + counters.get(Slot(key));
+    }
+
+    /***
+     * Moves a key to a new version. Call it after the change is visible to readers (committed and cached).
+     * @param key
+     */
+    public void Bump(int key)
+    {
+        counters.incrementAndGet(Slot(key));
+    }
+
+    /***
+     * Spreads sequential ids over the counters
+     */
+    private int Slot(int key)
+    {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,71 @@
+package Util;
+
+/**
+ * The AppConfig class reads the tunable settings of the application. Every setting can be overridden with a JVM
+ * system property (-Dname=value) and otherwise falls back to the default provided by the caller.
+ */
+public class AppConfig {
+
+	/***
+	 * Reads an integer setting
+	 * @param name of the system property
+	 * @param defaultValue used when the property is missing or malformed
+	 * @return the configured value
+	 */
+	public static int getInt(String name, int defaultValue) {
+		String value = System.getProperty(name);
+		if (value == null)
+			return defaultValue;
+
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			System.out.println("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	/***
+	 * Reads a long setting
+	 * @param name of the system property
+	 * @param defaultValue used when the property is missing or malformed
+	 * @return the configured value
+	 */
+	public static long getLong(String name, long defaultValue) {
+		String value = System.getProperty(name);
+		if (value == null)
+			return defaultValue;
+
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			System.out.println("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	/***
+	 * Reads a boolean setting
+	 * @param name of the system property
+	 * @param defaultValue used when the property is missing
+	 * @return the configured value
+	 */
+	public static boolean getBoolean(String name, boolean defaultValue) {
+		String value = System.getProperty(name);
+		if (value == null)
+			return defaultValue;
+
+		return Boolean.parseBoolean(value.trim());
+	}
+
+	/***
+	 * Reads a string setting
+	 * @param name of the system property
+	 * @param defaultValue used when the property is missing
+	 * @return the configured value
+	 */
+	public static String getString(String name, String defaultValue) {
+		String value = System.getProperty(name);
+		return value == null ? defaultValue : value.trim();
+	}
+}
@@ -0,0 +1,70 @@
+package Util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * A point-in-time snapshot of a cache's size and hit / eviction counters, in the shape reported by /metrics.
+ */
+public class CacheMetrics {
+	private final long size;
+	private final long maximumSize;
+	private final long hitCount;
+	private final long missCount;
+	private final double hitRatio;
+	private final long evictionCount;
+
+	public CacheMetrics(long size, long maximumSize, long hitCount, long missCount, long evictionCount) {
+		this.size = size;
+		this.maximumSize = maximumSize;
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.hitRatio = hitCount + missCount == 0 ? 1.0 : (double) hitCount / (hitCount + missCount);
+		this.evictionCount = evictionCount;
+	}
+
+	/***
+	 * Snapshots a Caffeine cache built with recordStats()
+	 * @param cache to read
+	 * @param maximumSize the bound the cache was built with: entries, or bytes for a weighted cache
+	 * @return the snapshot
+	 */
+	public static CacheMetrics of(Cache<?, ?> cache, long maximumSize) {
+		CacheStats stats = cache.stats();
+		return new CacheMetrics(cache.estimatedSize(), maximumSize, stats.hitCount(), stats.missCount(),
+				stats.evictionCount());
+	}
+
+	/**
+	 * @return entries currently held (an estimate while evictions are pending)
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the bound of the cache: entries, or bytes for a weighted cache
+	 */
+	public long getMaximumSize() {
+		return maximumSize;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return hits over lookups, 1.0 before the first lookup
+	 */
+	public double getHitRatio() {
+		return hitRatio;
+	}
+
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+}
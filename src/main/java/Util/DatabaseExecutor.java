@@ -0,0 +1,119 @@
+package Util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The DatabaseExecutor class runs the blocking database work of requests on a fixed set of threads of its own, so
+ * that a slow query ties up one of these threads rather than one of the HTTP server's. It is a bulkhead: its threads
+ * and its queue are bounded, and a task that finds the queue full is turned away at once instead of waiting.
+ *
+ * A task usually holds one pooled connection at a time, so more threads than connections would only wait in the
+ * pool; the queue is where requests wait instead, and its length is what the stats report.
+ */
+public class DatabaseExecutor {
+	private final ThreadPoolExecutor executor;
+	private final int threads;
+	private final int queueCapacity;
+
+	private final AtomicInteger largestQueued = new AtomicInteger();
+	private final AtomicLong started = new AtomicLong();
+	private final AtomicLong queueWaitNanos = new AtomicLong();
+	private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * The database part of a request; it may throw whatever the request handling throws
+	 */
+	public interface Task {
+		void run() throws Exception;
+	}
+
+	/***
+	 * Starts the threads
+	 * @param threads that run tasks at the same time
+	 * @param queueCapacity tasks that may wait for a thread before more are rejected
+	 */
+	public DatabaseExecutor(int threads, int queueCapacity) {
+		if (threads < 1 || queueCapacity < 1)
+			throw new IllegalArgumentException("Invalid executor size: threads " + threads + ", queue " + queueCapacity);
+
+		this.threads = threads;
+		this.queueCapacity = queueCapacity;
+
+		AtomicInteger count = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, "database-executor-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/***
+	 * Queues a task
+	 * @param task
+	 * @return completes when the task has run, exceptionally with whatever it threw
+	 * @throws RejectedExecutionException if the queue is full or the executor is shut down
+	 */
+	public CompletableFuture<Void> submit(Task task) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		long queuedAt = System.nanoTime();
+
+		try {
+			executor.execute(() -> {
+				recordWait(System.nanoTime() - queuedAt);
+				try {
+					task.run();
+					future.complete(null);
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			throw e;
+		}
+
+		largestQueued.accumulateAndGet(executor.getQueue().size(), Math::max);
+		return future;
+	}
+
+	/***
+	 * @return a snapshot of the executor's counters
+	 */
+	public DatabaseExecutorStats getStats() {
+		long starts = started.get();
+		long waitNanos = queueWaitNanos.get();
+
+		return new DatabaseExecutorStats(
+			threads,
+			executor.getActiveCount(),
+			executor.getQueue().size(),
+			queueCapacity,
+			largestQueued.get(),
+			executor.getCompletedTaskCount(),
+			rejected.get(),
+			starts == 0 ? 0 : waitNanos / starts / 1000,
+			maxQueueWaitNanos.get() / 1000
+		);
+	}
+
+	/***
+	 * Stops taking tasks; the ones already queued still run
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private void recordWait(long nanos) {
+		started.incrementAndGet();
+		queueWaitNanos.addAndGet(nanos);
+		maxQueueWaitNanos.accumulateAndGet(nanos, Math::max);
+	}
+}
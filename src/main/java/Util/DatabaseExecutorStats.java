@@ -0,0 +1,77 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of the DatabaseExecutor counters. Queue waits are reported in microseconds.
+ */
+public class DatabaseExecutorStats {
+	private final int threads;
+	private final int active;
+	private final int queued;
+	private final int queueCapacity;
+	private final int largestQueued;
+	private final long completed;
+	private final long rejected;
+	private final long averageQueueWaitMicros;
+	private final long maxQueueWaitMicros;
+
+	public DatabaseExecutorStats(int threads, int active, int queued, int queueCapacity, int largestQueued,
+			long completed, long rejected, long averageQueueWaitMicros, long maxQueueWaitMicros) {
+		this.threads = threads;
+		this.active = active;
+		this.queued = queued;
+		this.queueCapacity = queueCapacity;
+		this.largestQueued = largestQueued;
+		this.completed = completed;
+		this.rejected = rejected;
+		this.averageQueueWaitMicros = averageQueueWaitMicros;
+		this.maxQueueWaitMicros = maxQueueWaitMicros;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return threads currently running a task
+	 */
+	public int getActive() {
+		return active;
+	}
+
+	/**
+	 * @return tasks currently waiting for a thread
+	 */
+	public int getQueued() {
+		return queued;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * @return the most tasks seen waiting at once
+	 */
+	public int getLargestQueued() {
+		return largestQueued;
+	}
+
+	public long getCompleted() {
+		return completed;
+	}
+
+	/**
+	 * @return tasks turned away because the queue was full, each answered with 503
+	 */
+	public long getRejected() {
+		return rejected;
+	}
+
+	public long getAverageQueueWaitMicros() {
+		return averageQueueWaitMicros;
+	}
+
+	public long getMaxQueueWaitMicros() {
+		return maxQueueWaitMicros;
+	}
+}
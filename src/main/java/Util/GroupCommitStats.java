@@ -0,0 +1,93 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of the group-commit write path. Commit times are reported in microseconds and cover the
+ * whole batch insert, from borrowing the connection to the commit.
+ */
+public class GroupCommitStats {
+	/**
+	 * Reported when group commit is switched off
+	 */
+	public static final GroupCommitStats DISABLED = new GroupCommitStats(false, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+	private final boolean enabled;
+	private final long flushIntervalMillis;
+	private final int maxBatchSize;
+	private final int queued;
+	private final long batches;
+	private final long messages;
+	private final long largestBatch;
+	private final long averageCommitMicros;
+	private final long maxCommitMicros;
+	private final long fallbacks;
+
+	public GroupCommitStats(boolean enabled, long flushIntervalMillis, int maxBatchSize, int queued, long batches,
+			long messages, long largestBatch, long averageCommitMicros, long maxCommitMicros, long fallbacks) {
+		this.enabled = enabled;
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.maxBatchSize = maxBatchSize;
+		this.queued = queued;
+		this.batches = batches;
+		this.messages = messages;
+		this.largestBatch = largestBatch;
+		this.averageCommitMicros = averageCommitMicros;
+		this.maxCommitMicros = maxCommitMicros;
+		this.fallbacks = fallbacks;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public long getFlushIntervalMillis() {
+		return flushIntervalMillis;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * @return messages waiting for the next batch
+	 */
+	public int getQueued() {
+		return queued;
+	}
+
+	/**
+	 * @return transactions committed
+	 */
+	public long getBatches() {
+		return batches;
+	}
+
+	public long getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return messages per transaction
+	 */
+	public double getAverageBatchSize() {
+		return batches == 0 ? 0 : (double) messages / batches;
+	}
+
+	public long getLargestBatch() {
+		return largestBatch;
+	}
+
+	public long getAverageCommitMicros() {
+		return averageCommitMicros;
+	}
+
+	public long getMaxCommitMicros() {
+		return maxCommitMicros;
+	}
+
+	/**
+	 * @return batches that failed and were retried one message at a time
+	 */
+	public long getFallbacks() {
+		return fallbacks;
+	}
+}
@@ -0,0 +1,1200 @@
+package Util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The MessageTextIndex class is an inverted index over message text: for every term, the ids of the messages that
+ * contain it and the positions of the term in each, so that queries for all of several terms or for an exact phrase
+ * never scan the messages themselves.
+ *
+ * A term is a run of letters and digits, lower-cased. Each term's postings are one byte array of variable-length
+ * ints in message_id order: the gap from the previous id, the number of positions, then the gaps between positions.
+ * Readers never lock. New messages usually have the largest id yet, so adding one appends into spare capacity past
+ * the end of every published view, the same way PostedByIndex appends; any other change publishes a rewritten copy.
+ * Writers to the same term are serialized by the term map, which also drops a term as soon as no message contains it.
+ *
+ * The time_posted_epoch of every indexed message is kept in an array indexed by message id, which suits dense
+ * auto-increment ids, so that matches can be ranked by recency without reading the messages. The postings are also
+ * cut into blocks of BLOCK_SIZE messages that know where they start and the range of times in them, so a search
+ * decodes only the blocks that can hold the page it is after, newest first, rather than every posting of a common
+ * term on every page. A message's time is fixed once it is indexed; an update that changes it rebuilds the blocks.
+ */
+public class MessageTextIndex {
+	/**
+	 * Most terms a query may hold
+	 */
+	public static final int MAX_QUERY_TERMS = 32;
+	/**
+	 * Messages in a block of postings
+	 */
+	static final int BLOCK_SIZE = 64;
+
+	private final ConcurrentHashMap<String, Postings> terms = new ConcurrentHashMap<>();
+	/**
+	 * Messages currently indexed
+	 */
+	private final ConcurrentBitSet documents = new ConcurrentBitSet(1024);
+	/**
+	 * time_posted_epoch by message id; replaced (never mutated in size) when more ids are needed
+	 */
+	private volatile AtomicLongArray times = new AtomicLongArray(1024);
+	private final Object growLock = new Object();
+
+	/***
+	 * Splits text into terms
+	 * @param text
+	 * @return the lower-cased runs of letters and digits, in order
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		if (text == null)
+			return tokens;
+
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean inToken = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (inToken && start < 0) {
+				start = i;
+			} else if (!inToken && start >= 0) {
+				tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+
+		return tokens;
+	}
+
+	/***
+	 * Adds a message; adding a message id that is already there replaces its postings for the terms of this text
+	 * @param messageID must not be negative
+	 * @param text message_text
+	 * @param time time_posted_epoch of the message
+	 */
+	public void add(int messageID, String text, long time) {
+		if (messageID < 0)
+			throw new IndexOutOfBoundsException("messageID < 0: " + messageID);
+
+		setTime(messageID, time);
+		for (Map.Entry<String, int[]> term : positionsByTerm(tokenize(text)).entrySet())
+			addPostings(term.getKey(), messageID, term.getValue());
+
+		documents.set(messageID);
+	}
+
+	/***
+	 * Removes a message
+	 * @param messageID
+	 * @param text the message_text it was indexed with
+	 */
+	public void remove(int messageID, String text) {
+		documents.clear(messageID); // First, so a search running now already skips it
+		for (String term : positionsByTerm(tokenize(text)).keySet())
+			removePostings(term, messageID);
+	}
+
+	/***
+	 * Replaces the text of an indexed message
+	 * @param messageID
+	 * @param oldText the message_text it was indexed with
+	 * @param newText
+	 * @param time time_posted_epoch of the message
+	 */
+	public void update(int messageID, String oldText, String newText, long time) {
+		Map<String, int[]> added = positionsByTerm(tokenize(newText));
+		AtomicLongArray currentTimes = times;
+		boolean timeChanged = messageID >= currentTimes.length() || currentTimes.get(messageID) != time;
+
+		// Terms that are in both texts are replaced in place rather than removed and added, and left alone if their
+		// positions did not change: rewriting the postings of a common term costs a copy of all of them. A new time
+		// replaces them all, so that the time ranges of their blocks are rebuilt.
+		for (Map.Entry<String, int[]> term : positionsByTerm(tokenize(oldText)).entrySet()) {
+			int[] positions = added.get(term.getKey());
+			if (positions != null && Arrays.equals(positions, term.getValue()) && documents.get(messageID) && !timeChanged) {
+				added.remove(term.getKey());
+				continue;
+			}
+
+			if (positions == null)
+				removePostings(term.getKey(), messageID);
+		}
+
+		setTime(messageID, time);
+		for (Map.Entry<String, int[]> term : added.entrySet())
+			addPostings(term.getKey(), messageID, term.getValue());
+
+		documents.set(messageID);
+	}
+
+	/***
+	 * Finds one page of the messages matching a query, most recent first: time_posted_epoch descending, then
+	 * message_id ascending, the order of a timeline
+	 * @param query
+	 * @param afterTime time_posted_epoch of the last match already seen (Long.MAX_VALUE for the first page)
+	 * @param afterID message_id of the last match already seen (Integer.MIN_VALUE for the first page)
+	 * @param ids receives the message ids in order; its length is the page size
+	 * @param times receives the matching time_posted_epoch values, at least as long as ids
+	 * @return the number of entries written
+	 */
+	public int search(Query query, long afterTime, int afterID, int[] ids, long[] times) {
+		if (ids.length == 0)
+			return 0;
+
+		String[] distinct = query.distinctTerms();
+		Reader[] readers = new Reader[distinct.length];
+		for (int i = 0; i < distinct.length; i++) {
+			Postings postings = terms.get(distinct[i]);
+			if (postings == null || postings.view.docCount == 0)
+				return 0; // A term nothing contains; nothing can match
+			readers[i] = new Reader(postings.view);
+		}
+
+		// The phrases refer to the readers by term position in distinct, so they are resolved before sorting
+		int[][] phrases = query.phraseReaders(distinct);
+
+		// The rarest term leads: its blocks are visited, and the other terms are only looked up for its messages
+		Reader[] byRarity = readers.clone();
+		Arrays.sort(byRarity, (a, b) -> Integer.compare(a.docCount, b.docCount));
+		Reader leader = byRarity[0];
+		Blocks blocks = leader.blocks;
+
+		// A block whose oldest message is newer than the cursor was read for the earlier pages
+		int[] heap = new int[blocks.count()];
+		int remaining = 0;
+		for (int block = 0; block < blocks.count(); block++) {
+			if (blocks.minTime(block) <= afterTime)
+				heap[remaining++] = block;
+		}
+		for (int i = remaining / 2 - 1; i >= 0; i--)
+			siftDownBlock(heap, i, remaining, blocks);
+
+		TopMatches top = new TopMatches(ids, times);
+		AtomicLongArray currentTimes = this.times;
+		while (remaining > 0) {
+			// Newest block first, until no block left can hold a message that ranks above the page's last one
+			int block = heap[0];
+			heap[0] = heap[--remaining];
+			siftDownBlock(heap, 0, remaining, blocks);
+			if (top.isFull() && blocks.maxTime(block) < top.worstTime())
+				break;
+
+			int blockEnd = block + 1 < blocks.count() ? blocks.start(block + 1) : leader.length;
+			leader.seekBlock(blocks.start(block), blocks.prevDoc(block));
+			outer:
+			while (leader.end < blockEnd && leader.next()) {
+				int target = leader.doc;
+				if (!documents.get(target) || target >= currentTimes.length())
+					continue;
+
+				long time = currentTimes.get(target);
+				if (!(time < afterTime || (time == afterTime && target > afterID)) || !top.admits(target, time))
+					continue;
+
+				for (int i = 1; i < byRarity.length; i++) {
+					if (!byRarity[i].seek(target) || byRarity[i].doc != target)
+						continue outer;
+				}
+
+				// Every term is in the message; the phrases also need their terms next to each other
+				if (phrasesMatch(phrases, readers))
+					top.offer(target, time);
+			}
+		}
+
+		return top.drain();
+	}
+
+	/***
+	 * @return the number of distinct terms of the indexed messages
+	 */
+	public int termCount() {
+		return terms.size();
+	}
+
+	/***
+	 * @return the number of messages in the index
+	 */
+	public int documentCount() {
+		return documents.cardinality();
+	}
+
+	/***
+	 * Estimates the heap taken by the index with the usual 64-bit JVM layout, counting the postings arrays, the
+	 * term strings and map entries, and the time and document arrays
+	 * @return the estimate in bytes
+	 */
+	public long estimateBytes() {
+		long bytes = 8L * times.length() + 16 + documents.sizeInBytes() + 16;
+		for (Map.Entry<String, Postings> term : terms.entrySet()) {
+			View view = term.getValue().view;
+			bytes += 32 + 16 + 24; // Map node, Postings, View
+			bytes += align(24 + 16 + term.getKey().length()); // String and its bytes
+			bytes += align(16 + view.data.length);
+			bytes += view.blocks.estimateBytes();
+		}
+
+		return bytes;
+	}
+
+	/***
+	 * Starts a bulk load, for filling an index from every stored message. Messages are tokenized and encoded on
+	 * several threads in chunks and the chunks are merged in the order they were given, so messages given in
+	 * message_id order are merged by appending.
+	 * @param threads number of threads that build chunks
+	 * @return the loader; finish must be called once every message is given to it
+	 */
+	public Loader loader(int threads) {
+		return new Loader(this, Math.max(1, threads));
+	}
+
+	/***
+	 * Adds or replaces the entry of a message in a term's postings, creating the term if it is new
+	 */
+	private void addPostings(String term, int messageID, int[] positions) {
+		terms.compute(term, (key, postings) -> {
+			if (postings == null)
+				postings = new Postings();
+			postings.add(messageID, positions, times);
+			return postings;
+		});
+	}
+
+	/***
+	 * Removes the entry of a message from a term's postings, dropping the term once no message contains it. Under
+	 * the map's lock for the term, so an add can never go to postings that were just dropped.
+	 */
+	private void removePostings(String term, int messageID) {
+		terms.computeIfPresent(term, (key, postings) -> {
+			postings.remove(messageID, times);
+			return postings.view.docCount == 0 ? null : postings;
+		});
+	}
+
+	private void setTime(int messageID, long time) {
+		AtomicLongArray current = times;
+		if (messageID >= current.length())
+			current = growTimes(messageID);
+
+		current.set(messageID, time);
+
+		// A grow running at the same time may have copied the array before the write above; writing again into
+		// whatever array is current now makes sure the value is not lost
+		if (times != current)
+			times.set(messageID, time);
+	}
+
+	private AtomicLongArray growTimes(int messageID) {
+		synchronized (growLock) {
+			AtomicLongArray current = times;
+			if (messageID < current.length())
+				return current;
+
+			// Doubling keeps the number of copies logarithmic in the largest id
+			int newLength = (int) Math.min(Integer.MAX_VALUE, Math.max(messageID + 1L, current.length() * 2L));
+			AtomicLongArray grown = new AtomicLongArray(newLength);
+			for (int i = 0; i < current.length(); i++)
+				grown.set(i, current.get(i));
+
+			times = grown;
+			return grown;
+		}
+	}
+
+	/***
+	 * Checks every phrase of a query against the message all readers are on
+	 */
+	private static boolean phrasesMatch(int[][] phrases, Reader[] readers) {
+		for (int[] phrase : phrases) {
+			if (phrase.length < 2)
+				continue; // A single term is already known to be there
+
+			int[] first = readers[phrase[0]].positions();
+			int firstCount = readers[phrase[0]].positionCount;
+			boolean found = false;
+			for (int p = 0; p < firstCount && !found; p++) {
+				found = true;
+				for (int j = 1; j < phrase.length && found; j++)
+					found = readers[phrase[j]].hasPosition(first[p] + j);
+			}
+
+			if (!found)
+				return false;
+		}
+
+		return true;
+	}
+
+	/***
+	 * Restores the heap of block numbers with the newest block, by its latest time, at the root
+	 */
+	private static void siftDownBlock(int[] heap, int index, int size, Blocks blocks) {
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= size)
+				return;
+			if (child + 1 < size && blocks.maxTime(heap[child + 1]) > blocks.maxTime(heap[child]))
+				child++;
+			if (blocks.maxTime(heap[child]) <= blocks.maxTime(heap[index]))
+				return;
+
+			int swapped = heap[index];
+			heap[index] = heap[child];
+			heap[child] = swapped;
+			index = child;
+		}
+	}
+
+	private static long timeOf(AtomicLongArray times, int messageID) {
+		return messageID < times.length() ? times.get(messageID) : 0;
+	}
+
+	/***
+	 * Groups the positions of each term of a tokenized text
+	 */
+	private static Map<String, int[]> positionsByTerm(List<String> tokens) {
+		Map<String, int[]> positions = new HashMap<>();
+		for (int i = 0; i < tokens.size(); i++) {
+			int position = i;
+			positions.merge(tokens.get(i), new int[] { position }, (existing, added) -> {
+				int[] grown = Arrays.copyOf(existing, existing.length + 1);
+				grown[existing.length] = position;
+				return grown;
+			});
+		}
+
+		return positions;
+	}
+
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	/**
+	 * A parsed search query: words separated by spaces must all be in a message, and words in double quotes must
+	 * also be next to each other in that order.
+	 */
+	public static final class Query {
+		/**
+		 * Terms of each phrase; a word outside quotes is a phrase of one
+		 */
+		private final List<String[]> phrases;
+
+		private Query(List<String[]> phrases) {
+			this.phrases = phrases;
+		}
+
+		/***
+		 * Parses a query such as: red "hot chili" peppers
+		 * @param text the query as typed; an unclosed quote runs to the end
+		 * @return the query
+		 * @throws IllegalArgumentException if the query has no terms or more than MAX_QUERY_TERMS
+		 */
+		public static Query parse(String text) {
+			List<String[]> phrases = new ArrayList<>();
+			int termCount = 0;
+
+			if (text != null) {
+				String[] parts = text.split("\"", -1);
+				for (int i = 0; i < parts.length; i++) {
+					List<String> tokens = tokenize(parts[i]);
+					termCount += tokens.size();
+
+					if (i % 2 == 1 && !tokens.isEmpty()) {
+						phrases.add(tokens.toArray(new String[0])); // Inside quotes
+					} else {
+						for (String token : tokens)
+							phrases.add(new String[] { token });
+					}
+				}
+			}
+
+			if (termCount == 0)
+				throw new IllegalArgumentException("The query has no terms");
+			if (termCount > MAX_QUERY_TERMS)
+				throw new IllegalArgumentException("The query has more than " + MAX_QUERY_TERMS + " terms");
+
+			return new Query(phrases);
+		}
+
+		/***
+		 * Checks a text against the query without the index, e.g. to confirm a match against the current text
+		 * @param text
+		 * @return true if the text matches
+		 */
+		public boolean matches(String text) {
+			List<String> tokens = tokenize(text);
+			for (String[] phrase : phrases) {
+				if (!containsPhrase(tokens, phrase))
+					return false;
+			}
+
+			return true;
+		}
+
+		private static boolean containsPhrase(List<String> tokens, String[] phrase) {
+			outer:
+			for (int start = 0; start + phrase.length <= tokens.size(); start++) {
+				for (int j = 0; j < phrase.length; j++) {
+					if (!tokens.get(start + j).equals(phrase[j]))
+						continue outer;
+				}
+				return true;
+			}
+
+			return false;
+		}
+
+		String[] distinctTerms() {
+			return phrases.stream().flatMap(Arrays::stream).distinct().toArray(String[]::new);
+		}
+
+		/***
+		 * @return each phrase as indexes into distinct
+		 */
+		int[][] phraseReaders(String[] distinct) {
+			List<String> order = Arrays.asList(distinct);
+			int[][] resolved = new int[phrases.size()][];
+			for (int i = 0; i < phrases.size(); i++) {
+				String[] phrase = phrases.get(i);
+				resolved[i] = new int[phrase.length];
+				for (int j = 0; j < phrase.length; j++)
+					resolved[i][j] = order.indexOf(phrase[j]);
+			}
+
+			return resolved;
+		}
+	}
+
+	/**
+	 * Builds the postings of queued messages on several threads and merges them into the index in queue order, see
+	 * MessageTextIndex.loader. A Loader is used by one thread.
+	 */
+	public static final class Loader {
+		private static final int CHUNK_SIZE = 4096;
+
+		private final MessageTextIndex index;
+		private final ExecutorService executor;
+		private final int maxPending;
+		private final ArrayDeque<CompletableFuture<Segment>> pending = new ArrayDeque<>();
+
+		private int[] ids = new int[CHUNK_SIZE];
+		private String[] texts = new String[CHUNK_SIZE];
+		private long[] times = new long[CHUNK_SIZE];
+		private int buffered;
+
+		private Loader(MessageTextIndex index, int threads) {
+			this.index = index;
+			this.maxPending = threads * 2; // Bounds the chunks held in memory when reading outpaces building
+			this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable, "search-index-load");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		/***
+		 * Queues a message for the index
+		 * @param messageID must not be negative
+		 * @param text message_text
+		 * @param time time_posted_epoch
+		 */
+		public void add(int messageID, String text, long time) {
+			if (messageID < 0)
+				throw new IndexOutOfBoundsException("messageID < 0: " + messageID);
+
+			ids[buffered] = messageID;
+			texts[buffered] = text;
+			times[buffered] = time;
+			if (++buffered == CHUNK_SIZE)
+				submit();
+		}
+
+		/***
+		 * Merges every queued message into the index and stops the loader's threads
+		 */
+		public void finish() {
+			try {
+				if (buffered > 0)
+					submit();
+
+				while (!pending.isEmpty())
+					index.merge(pending.poll().join());
+			} finally {
+				executor.shutdown();
+			}
+		}
+
+		private void submit() {
+			int[] chunkIDs = ids;
+			String[] chunkTexts = texts;
+			long[] chunkTimes = times;
+			int count = buffered;
+			pending.add(CompletableFuture.supplyAsync(() -> Segment.build(chunkIDs, chunkTexts, chunkTimes, count), executor));
+
+			ids = new int[CHUNK_SIZE];
+			texts = new String[CHUNK_SIZE];
+			times = new long[CHUNK_SIZE];
+			buffered = 0;
+
+			// Merging finished chunks as it goes, in order, and waiting for the oldest once too many are waiting
+			while (!pending.isEmpty() && (pending.peek().isDone() || pending.size() > maxPending))
+				index.merge(pending.poll().join());
+		}
+	}
+
+	/***
+	 * Adds a chunk built by a Loader
+	 */
+	private void merge(Segment segment) {
+		for (int i = 0; i < segment.count; i++)
+			setTime(segment.ids[i], segment.times[i]);
+
+		for (Map.Entry<String, ByteSink> term : segment.postings.entrySet()) {
+			int docCount = segment.docCounts.get(term.getKey());
+			terms.compute(term.getKey(), (key, postings) -> {
+				if (postings == null)
+					postings = new Postings();
+				postings.append(term.getValue(), docCount, times);
+				return postings;
+			});
+		}
+
+		for (int i = 0; i < segment.count; i++)
+			documents.set(segment.ids[i]);
+	}
+
+	/**
+	 * The postings of one chunk of messages, encoded the same way as Postings, each term starting from id -1
+	 */
+	private static final class Segment {
+		final int[] ids;
+		final long[] times;
+		final int count;
+		final Map<String, ByteSink> postings = new HashMap<>();
+		final Map<String, Integer> docCounts = new HashMap<>();
+
+		private Segment(int[] ids, long[] times, int count) {
+			this.ids = ids;
+			this.times = times;
+			this.count = count;
+		}
+
+		static Segment build(int[] ids, String[] texts, long[] times, int count) {
+			// Sorting makes every term's ids ascending even if the caller's were not
+			Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++)
+				order[i] = i;
+			Arrays.sort(order, (a, b) -> Integer.compare(ids[a], ids[b]));
+
+			Segment segment = new Segment(ids, times, count);
+			Map<String, Integer> lastDocs = new HashMap<>();
+			for (int i : order) {
+				for (Map.Entry<String, int[]> term : positionsByTerm(tokenize(texts[i])).entrySet()) {
+					Integer last = lastDocs.put(term.getKey(), ids[i]);
+					if (last != null && last == ids[i])
+						continue; // The same id twice in a chunk; the first text wins
+
+					segment.postings.computeIfAbsent(term.getKey(), key -> new ByteSink(16))
+						.writeEntry(ids[i] - (last == null ? -1 : last), term.getValue(), term.getValue().length);
+					segment.docCounts.merge(term.getKey(), 1, Integer::sum);
+				}
+			}
+
+			return segment;
+		}
+	}
+
+	/**
+	 * The messages containing one term. Only changed inside a compute of the term map, which serializes the writers;
+	 * view is read without any lock.
+	 */
+	private static final class Postings {
+		volatile View view = View.EMPTY;
+
+		/***
+		 * Adds or replaces the entry of a message
+		 * @param times of the index, already holding the message's time
+		 */
+		void add(int doc, int[] positions, AtomicLongArray times) {
+			View current = view;
+
+			// Appending in place is safe: no published view reads past its own length
+			if (doc > current.lastDoc) {
+				ByteSink sink = new ByteSink(current.data, current.length);
+				sink.writeEntry(doc - current.lastDoc, positions, positions.length);
+				BlockBuilder blocks = new BlockBuilder(current.blocks);
+				blocks.add(current.length, current.lastDoc, timeOf(times, doc));
+				view = new View(sink.buffer, sink.length, current.docCount + 1, doc, blocks.build());
+				return;
+			}
+
+			rewrite(current, doc, positions, times);
+		}
+
+		void remove(int doc, AtomicLongArray times) {
+			rewrite(view, doc, null, times);
+		}
+
+		/***
+		 * Appends the postings of a chunk, which start from id -1
+		 */
+		void append(ByteSink chunk, int docCount, AtomicLongArray times) {
+			View current = view;
+			Reader reader = new Reader(new View(chunk.buffer, chunk.length, docCount, Integer.MAX_VALUE, Blocks.EMPTY));
+			reader.next();
+
+			if (reader.doc > current.lastDoc) {
+				// Only the first gap changes; the rest of the chunk is copied as it is, moved by shift bytes
+				ByteSink sink = new ByteSink(current.data, current.length);
+				sink.writeVarint(reader.doc - current.lastDoc);
+				int shift = sink.length - reader.bodyStart;
+				sink.write(chunk.buffer, reader.bodyStart, chunk.length - reader.bodyStart);
+
+				BlockBuilder blocks = new BlockBuilder(current.blocks);
+				blocks.add(current.length, current.lastDoc, timeOf(times, reader.doc));
+				int lastDoc = reader.doc;
+				while (reader.next()) {
+					blocks.add(reader.entryStart + shift, lastDoc, timeOf(times, reader.doc));
+					lastDoc = reader.doc;
+				}
+
+				view = new View(sink.buffer, sink.length, current.docCount + docCount, lastDoc, blocks.build());
+				return;
+			}
+
+			// Out of order with what is indexed already; merged one message at a time
+			do {
+				rewrite(view, reader.doc, Arrays.copyOf(reader.positions(), reader.positionCount), times);
+			} while (reader.next());
+		}
+
+		/***
+		 * Publishes a copy with the entry of a message replaced, inserted, or removed when positions is null
+		 */
+		private void rewrite(View current, int doc, int[] positions, AtomicLongArray times) {
+			Reader reader = new Reader(current);
+			int prefixEnd = 0; // Bytes of the entries before doc, copied as they are
+			int previous = -1;
+			while (reader.next() && reader.doc < doc) {
+				prefixEnd = reader.end;
+				previous = reader.doc;
+			}
+
+			boolean found = reader.valid && reader.doc == doc;
+			if (!found && positions == null)
+				return; // Nothing to remove
+			if (found)
+				reader.next(); // Skipping the entry being replaced
+
+			ByteSink sink = new ByteSink(current.length + 8 + (positions == null ? 0 : 5 * positions.length));
+			sink.write(current.data, 0, prefixEnd);
+
+			int last = previous;
+			if (positions != null) {
+				sink.writeEntry(doc - previous, positions, positions.length);
+				last = doc;
+			}
+
+			int lastDoc = current.lastDoc;
+			if (reader.valid) {
+				// The entry after doc gets a new gap; everything after it is unchanged
+				sink.writeVarint(reader.doc - last);
+				sink.write(current.data, reader.bodyStart, current.length - reader.bodyStart);
+			} else {
+				lastDoc = last;
+			}
+
+			int docCount = current.docCount + (found ? 0 : 1) - (positions == null ? 1 : 0);
+			view = new View(sink.buffer, sink.length, docCount, lastDoc, Blocks.of(sink.buffer, sink.length, times));
+		}
+	}
+
+	/**
+	 * An immutable prefix of a term's postings array
+	 */
+	private static final class View {
+		static final View EMPTY = new View(new byte[0], 0, 0, -1, Blocks.EMPTY);
+
+		final byte[] data;
+		final int length;
+		final int docCount;
+		/**
+		 * Largest id in the postings, -1 when there is none
+		 */
+		final int lastDoc;
+		final Blocks blocks;
+
+		View(byte[] data, int length, int docCount, int lastDoc, Blocks blocks) {
+			this.data = data;
+			this.length = length;
+			this.docCount = docCount;
+			this.lastDoc = lastDoc;
+			this.blocks = blocks;
+		}
+	}
+
+	/**
+	 * The blocks of a view: where each block of BLOCK_SIZE entries starts, the id before it, which its first gap is
+	 * counted from, and the range of times in it. Only the last block is open to more entries. The sealed ones are
+	 * kept in arrays shared by the views that append to them, like the postings array, each view reading only its own
+	 * number of them.
+	 */
+	private static final class Blocks {
+		static final Blocks EMPTY = new BlockBuilder(null).build();
+
+		final int[] starts;
+		final int[] prevDocs;
+		final long[] minTimes;
+		final long[] maxTimes;
+		final int sealed;
+
+		final int openStart;
+		final int openPrevDoc;
+		final int openCount;
+		final long openMinTime;
+		final long openMaxTime;
+
+		Blocks(BlockBuilder builder) {
+			this.starts = builder.starts;
+			this.prevDocs = builder.prevDocs;
+			this.minTimes = builder.minTimes;
+			this.maxTimes = builder.maxTimes;
+			this.sealed = builder.sealed;
+			this.openStart = builder.openStart;
+			this.openPrevDoc = builder.openPrevDoc;
+			this.openCount = builder.openCount;
+			this.openMinTime = builder.openMinTime;
+			this.openMaxTime = builder.openMaxTime;
+		}
+
+		/***
+		 * Cuts postings into blocks from scratch
+		 */
+		static Blocks of(byte[] data, int length, AtomicLongArray times) {
+			Reader reader = new Reader(new View(data, length, 0, -1, EMPTY));
+			BlockBuilder blocks = new BlockBuilder(EMPTY);
+			int previous = -1;
+			while (reader.next()) {
+				blocks.add(reader.entryStart, previous, timeOf(times, reader.doc));
+				previous = reader.doc;
+			}
+
+			return blocks.build();
+		}
+
+		int count() {
+			return sealed + (openCount > 0 ? 1 : 0);
+		}
+
+		int start(int block) {
+			return block < sealed ? starts[block] : openStart;
+		}
+
+		int prevDoc(int block) {
+			return block < sealed ? prevDocs[block] : openPrevDoc;
+		}
+
+		long minTime(int block) {
+			return block < sealed ? minTimes[block] : openMinTime;
+		}
+
+		long maxTime(int block) {
+			return block < sealed ? maxTimes[block] : openMaxTime;
+		}
+
+		/***
+		 * @return the block that holds the id if any block does: the last one starting after an id below it
+		 */
+		int find(int doc) {
+			int low = 0;
+			int high = count() - 1;
+			while (low < high) {
+				int middle = (low + high + 1) >>> 1;
+				if (prevDoc(middle) < doc)
+					low = middle;
+				else
+					high = middle - 1;
+			}
+
+			return low;
+		}
+
+		long estimateBytes() {
+			return 48 + (starts.length == 0 ? 0 : 2 * align(16 + 4L * starts.length) + 2 * align(16 + 8L * starts.length));
+		}
+	}
+
+	/**
+	 * Adds entries to the blocks of a view, for the next view. Sealed blocks are written into the arrays of the view
+	 * it started from past that view's own number of them, so no published view sees the change.
+	 */
+	private static final class BlockBuilder {
+		int[] starts;
+		int[] prevDocs;
+		long[] minTimes;
+		long[] maxTimes;
+		int sealed;
+
+		int openStart;
+		int openPrevDoc = -1;
+		int openCount;
+		long openMinTime = Long.MAX_VALUE;
+		long openMaxTime = Long.MIN_VALUE;
+
+		/***
+		 * @param from the blocks to continue, or null to start without any
+		 */
+		BlockBuilder(Blocks from) {
+			if (from == null) {
+				starts = new int[0];
+				prevDocs = new int[0];
+				minTimes = new long[0];
+				maxTimes = new long[0];
+				return;
+			}
+
+			starts = from.starts;
+			prevDocs = from.prevDocs;
+			minTimes = from.minTimes;
+			maxTimes = from.maxTimes;
+			sealed = from.sealed;
+			openStart = from.openStart;
+			openPrevDoc = from.openPrevDoc;
+			openCount = from.openCount;
+			openMinTime = from.openMinTime;
+			openMaxTime = from.openMaxTime;
+		}
+
+		/***
+		 * Adds the next entry
+		 * @param entryStart offset of the entry in the postings array
+		 * @param prevDoc id of the entry before it, -1 for the first
+		 * @param time of the entry's message
+		 */
+		void add(int entryStart, int prevDoc, long time) {
+			if (openCount == BLOCK_SIZE)
+				seal();
+
+			if (openCount++ == 0) {
+				openStart = entryStart;
+				openPrevDoc = prevDoc;
+			}
+			openMinTime = Math.min(openMinTime, time);
+			openMaxTime = Math.max(openMaxTime, time);
+		}
+
+		Blocks build() {
+			return new Blocks(this);
+		}
+
+		private void seal() {
+			if (sealed == starts.length) {
+				int length = Math.max(4, starts.length * 2);
+				starts = Arrays.copyOf(starts, length);
+				prevDocs = Arrays.copyOf(prevDocs, length);
+				minTimes = Arrays.copyOf(minTimes, length);
+				maxTimes = Arrays.copyOf(maxTimes, length);
+			}
+
+			starts[sealed] = openStart;
+			prevDocs[sealed] = openPrevDoc;
+			minTimes[sealed] = openMinTime;
+			maxTimes[sealed] = openMaxTime;
+			sealed++;
+
+			openCount = 0;
+			openMinTime = Long.MAX_VALUE;
+			openMaxTime = Long.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * Decodes a view one message at a time. Positions are only decoded when asked for.
+	 */
+	private static final class Reader {
+		final byte[] data;
+		final int length;
+		final int docCount;
+		final Blocks blocks;
+
+		boolean valid;
+		int doc = -1;
+		int positionCount;
+		/**
+		 * Offset of the current entry
+		 */
+		int entryStart;
+		/**
+		 * Offset just past the id gap of the current entry
+		 */
+		int bodyStart;
+		/**
+		 * Offset of the next entry
+		 */
+		int end;
+
+		private int offset;
+		private int positionsStart;
+		private int[] positions = new int[8];
+		private boolean positionsDecoded;
+
+		Reader(View view) {
+			this.data = view.data;
+			this.length = view.length;
+			this.docCount = view.docCount;
+			this.blocks = view.blocks;
+		}
+
+		boolean next() {
+			if (offset >= length)
+				return valid = false;
+
+			entryStart = offset;
+			doc += readVarint();
+			bodyStart = offset;
+			positionCount = readVarint();
+			positionsStart = offset;
+			for (int i = 0; i < positionCount; i++) {
+				while (data[offset++] < 0) {
+					// Skipping the continuation bytes of one position
+				}
+			}
+
+			end = offset;
+			positionsDecoded = false;
+			return valid = true;
+		}
+
+		/***
+		 * Moves to the first entry with an id of at least target
+		 * @return false if there is none
+		 */
+		boolean advance(int target) {
+			while (!valid || doc < target) {
+				if (!next())
+					return false;
+			}
+
+			return true;
+		}
+
+		/***
+		 * Moves to the first entry with an id of at least target, back or forth, starting from the target's block
+		 * unless the reader is already on its way through it
+		 * @return false if there is none
+		 */
+		boolean seek(int target) {
+			int block = blocks.find(target);
+			if (!valid || doc > target || entryStart < blocks.start(block))
+				seekBlock(blocks.start(block), blocks.prevDoc(block));
+
+			return advance(target);
+		}
+
+		/***
+		 * Moves to just before the entry at start, whose id gap counts from prevDoc
+		 */
+		void seekBlock(int start, int prevDoc) {
+			offset = start;
+			end = start;
+			doc = prevDoc;
+			valid = false;
+		}
+
+		int[] positions() {
+			if (!positionsDecoded) {
+				if (positions.length < positionCount)
+					positions = new int[positionCount];
+
+				offset = positionsStart;
+				int position = 0;
+				for (int i = 0; i < positionCount; i++) {
+					position += readVarint();
+					positions[i] = position;
+				}
+
+				offset = end;
+				positionsDecoded = true;
+			}
+
+			return positions;
+		}
+
+		boolean hasPosition(int position) {
+			return Arrays.binarySearch(positions(), 0, positionCount, position) >= 0;
+		}
+
+		private int readVarint() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[offset++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+
+			return value;
+		}
+	}
+
+	/**
+	 * A growable byte array that variable-length ints are written to
+	 */
+	private static final class ByteSink {
+		byte[] buffer;
+		int length;
+
+		ByteSink(int capacity) {
+			this.buffer = new byte[Math.max(16, capacity)];
+		}
+
+		/***
+		 * Continues writing into an existing array after its first length bytes
+		 */
+		ByteSink(byte[] buffer, int length) {
+			this.buffer = buffer;
+			this.length = length;
+		}
+
+		void writeEntry(int gap, int[] positions, int count) {
+			writeVarint(gap);
+			writeVarint(count);
+			int previous = 0;
+			for (int i = 0; i < count; i++) {
+				writeVarint(positions[i] - previous);
+				previous = positions[i];
+			}
+		}
+
+		void writeVarint(int value) {
+			ensure(5);
+			while ((value & ~0x7F) != 0) {
+				buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[length++] = (byte) value;
+		}
+
+		void write(byte[] source, int from, int count) {
+			ensure(count);
+			System.arraycopy(source, from, buffer, length, count);
+			length += count;
+		}
+
+		private void ensure(int extra) {
+			if (length + extra > buffer.length)
+				buffer = Arrays.copyOf(buffer, Math.max(length + extra, buffer.length * 2));
+		}
+	}
+
+	/**
+	 * Keeps the best matches seen so far in a heap whose root is the worst of them, in the caller's arrays
+	 */
+	private static final class TopMatches {
+		final int[] ids;
+		final long[] times;
+		int size;
+
+		TopMatches(int[] ids, long[] times) {
+			this.ids = ids;
+			this.times = times;
+		}
+
+		void offer(int id, long time) {
+			if (ids.length == 0)
+				return;
+
+			if (size < ids.length) {
+				ids[size] = id;
+				times[size] = time;
+				siftUp(size++);
+			} else if (worse(ids[0], times[0], id, time)) {
+				ids[0] = id;
+				times[0] = time;
+				siftDown(0, size);
+			}
+		}
+
+		boolean isFull() {
+			return size == ids.length;
+		}
+
+		/***
+		 * @return the time of the lowest ranked match kept, once full
+		 */
+		long worstTime() {
+			return times[0];
+		}
+
+		/***
+		 * @return true if a match would be kept
+		 */
+		boolean admits(int id, long time) {
+			return size < ids.length || worse(ids[0], times[0], id, time);
+		}
+
+		/***
+		 * Sorts the heap best first
+		 * @return the number of matches
+		 */
+		int drain() {
+			for (int end = size - 1; end > 0; end--) {
+				swap(0, end); // The worst left goes to the back
+				siftDown(0, end);
+			}
+
+			return size;
+		}
+
+		/***
+		 * @return true if the first match ranks below the second
+		 */
+		private static boolean worse(int id, long time, int otherID, long otherTime) {
+			return time < otherTime || (time == otherTime && id > otherID);
+		}
+
+		private void siftUp(int index) {
+			while (index > 0) {
+				int parent = (index - 1) >>> 1;
+				if (!worse(ids[index], times[index], ids[parent], times[parent]))
+					return;
+				swap(index, parent);
+				index = parent;
+			}
+		}
+
+		private void siftDown(int index, int end) {
+			while (true) {
+				int child = 2 * index + 1;
+				if (child >= end)
+					return;
+				if (child + 1 < end && worse(ids[child + 1], times[child + 1], ids[child], times[child]))
+					child++;
+				if (!worse(ids[child], times[child], ids[index], times[index]))
+					return;
+				swap(index, child);
+				index = child;
+			}
+		}
+
+		private void swap(int a, int b) {
+			int id = ids[a];
+			ids[a] = ids[b];
+			ids[b] = id;
+			long time = times[a];
+			times[a] = times[b];
+			times[b] = time;
+		}
+	}
+}
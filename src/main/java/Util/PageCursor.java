@@ -0,0 +1,58 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The PageCursor class turns the sort key of the last row of a page into an opaque token that clients send back to
+ * get the next page. The token is a URL-safe encoding of the key values, so no server-side state is kept.
+ */
+public class PageCursor {
+
+	/***
+	 * Encodes the key of the last row of a page
+	 * @param keys sort key values in order, e.g. a message id
+	 * @return the opaque cursor
+	 */
+	public static String encode(long... keys) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < keys.length; i++) {
+			if (i > 0)
+				builder.append(':');
+			builder.append(keys[i]);
+		}
+
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(builder.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/***
+	 * Decodes a cursor produced by encode
+	 * @param cursor the opaque cursor sent by the client
+	 * @param expectedKeys number of key values the caller's sort key has
+	 * @return the key values
+	 * @throws IllegalArgumentException if the cursor is malformed or was made for a different sort key
+	 */
+	public static long[] decode(String cursor, int expectedKeys) {
+		String decoded;
+		try {
+			decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Malformed cursor: " + cursor);
+		}
+
+		String[] parts = decoded.split(":");
+		if (parts.length != expectedKeys)
+			throw new IllegalArgumentException("Malformed cursor: " + cursor);
+
+		long[] keys = new long[expectedKeys];
+		for (int i = 0; i < expectedKeys; i++) {
+			try {
+				keys[i] = Long.parseLong(parts[i]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Malformed cursor: " + cursor);
+			}
+		}
+
+		return keys;
+	}
+}
@@ -0,0 +1,111 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of the ConnectionPool counters. Wait times are reported in microseconds.
+ */
+public class PoolStats {
+	private final int minSize;
+	private final int maxSize;
+	private final int open;
+	private final int active;
+	private final int idle;
+	private final int waiting;
+	private final long acquireCount;
+	private final long averageWaitMicros;
+	private final long maxWaitMicros;
+	private final long acquireTimeouts;
+	private final long validationFailures;
+	private final long evicted;
+	private final long statementCacheHits;
+	private final long statementCacheMisses;
+	private final long statementCacheEvictions;
+
+	public PoolStats(int minSize, int maxSize, int open, int active, int idle, int waiting, long acquireCount,
+			long averageWaitMicros, long maxWaitMicros, long acquireTimeouts, long validationFailures, long evicted,
+			long statementCacheHits, long statementCacheMisses, long statementCacheEvictions) {
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.open = open;
+		this.active = active;
+		this.idle = idle;
+		this.waiting = waiting;
+		this.acquireCount = acquireCount;
+		this.averageWaitMicros = averageWaitMicros;
+		this.maxWaitMicros = maxWaitMicros;
+		this.acquireTimeouts = acquireTimeouts;
+		this.validationFailures = validationFailures;
+		this.evicted = evicted;
+		this.statementCacheHits = statementCacheHits;
+		this.statementCacheMisses = statementCacheMisses;
+		this.statementCacheEvictions = statementCacheEvictions;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return connections currently open, whether lent out or idle
+	 */
+	public int getOpen() {
+		return open;
+	}
+
+	/**
+	 * @return connections currently lent out
+	 */
+	public int getActive() {
+		return active;
+	}
+
+	public int getIdle() {
+		return idle;
+	}
+
+	/**
+	 * @return threads currently blocked waiting for a connection
+	 */
+	public int getWaiting() {
+		return waiting;
+	}
+
+	public long getAcquireCount() {
+		return acquireCount;
+	}
+
+	public long getAverageWaitMicros() {
+		return averageWaitMicros;
+	}
+
+	public long getMaxWaitMicros() {
+		return maxWaitMicros;
+	}
+
+	public long getAcquireTimeouts() {
+		return acquireTimeouts;
+	}
+
+	public long getValidationFailures() {
+		return validationFailures;
+	}
+
+	public long getEvicted() {
+		return evicted;
+	}
+
+	public long getStatementCacheHits() {
+		return statementCacheHits;
+	}
+
+	public long getStatementCacheMisses() {
+		return statementCacheMisses;
+	}
+
+	public long getStatementCacheEvictions() {
+		return statementCacheEvictions;
+	}
+}
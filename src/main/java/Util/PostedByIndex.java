@@ -0,0 +1,304 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The PostedByIndex class maps an account id to the ids of its messages in timeline order (time_posted_epoch
+ * descending, then message_id ascending), using int and long arrays only, so nothing is boxed.
+ *
+ * Accounts are slots of an array indexed by account id, which suits dense auto-increment ids the same way
+ * ConcurrentBitSet does. Each account's ids are kept oldest first, ties by message_id, so that the usual write, a new
+ * message, is an append into spare capacity, even when many messages share a time_posted_epoch. Readers never lock:
+ * every change publishes a new immutable view of the arrays, and an append only writes past the end of every view
+ * already published. Writers to the same account are serialized.
+ */
+public class PostedByIndex {
+	/**
+	 * Replaced (never mutated in size) when more accounts are needed
+	 */
+	private volatile AtomicReferenceArray<Postings> accounts;
+	private final Object growLock = new Object();
+
+	/***
+	 * @param initialAccounts number of account slots to allocate up front
+	 */
+	public PostedByIndex(int initialAccounts) {
+		accounts = new AtomicReferenceArray<>(Math.max(1, initialAccounts));
+	}
+
+	/***
+	 * Adds a message to its account; adding a message that is already there does nothing
+	 * @param postedBy account id, must not be negative
+	 * @param messageID
+	 * @param time time_posted_epoch of the message
+	 */
+	public void add(int postedBy, int messageID, long time) {
+		if (postedBy < 0)
+			throw new IndexOutOfBoundsException("postedBy < 0: " + postedBy);
+
+		Postings postings = accounts.length() > postedBy ? accounts.get(postedBy) : null;
+		if (postings == null)
+			postings = createPostings(postedBy);
+
+		postings.add(messageID, time);
+	}
+
+	/***
+	 * Removes a message from its account, if it is there
+	 * @param postedBy account id
+	 * @param messageID
+	 * @param time time_posted_epoch of the message
+	 */
+	public void remove(int postedBy, int messageID, long time) {
+		Postings postings = postingsOf(postedBy);
+		if (postings != null)
+			postings.remove(messageID, time);
+	}
+
+	/***
+	 * @param postedBy account id
+	 * @return the number of messages of the account
+	 */
+	public int count(int postedBy) {
+		Postings postings = postingsOf(postedBy);
+		return postings == null ? 0 : postings.view.size;
+	}
+
+	/***
+	 * Copies a page of an account's timeline into caller-provided arrays
+	 * @param postedBy account id
+	 * @param afterTime time_posted_epoch of the last message already seen (Long.MAX_VALUE for the first page)
+	 * @param afterID message_id of the last message already seen (Integer.MIN_VALUE for the first page)
+	 * @param ids receives the message ids in timeline order; its length is the page size
+	 * @param times receives the matching time_posted_epoch values, at least as long as ids
+	 * @return the number of entries written
+	 */
+	public int page(int postedBy, long afterTime, int afterID, int[] ids, long[] times) {
+		Postings postings = postingsOf(postedBy);
+		if (postings == null)
+			return 0;
+
+		View view = postings.view; // One consistent view for the whole page
+
+		// Reading the runs of equal times backwards gives newest first; each run is read forwards, ids ascending
+		int count = 0;
+		int runEnd = view.upperBound(afterTime, Integer.MAX_VALUE);
+		while (runEnd > 0 && count < ids.length) {
+			long time = view.times[runEnd - 1];
+			int runStart = view.lowerBound(time, Integer.MIN_VALUE);
+
+			// In the key's own run only the larger ids follow it
+			int from = time == afterTime ? view.upperBound(time, afterID) : runStart;
+			for (int i = from; i < runEnd && count < ids.length; i++, count++) {
+				ids[count] = view.ids[i];
+				times[count] = time;
+			}
+
+			runEnd = runStart;
+		}
+
+		return count;
+	}
+
+	/***
+	 * @return the number of messages in the index
+	 */
+	public long size() {
+		AtomicReferenceArray<Postings> current = accounts;
+		long size = 0;
+		for (int i = 0; i < current.length(); i++) {
+			Postings postings = current.get(i);
+			if (postings != null)
+				size += postings.view.size;
+		}
+
+		return size;
+	}
+
+	/***
+	 * @return the number of accounts with at least one slot allocated
+	 */
+	public int accountCount() {
+		AtomicReferenceArray<Postings> current = accounts;
+		int count = 0;
+		for (int i = 0; i < current.length(); i++) {
+			if (current.get(i) != null)
+				count++;
+		}
+
+		return count;
+	}
+
+	/***
+	 * Estimates the heap taken by the index with the usual 64-bit JVM layout (compressed references, 16 byte array
+	 * headers, 12 byte object headers rounded to 8 bytes)
+	 * @return the estimate in bytes
+	 */
+	public long estimateBytes() {
+		AtomicReferenceArray<Postings> current = accounts;
+		long bytes = 16 + align(16 + 4L * current.length()); // The AtomicReferenceArray and its slot array
+		for (int i = 0; i < current.length(); i++) {
+			Postings postings = current.get(i);
+			if (postings == null)
+				continue;
+
+			View view = postings.view;
+			bytes += 16 + 24; // Postings, View
+			bytes += align(16 + 4L * view.ids.length) + align(16 + 8L * view.times.length);
+		}
+
+		return bytes;
+	}
+
+	private Postings postingsOf(int postedBy) {
+		AtomicReferenceArray<Postings> current = accounts;
+		if (postedBy < 0 || postedBy >= current.length())
+			return null;
+
+		return current.get(postedBy);
+	}
+
+	/***
+	 * Creates the slot of an account, growing the account array if needed
+	 */
+	private Postings createPostings(int postedBy) {
+		synchronized (growLock) {
+			AtomicReferenceArray<Postings> current = accounts;
+			if (postedBy >= current.length()) {
+				// Doubling keeps the number of copies logarithmic in the largest account id
+				int newLength = (int) Math.min(Integer.MAX_VALUE, Math.max(postedBy + 1L, current.length() * 2L));
+				AtomicReferenceArray<Postings> grown = new AtomicReferenceArray<>(newLength);
+				for (int i = 0; i < current.length(); i++)
+					grown.set(i, current.get(i));
+
+				accounts = grown;
+				current = grown;
+			}
+
+			Postings postings = current.get(postedBy);
+			if (postings == null) {
+				postings = new Postings();
+				current.set(postedBy, postings);
+			}
+
+			return postings;
+		}
+	}
+
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	/**
+	 * The messages of one account. Only view is read without the lock.
+	 */
+	private static final class Postings {
+		volatile View view = View.EMPTY;
+
+		synchronized void add(int messageID, long time) {
+			View current = view;
+			int index = current.lowerBound(time, messageID);
+			if (current.contains(time, messageID))
+				return; // Already indexed
+
+			// Appending in place is safe: no published view reads past its own size
+			if (index == current.size && current.size < current.ids.length) {
+				current.ids[index] = messageID;
+				current.times[index] = time;
+				view = new View(current.ids, current.times, current.size + 1);
+				return;
+			}
+
+			int capacity = current.size < current.ids.length ? current.ids.length : Math.max(4, current.ids.length * 2);
+			int[] ids = new int[capacity];
+			long[] times = new long[capacity];
+			System.arraycopy(current.ids, 0, ids, 0, index);
+			System.arraycopy(current.times, 0, times, 0, index);
+			ids[index] = messageID;
+			times[index] = time;
+			System.arraycopy(current.ids, index, ids, index + 1, current.size - index);
+			System.arraycopy(current.times, index, times, index + 1, current.size - index);
+
+			view = new View(ids, times, current.size + 1);
+		}
+
+		synchronized void remove(int messageID, long time) {
+			View current = view;
+			int index = current.lowerBound(time, messageID);
+			if (!current.contains(time, messageID))
+				return; // Not indexed
+
+			// Copying, because readers of the current view may be reading the slot being removed
+			int[] ids = new int[current.ids.length];
+			long[] times = new long[current.times.length];
+			System.arraycopy(current.ids, 0, ids, 0, index);
+			System.arraycopy(current.times, 0, times, 0, index);
+			System.arraycopy(current.ids, index + 1, ids, index, current.size - index - 1);
+			System.arraycopy(current.times, index + 1, times, index, current.size - index - 1);
+
+			view = new View(ids, times, current.size - 1);
+		}
+	}
+
+	/**
+	 * An immutable prefix of an account's arrays, oldest first: time_posted_epoch ascending, then message_id
+	 * ascending. Runs of equal times are in timeline order; the runs themselves are in reverse.
+	 */
+	private static final class View {
+		static final View EMPTY = new View(new int[0], new long[0], 0);
+
+		final int[] ids;
+		final long[] times;
+		final int size;
+
+		View(int[] ids, long[] times, int size) {
+			this.ids = ids;
+			this.times = times;
+			this.size = size;
+		}
+
+		/***
+		 * @return the index of the first entry that does not sort before the key
+		 */
+		int lowerBound(long time, int id) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				boolean before = times[middle] < time || (times[middle] == time && ids[middle] < id);
+				if (before)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+
+			return low;
+		}
+
+		/***
+		 * @return the index of the first entry that sorts after the key
+		 */
+		int upperBound(long time, int id) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				boolean notAfter = times[middle] < time || (times[middle] == time && ids[middle] <= id);
+				if (notAfter)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+
+			return low;
+		}
+
+		/***
+		 * @return true if the key is in the view
+		 */
+		boolean contains(long time, int id) {
+			int index = lowerBound(time, id);
+			return index < size && times[index] == time && ids[index] == id;
+		}
+	}
+}
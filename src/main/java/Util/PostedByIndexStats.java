@@ -0,0 +1,34 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of the size of a PostedByIndex.
+ */
+public class PostedByIndexStats {
+	private final int accounts;
+	private final long messages;
+	private final long estimatedBytes;
+
+	public PostedByIndexStats(int accounts, long messages, long estimatedBytes) {
+		this.accounts = accounts;
+		this.messages = messages;
+		this.estimatedBytes = estimatedBytes;
+	}
+
+	/**
+	 * @return accounts that have posted since the index was loaded, or before
+	 */
+	public int getAccounts() {
+		return accounts;
+	}
+
+	public long getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return estimated heap taken by the index, see PostedByIndex.estimateBytes
+	 */
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+}
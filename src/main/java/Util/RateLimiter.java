@@ -0,0 +1,171 @@
+package Util;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The RateLimiter class keeps a token bucket for every key, an account id, that refills at a fixed rate up to a
+ * burst. It never locks: each bucket is a single AtomicLong holding the time at which it will be full again (the
+ * generic cell rate algorithm), so taking tokens is one read and one compare-and-set, retried only when another
+ * thread took tokens from the same bucket in between.
+ *
+ * A bucket whose full time has passed holds nothing a new bucket would not, so it may be dropped. When the number of
+ * buckets reaches the limit, the thread that adds the next one sweeps a few more buckets from where the last sweep
+ * stopped, so no single request pays for a pass over the whole map. A thread still holding a dropped bucket takes
+ * its tokens from the dropped copy; that bucket was full, so at most one request's tokens are forgotten. A key that
+ * finds no room even after its sweep is turned away like a key out of tokens, never let through untracked.
+ */
+public class RateLimiter {
+	/**
+	 * Buckets looked at by one sweep step
+	 */
+	static final int SWEEP_STEP = 64;
+
+	private final int perSecond;
+	private final int burst;
+	private final int maxKeys;
+	private final long intervalNanos; // between two tokens
+	private final long burstNanos; // how far past now a bucket may be drawn before a request
+
+	private final ConcurrentHashMap<Integer, AtomicLong> buckets = new ConcurrentHashMap<>();
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+	/**
+	 * Where the next sweep step starts; only used by the thread that set sweeping
+	 */
+	private Iterator<AtomicLong> sweepCursor;
+
+	// Adders rather than atomics, so that the counters are not the point every thread contends on
+	private final LongAdder allowed = new LongAdder();
+	private final LongAdder limited = new LongAdder();
+	private final LongAdder full = new LongAdder();
+	private final AtomicLong evicted = new AtomicLong();
+
+	/***
+	 * @param perSecond tokens added to a bucket every second
+	 * @param burst tokens a full bucket holds
+	 * @param maxKeys buckets kept at most
+	 */
+	public RateLimiter(int perSecond, int burst, int maxKeys) {
+		if (perSecond < 1 || burst < 1 || maxKeys < 1)
+			throw new IllegalArgumentException("Invalid rate limit: " + perSecond + "/s, burst " + burst + ", keys " + maxKeys);
+
+		this.perSecond = perSecond;
+		this.burst = burst;
+		this.maxKeys = maxKeys;
+		this.intervalNanos = 1_000_000_000L / perSecond;
+		this.burstNanos = intervalNanos * burst;
+	}
+
+	/***
+	 * Takes a token from the key's bucket
+	 * @param key
+	 * @return 0 if a token was taken, otherwise the nanoseconds until the bucket has one
+	 */
+	public long tryAcquire(int key) {
+		return tryAcquire(key, 1);
+	}
+
+	/***
+	 * Takes several tokens from the key's bucket at once, or none. More tokens than the burst need a full bucket and
+	 * leave it in debt for the rest, so the key waits for every token it took before its next request, and a large
+	 * batch costs as much as the same writes one by one.
+	 * @param key
+	 * @param tokens at least 1
+	 * @return 0 if the tokens were taken, otherwise the nanoseconds until the bucket has them, or is full
+	 */
+	public long tryAcquire(int key, int tokens) {
+		long now = System.nanoTime();
+		long cost = intervalNanos * Math.max(1, tokens);
+		long needed = Math.min(cost, burstNanos); // What has to be in the bucket; the rest is borrowed
+
+		AtomicLong bucket = buckets.get(key);
+		if (bucket == null) {
+			bucket = addBucket(key, now);
+			if (bucket == null) {
+				full.increment();
+				return intervalNanos; // No room; a bucket may well be free again by then
+			}
+		}
+
+		while (true) {
+			long fullAt = bucket.get();
+			long from = fullAt - now > 0 ? fullAt : now;
+			long over = from + needed - now - burstNanos;
+			if (over > 0) {
+				limited.increment();
+				return over;
+			}
+
+			if (bucket.compareAndSet(fullAt, from + cost)) {
+				allowed.increment();
+				return 0;
+			}
+		}
+	}
+
+	/***
+	 * Gives back tokens taken by tryAcquire for a request that was turned away after all, e.g. for the limit of
+	 * another key
+	 * @param key
+	 * @param tokens as passed to tryAcquire
+	 */
+	public void release(int key, int tokens) {
+		AtomicLong bucket = buckets.get(key);
+		if (bucket != null)
+			bucket.addAndGet(-intervalNanos * Math.max(1, tokens));
+	}
+
+	/***
+	 * @return a snapshot of the limiter's counters
+	 */
+	public RateLimiterStats getStats() {
+		return new RateLimiterStats(perSecond, burst, buckets.size(), maxKeys, allowed.sum(), limited.sum(),
+				full.sum(), evicted.get());
+	}
+
+	/**
+	 * @return the key's new full bucket, or null if there is no room for it
+	 */
+	private AtomicLong addBucket(int key, long now) {
+		if (buckets.size() >= maxKeys) {
+			if (!sweeping.compareAndSet(false, true))
+				return null; // Another thread is making room; not waiting for it
+
+			try {
+				sweepStep(now);
+			} finally {
+				sweeping.set(false);
+			}
+
+			if (buckets.size() >= maxKeys)
+				return null;
+		}
+
+		AtomicLong created = new AtomicLong(now);
+		AtomicLong existing = buckets.putIfAbsent(key, created);
+		return existing != null ? existing : created;
+	}
+
+	/**
+	 * Drops the buckets that are full again among the next SWEEP_STEP, starting over at the end of the map
+	 */
+	private void sweepStep(long now) {
+		for (int i = 0; i < SWEEP_STEP; i++) {
+			if (sweepCursor == null || !sweepCursor.hasNext()) {
+				if (i > 0 && sweepCursor != null)
+					return; // One pass over a small map is enough for this step
+				sweepCursor = buckets.values().iterator();
+				if (!sweepCursor.hasNext())
+					return;
+			}
+
+			if (sweepCursor.next().get() - now <= 0) {
+				sweepCursor.remove();
+				evicted.incrementAndGet();
+			}
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of the RateLimiter counters.
+ */
+public class RateLimiterStats {
+	private final int perSecond;
+	private final int burst;
+	private final int accounts;
+	private final int maxAccounts;
+	private final long allowed;
+	private final long limited;
+	private final long full;
+	private final long evicted;
+
+	public RateLimiterStats(int perSecond, int burst, int accounts, int maxAccounts, long allowed, long limited,
+			long full, long evicted) {
+		this.perSecond = perSecond;
+		this.burst = burst;
+		this.accounts = accounts;
+		this.maxAccounts = maxAccounts;
+		this.allowed = allowed;
+		this.limited = limited;
+		this.full = full;
+		this.evicted = evicted;
+	}
+
+	public int getPerSecond() {
+		return perSecond;
+	}
+
+	public int getBurst() {
+		return burst;
+	}
+
+	/**
+	 * @return accounts with a bucket right now
+	 */
+	public int getAccounts() {
+		return accounts;
+	}
+
+	public int getMaxAccounts() {
+		return maxAccounts;
+	}
+
+	public long getAllowed() {
+		return allowed;
+	}
+
+	/**
+	 * @return requests turned away, each answered with 429
+	 */
+	public long getLimited() {
+		return limited;
+	}
+
+	/**
+	 * @return requests turned away, also with 429, because every bucket was in use and none could be added
+	 */
+	public long getFull() {
+		return full;
+	}
+
+	/**
+	 * @return idle buckets dropped to make room
+	 */
+	public long getEvicted() {
+		return evicted;
+	}
+}
@@ -0,0 +1,34 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of the size of a MessageTextIndex.
+ */
+public class SearchIndexStats {
+	private final int terms;
+	private final int messages;
+	private final long estimatedBytes;
+
+	public SearchIndexStats(int terms, int messages, long estimatedBytes) {
+		this.terms = terms;
+		this.messages = messages;
+		this.estimatedBytes = estimatedBytes;
+	}
+
+	/**
+	 * @return distinct terms of the indexed messages
+	 */
+	public int getTerms() {
+		return terms;
+	}
+
+	public int getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return estimated heap taken by the index, see MessageTextIndex.estimateBytes
+	 */
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+}
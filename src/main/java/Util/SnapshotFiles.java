@@ -0,0 +1,93 @@
+package Util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The SnapshotFiles class holds the file handling shared by the in-memory repositories' snapshots: a header that
+ * identifies the writer, strings of any length, and writing through a temporary file so that a crash mid-save never
+ * leaves a torn snapshot behind.
+ */
+public class SnapshotFiles {
+	/**
+	 * Writes a snapshot
+	 */
+	@FunctionalInterface
+	public interface Writer {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	/***
+	 * Writes a snapshot next to the target, then moves it over the target
+	 * @param file the target
+	 * @param magic identifies the kind of snapshot
+	 * @param writer writes the body
+	 * @throws IOException
+	 */
+	public static void save(Path file, int magic, Writer writer) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+		try {
+			try (OutputStream stream = Files.newOutputStream(temporary);
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+				out.writeInt(magic);
+				writer.write(out);
+			}
+
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/***
+	 * Opens a snapshot and checks its header
+	 * @param file
+	 * @param magic the kind of snapshot expected
+	 * @return the stream positioned after the header; the caller closes it
+	 * @throws IOException if the file cannot be read or holds another kind of snapshot
+	 */
+	public static DataInputStream open(Path file, int magic) throws IOException {
+		InputStream stream = Files.newInputStream(file);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+		if (in.readInt() != magic) {
+			in.close();
+			throw new IOException("Not a snapshot of the expected kind: " + file);
+		}
+
+		return in;
+	}
+
+	/***
+	 * Writes a string of any length as UTF-8 (DataOutputStream.writeUTF stops at 64KB)
+	 */
+	public static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/***
+	 * Reads a string written by writeString
+	 */
+	public static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			throw new IOException("Corrupt snapshot: string of length " + length);
+
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,242 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The StatementCache class keeps the prepared statements of one physical connection open between borrows, keyed by
+ * their SQL text, so that repeated queries are parsed and planned once. The least recently used statement is closed
+ * when the cache grows past its maximum size.
+ *
+ * A cache belongs to a single pooled connection and is therefore only ever used by one thread at a time.
+ *
+ * Every statement handed out answers getConnection() with the borrower's connection rather than the physical one, so
+ * that closing what it returns gives the connection back to the pool instead of closing it behind the pool's back.
+ */
+public class StatementCache {
+	/**
+	 * Counters shared by every cache of a pool
+	 */
+	public static class Counters {
+		final AtomicLong hits = new AtomicLong();
+		final AtomicLong misses = new AtomicLong();
+		final AtomicLong evictions = new AtomicLong();
+	}
+
+	private final Connection physical;
+	private final int maxSize;
+	private final Counters counters;
+
+	/**
+	 * Access-ordered so that iteration starts at the least recently used statement
+	 */
+	private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+	/***
+	 * @param physical connection the statements are prepared on
+	 * @param maxSize number of statements kept open, 0 disables caching
+	 * @param counters shared hit, miss and eviction counters
+	 */
+	public StatementCache(Connection physical, int maxSize, Counters counters) {
+		this.physical = physical;
+		this.maxSize = maxSize;
+		this.counters = counters;
+	}
+
+	/***
+	 * Returns the cached statement for the SQL text or prepares and caches a new one. Closing the returned statement
+	 * puts it back into the cache rather than closing it.
+	 * @param sql text of the statement
+	 * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+	 * @param owner the connection the caller borrowed, returned by the statement's getConnection()
+	 * @return a statement owned by the caller until it is closed
+	 * @throws SQLException if the statement could not be prepared
+	 */
+	public PreparedStatement prepare(String sql, int autoGeneratedKeys, Connection owner) throws SQLException {
+		if (maxSize <= 0)
+			return (PreparedStatement) withOwner(physical.prepareStatement(sql, autoGeneratedKeys), owner);
+
+		String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : "N:" + sql;
+
+		CachedStatement cached = statements.get(key);
+		if (cached != null) {
+			// The same SQL can be open twice when one query runs inside another; the inner one is not cached
+			if (cached.inUse) {
+				counters.misses.incrementAndGet();
+				return (PreparedStatement) withOwner(physical.prepareStatement(sql, autoGeneratedKeys), owner);
+			}
+
+			counters.hits.incrementAndGet();
+			cached.inUse = true;
+			cached.owner = owner;
+			return cached.proxy;
+		}
+
+		counters.misses.incrementAndGet();
+		cached = new CachedStatement(physical.prepareStatement(sql, autoGeneratedKeys));
+		cached.inUse = true;
+		cached.owner = owner;
+		statements.put(key, cached);
+		evictLeastRecentlyUsed();
+
+		return cached.proxy;
+	}
+
+	/***
+	 * Closes every cached statement, used when the physical connection is closed
+	 */
+	public void closeAll() {
+		for (CachedStatement cached : statements.values())
+			closeQuietly(cached.statement);
+
+		statements.clear();
+	}
+
+	/***
+	 * Wraps a statement that is not cached so that its getConnection() returns the borrower's connection
+	 * @param statement on the physical connection
+	 * @param owner the connection the caller borrowed
+	 * @return a statement of the same kind
+	 */
+	static Statement withOwner(Statement statement, Connection owner) {
+		Class<?> kind = statement instanceof CallableStatement ? CallableStatement.class
+				: statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+
+		return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { kind },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+						case "getConnection":
+							return owner;
+						case "equals":
+							return proxy == args[0];
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						default:
+							break;
+					}
+
+					try {
+						return method.invoke(statement, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+	}
+
+	private void evictLeastRecentlyUsed() {
+		Iterator<CachedStatement> leastRecentFirst = statements.values().iterator();
+		while (statements.size() > maxSize && leastRecentFirst.hasNext()) {
+			CachedStatement cached = leastRecentFirst.next();
+			leastRecentFirst.remove();
+			counters.evictions.incrementAndGet();
+
+			// A statement that is still in use is closed by its owner instead
+			if (cached.inUse)
+				cached.evicted = true;
+			else
+				closeQuietly(cached.statement);
+		}
+	}
+
+	private static void closeQuietly(Statement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			System.out.println(e.toString());
+		}
+	}
+
+	/**
+	 * A physical statement and the proxy its borrowers see
+	 */
+	private static class CachedStatement implements InvocationHandler {
+		final PreparedStatement statement;
+		final PreparedStatement proxy;
+		boolean inUse;
+		boolean evicted;
+		/**
+		 * The borrowed connection of the current user
+		 */
+		Connection owner;
+		/**
+		 * Last result set handed out, closed when the statement goes back to the cache
+		 */
+		ResultSet openResult;
+
+		CachedStatement(PreparedStatement statement) {
+			this.statement = statement;
+			this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+				PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class },
+				this
+			);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					returnToCache();
+					return null;
+				case "isClosed":
+					return !inUse || statement.isClosed();
+				case "getConnection":
+					if (inUse)
+						return owner;
+					break;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				default:
+					break;
+			}
+
+			if (!inUse)
+				throw new SQLException("Statement has already been closed", "HY010");
+
+			Object result;
+			try {
+				result = method.invoke(statement, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+
+			if (result instanceof ResultSet)
+				openResult = (ResultSet) result;
+
+			return result;
+		}
+
+		private void returnToCache() throws SQLException {
+			if (!inUse)
+				return;
+
+			inUse = false;
+			owner = null;
+
+			if (openResult != null) {
+				openResult.close();
+				openResult = null;
+			}
+
+			if (evicted)
+				statement.close();
+			else {
+				statement.clearParameters();
+				statement.clearBatch();
+			}
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package Util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The TimePostedIndex class keeps the ids of every message ordered by time_posted_epoch, newest first, then by
+ * message_id, the order of a timeline, so that the messages of any time range can be found without a query.
+ *
+ * It is a navigable map from time_posted_epoch to a bucket of the ids posted at that time. Times are often whole
+ * seconds, so many messages share a bucket and cost one int in its array rather than a map entry of their own. A new
+ * message usually has the largest id yet, so adding it appends into spare capacity past the end of every published
+ * view of its bucket, the same way PostedByIndex appends. Readers never lock; writers to the same bucket are
+ * serialized.
+ */
+public class TimePostedIndex {
+	private final ConcurrentSkipListMap<Long, Bucket> byTime = new ConcurrentSkipListMap<>(Comparator.reverseOrder());
+
+	/***
+	 * Adds a message; adding a message that is already there does nothing
+	 * @param messageID
+	 * @param time time_posted_epoch of the message
+	 */
+	public void add(int messageID, long time) {
+		// A bucket emptied by a remove is retired before it leaves the map; adding then waits for a fresh one
+		while (!byTime.computeIfAbsent(time, key -> new Bucket()).add(messageID))
+			Thread.onSpinWait();
+	}
+
+	/***
+	 * Removes a message, if it is there
+	 * @param messageID
+	 * @param time time_posted_epoch of the message
+	 */
+	public void remove(int messageID, long time) {
+		Bucket bucket = byTime.get(time);
+		if (bucket != null && bucket.remove(messageID))
+			byTime.remove(time, bucket);
+	}
+
+	/***
+	 * Copies the keys of the messages that follow a key into caller-provided arrays
+	 * @param afterTime time_posted_epoch of the last message already seen (Long.MAX_VALUE to start at the newest)
+	 * @param afterID message_id of the last message already seen (Integer.MIN_VALUE to start at the newest)
+	 * @param ids receives the message ids newest first; its length is the page size
+	 * @param times receives the matching time_posted_epoch values, at least as long as ids
+	 * @return the number of entries written
+	 */
+	public int page(long afterTime, int afterID, int[] ids, long[] times) {
+		int count = 0;
+		for (Map.Entry<Long, Bucket> entry : byTime.tailMap(afterTime, true).entrySet()) {
+			long time = entry.getKey();
+			View view = entry.getValue().view; // One consistent view per bucket
+
+			// At the key's own time only the larger ids follow it
+			int from = 0;
+			if (time == afterTime) {
+				int index = Arrays.binarySearch(view.ids, 0, view.size, afterID);
+				from = index >= 0 ? index + 1 : -index - 1;
+			}
+
+			for (int i = from; i < view.size && count < ids.length; i++, count++) {
+				ids[count] = view.ids[i];
+				times[count] = time;
+			}
+
+			if (count == ids.length)
+				break;
+		}
+
+		return count;
+	}
+
+	/***
+	 * @return the number of messages in the index; it walks the map, so it is meant for metrics
+	 */
+	public long size() {
+		long size = 0;
+		for (Bucket bucket : byTime.values())
+			size += bucket.view.size;
+
+		return size;
+	}
+
+	/***
+	 * Estimates the heap taken by the index with the usual 64-bit JVM layout: per bucket a skip list node, the boxed
+	 * time, the Bucket, its View and its id array, plus index nodes for about one bucket in four
+	 * @return the estimate in bytes
+	 */
+	public long estimateBytes() {
+		long bytes = 64;
+		for (Bucket bucket : byTime.values())
+			bytes += 24 + 24 + 16 + 24 + ((16 + 4L * bucket.view.ids.length + 7) & ~7L) + 6;
+
+		return bytes;
+	}
+
+	/**
+	 * The ids posted at one time. Only view is read without the lock.
+	 */
+	private static final class Bucket {
+		volatile View view = View.EMPTY;
+		/**
+		 * Set once the bucket is empty and about to leave the map
+		 */
+		private boolean retired;
+
+		/***
+		 * @return false if the bucket is retired and the id was not added
+		 */
+		synchronized boolean add(int messageID) {
+			if (retired)
+				return false;
+
+			View current = view;
+			int index = Arrays.binarySearch(current.ids, 0, current.size, messageID);
+			if (index >= 0)
+				return true; // Already indexed
+
+			int insertAt = -index - 1;
+
+			// Appending in place is safe: no published view reads past its own size
+			if (insertAt == current.size && current.size < current.ids.length) {
+				current.ids[insertAt] = messageID;
+				view = new View(current.ids, current.size + 1);
+				return true;
+			}
+
+			int capacity = current.size < current.ids.length ? current.ids.length : Math.max(2, current.ids.length * 2);
+			int[] ids = new int[capacity];
+			System.arraycopy(current.ids, 0, ids, 0, insertAt);
+			ids[insertAt] = messageID;
+			System.arraycopy(current.ids, insertAt, ids, insertAt + 1, current.size - insertAt);
+
+			view = new View(ids, current.size + 1);
+			return true;
+		}
+
+		/***
+		 * @return true if the bucket is now empty and retired
+		 */
+		synchronized boolean remove(int messageID) {
+			View current = view;
+			int index = Arrays.binarySearch(current.ids, 0, current.size, messageID);
+			if (index < 0)
+				return false; // Not indexed
+
+			if (current.size == 1) {
+				view = View.EMPTY;
+				retired = true;
+				return true;
+			}
+
+			// Copying, because readers of the current view may be reading the slot being removed
+			int[] ids = new int[current.ids.length];
+			System.arraycopy(current.ids, 0, ids, 0, index);
+			System.arraycopy(current.ids, index + 1, ids, index, current.size - index - 1);
+
+			view = new View(ids, current.size - 1);
+			return false;
+		}
+	}
+
+	/**
+	 * An immutable prefix of a bucket's array, ids ascending
+	 */
+	private static final class View {
+		static final View EMPTY = new View(new int[0], 0);
+
+		final int[] ids;
+		final int size;
+
+		View(int[] ids, int size) {
+			this.ids = ids;
+			this.size = size;
+		}
+	}
+}
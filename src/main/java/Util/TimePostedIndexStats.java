@@ -0,0 +1,25 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of the size of a TimePostedIndex.
+ */
+public class TimePostedIndexStats {
+	private final long messages;
+	private final long estimatedBytes;
+
+	public TimePostedIndexStats(long messages, long estimatedBytes) {
+		this.messages = messages;
+		this.estimatedBytes = estimatedBytes;
+	}
+
+	public long getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return estimated heap taken by the index, see TimePostedIndex.estimateBytes
+	 */
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+}
@@ -12,6 +12,10 @@ create table message (
     time_posted_epoch bigint,
     foreign key (posted_by) references  account(account_id)
 );
+-- serves the per-account timeline: an index seek on posted_by, already in newest-first order
+create index message_posted_by_time_idx on message (posted_by, time_posted_epoch desc, message_id);
+-- serves time range queries over all messages, in the same newest-first order
+create index message_time_idx on message (time_posted_epoch desc, message_id);
 
 insert into account (username, password) values ('testuser1', 'password');
 insert into message (posted_by, message_text, time_posted_epoch) values (1,'test message 1',1669947792);
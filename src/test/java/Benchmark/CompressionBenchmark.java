@@ -0,0 +1,147 @@
+package Benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nixxcode.jvmbrotli.common.BrotliLoader;
+
+import Controller.MessageJsonCache;
+import Model.Message;
+import io.javalin.compression.LeveledBrotliStream;
+import io.javalin.compression.LeveledGzipStream;
+
+/**
+ * Compares the size and the CPU time of compressing message list responses with the gzip and brotli streams Javalin
+ * uses, at several levels. The pages are built like the list endpoints build them, a JSON array of the cached JSON of
+ * each message, from generated messages: text of common words with the odd mention, hashtag and number, a few
+ * hundred posting accounts and times a few seconds apart.
+ *
+ * Not a unit test; run it with
+ *  mvn -q test-compile exec:java -Dexec.mainClass=Benchmark.CompressionBenchmark -Dexec.classpathScope=test
+ * or straight from the IDE.
+ */
+public class CompressionBenchmark {
+    private static final int[] PAGE_SIZES = { 20, 100, 1000 };
+    private static final int[] GZIP_LEVELS = { 1, 6, 9 };
+    private static final int[] BROTLI_LEVELS = { 1, 4, 6, 9, 11 };
+    private static final long MEASURED_NANOS = 1_000_000_000L;
+
+    private static final String[] WORDS = ("the be to of and a in that have I it for not on with he as you do at this "
+            + "but his by from they we say her she or an will my one all would there their what so up out if about who "
+            + "get which go me when make can like time no just him know take people into year your good some could them "
+            + "see other than then now look only come its over think also back after use two how our work first well way "
+            + "even new want because any these give day most us great today really love coffee morning weekend game "
+            + "team season music album show movie night friends family city weather rain sun launch update release "
+            + "project code bug deploy server database query cache latency feature review meeting lunch dinner trip").split(" ");
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Keeps the JIT from dropping the work being measured
+     */
+    private static long sink;
+
+    private interface Compressor {
+        OutputStream wrap(OutputStream out) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        MessageJsonCache cache = new MessageJsonCache(new ObjectMapper());
+        boolean brotli = BrotliLoader.isBrotliAvailable();
+        if (!brotli)
+            System.out.println("The brotli native library is not available here; only gzip is measured");
+
+        for (int pageSize : PAGE_SIZES) {
+            byte[] page = buildPage(cache, pageSize, new Random(pageSize));
+            System.out.println(pageSize + " messages, " + String.format("%,d", page.length) + " bytes:");
+
+            for (int level : GZIP_LEVELS)
+                System.out.println("  gzip   " + level + "   " + measure(page, out -> new LeveledGzipStream(out, level)));
+
+            if (brotli) {
+                for (int level : BROTLI_LEVELS)
+                    System.out.println("  brotli " + String.format("%-3d", level) + " " + measure(page, out -> new LeveledBrotliStream(out, level)));
+            }
+        }
+    }
+
+    private static String measure(byte[] page, Compressor compressor) throws Exception {
+        int size = compress(page, compressor);
+
+        // Warming up for about as long as the measurement
+        long warmupEnd = System.nanoTime() + MEASURED_NANOS;
+        while (System.nanoTime() < warmupEnd)
+            sink += compress(page, compressor);
+
+        long rounds = 0;
+        long cpuStart = THREADS.getCurrentThreadCpuTime();
+        long end = System.nanoTime() + MEASURED_NANOS;
+        while (System.nanoTime() < end) {
+            sink += compress(page, compressor);
+            rounds++;
+        }
+        long cpuNanos = THREADS.getCurrentThreadCpuTime() - cpuStart;
+
+        double microsPerPage = cpuNanos / 1000.0 / rounds;
+        return String.format("%,9d bytes  %5.1f%% of original  %,10.1f us CPU/page  %,7.1f MB/s",
+                size, 100.0 * size / page.length, microsPerPage, page.length / microsPerPage);
+    }
+
+    private static int compress(byte[] page, Compressor compressor) throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(page.length / 2);
+        try (OutputStream out = compressor.wrap(buffer)) {
+            out.write(page);
+        }
+
+        return buffer.size();
+    }
+
+    /**
+     * Builds a page the way JsonMessageStreamer writes it
+     */
+    private static byte[] buildPage(MessageJsonCache cache, int pageSize, Random random) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('[');
+
+        long time = 1669947792L;
+        for (int i = 0; i < pageSize; i++) {
+            if (i > 0)
+                out.write(',');
+
+            time -= random.nextInt(30);
+            out.write(cache.Get(new Message(100_000 - i, 1 + random.nextInt(500), randomText(random), time)));
+        }
+
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    /**
+     * @return message text of 20 to 255 characters, drawn mostly from the more common words
+     */
+    private static String randomText(Random random) {
+        int length = 20 + random.nextInt(236);
+        StringBuilder text = new StringBuilder();
+
+        while (text.length() < length) {
+            if (text.length() > 0)
+                text.append(' ');
+
+            int kind = random.nextInt(20);
+            if (kind == 0)
+                text.append('@').append("user").append(random.nextInt(10_000));
+            else if (kind == 1)
+                text.append('#').append(WORDS[random.nextInt(WORDS.length)]);
+            else if (kind == 2)
+                text.append(random.nextInt(1000));
+            else
+                text.append(WORDS[(int) (WORDS.length * Math.pow(random.nextDouble(), 2))]); // Skewed to the front
+        }
+
+        return text.substring(0, Math.min(text.length(), 255));
+    }
+}
@@ -0,0 +1,96 @@
+package Benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+/**
+ * Measures the heap allocated by the server per request for the endpoints that read and write JSON bodies. Requests
+ * are sent one at a time from a single client, and only the allocation of the Jetty request threads is counted, so
+ * the client's own work is left out. The numbers include everything the request does (routing, H2, caches), so the
+ * difference between two builds is what changed.
+ *
+ * Not a unit test; run it with
+ *  mvn -q test-compile exec:java -Dexec.mainClass=Benchmark.JsonIoAllocationBenchmark -Dexec.classpathScope=test
+ * or straight from the IDE. It resets the database first.
+ */
+public class JsonIoAllocationBenchmark {
+    private static final int WARMUP_REQUESTS = 5_000;
+    private static final int MEASURED_REQUESTS = 5_000;
+    private static final int BATCH_SIZE = 20;
+    private static final int PORT = 8080;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("messages.rateLimit.perSecond") == null)
+            System.setProperty("messages.rateLimit.perSecond", "0"); // Every request writes as account 1
+
+        ConnectionUtil.resetTestDatabase();
+        Javalin app = new SocialMediaController().startAPI();
+        app.start(PORT);
+
+        HttpClient client = HttpClient.newHttpClient();
+        String base = "http://localhost:" + PORT;
+
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < BATCH_SIZE; i++)
+            batch.append(i > 0 ? "," : "").append("{\"posted_by\":1,\"message_text\":\"batch message ").append(i)
+                    .append("\",\"time_posted_epoch\":1669947792}");
+        batch.append(']');
+
+        try {
+            System.out.println("POST /login:         " + measure(client, HttpRequest.newBuilder(URI.create(base + "/login"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"testuser1\",\"password\":\"password\"}")).build()));
+            System.out.println("POST /messages:      " + measure(client, HttpRequest.newBuilder(URI.create(base + "/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"A typical message of average length\",\"time_posted_epoch\":1669947792}")).build()));
+            System.out.println("PATCH /messages/1:   " + measure(client, HttpRequest.newBuilder(URI.create(base + "/messages/1"))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"An updated message of average length\"}")).build()));
+            System.out.println("POST /messages/batch (" + BATCH_SIZE + "): " + measure(client, HttpRequest.newBuilder(URI.create(base + "/messages/batch"))
+                    .POST(HttpRequest.BodyPublishers.ofString(batch.toString())).build()));
+        } finally {
+            app.stop();
+        }
+    }
+
+    private static String measure(HttpClient client, HttpRequest request) throws Exception {
+        for (int i = 0; i < WARMUP_REQUESTS; i++)
+            send(client, request);
+
+        long bytesBefore = serverThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_REQUESTS; i++)
+            send(client, request);
+        long nanos = System.nanoTime() - start;
+        long bytes = serverThreadAllocatedBytes() - bytesBefore;
+
+        return String.format("%,8d bytes allocated/request  %,6d us/request", bytes / MEASURED_REQUESTS, nanos / MEASURED_REQUESTS / 1000);
+    }
+
+    private static void send(HttpClient client, HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200)
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode());
+    }
+
+    /**
+     * @return the bytes allocated so far by all Jetty request threads
+     */
+    private static long serverThreadAllocatedBytes() {
+        long total = 0;
+        for (ThreadInfo info : THREADS.getThreadInfo(THREADS.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith("JettyServerThreadPool"))
+                total += Math.max(0, THREADS.getThreadAllocatedBytes(info.getThreadId()));
+        }
+
+        return total;
+    }
+}
@@ -0,0 +1,84 @@
+package Benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.MessageJsonCache;
+import Model.Message;
+
+/**
+ * Compares the CPU time and allocation per response of serializing messages with ObjectMapper.writeValueAsString
+ * (what the controller used to do) against copying the bytes held by MessageJsonCache.
+ *
+ * Not a unit test; run it with
+ *  mvn -q test-compile exec:java -Dexec.mainClass=Benchmark.MessageJsonBenchmark -Dexec.classpathScope=test
+ * or straight from the IDE.
+ */
+public class MessageJsonBenchmark {
+    private static final int WARMUP_ROUNDS = 200_000;
+    private static final int MEASURED_ROUNDS = 1_000_000;
+    private static final int LIST_SIZE = 100;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Keeps the JIT from dropping the work being measured
+     */
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper om = new ObjectMapper();
+        MessageJsonCache cache = new MessageJsonCache(om);
+
+        Message single = new Message(1, 1, "A typical message of average length, posted by someone who has a lot to say", 1669947792);
+        Message[] page = new Message[LIST_SIZE];
+        for (int i = 0; i < LIST_SIZE; i++)
+            page[i] = new Message(i + 1, 1, "message number " + i + " of a timeline page", 1669947792 + i);
+
+        Task serializeSingle = () -> sink += om.writeValueAsString(single).getBytes(StandardCharsets.UTF_8).length;
+        Task cachedSingle = () -> sink += cache.Get(single).length;
+        Task serializeList = () -> sink += om.writeValueAsString(page).getBytes(StandardCharsets.UTF_8).length;
+        Task cachedList = () -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+            out.write('[');
+            for (int i = 0; i < page.length; i++) {
+                if (i > 0)
+                    out.write(',');
+                out.write(cache.Get(page[i]));
+            }
+            out.write(']');
+            sink += out.size();
+        };
+
+        System.out.println("single message, writeValueAsString: " + measure(serializeSingle, MEASURED_ROUNDS));
+        System.out.println("single message, MessageJsonCache:   " + measure(cachedSingle, MEASURED_ROUNDS));
+        System.out.println(LIST_SIZE + " messages, writeValueAsString:  " + measure(serializeList, MEASURED_ROUNDS / LIST_SIZE));
+        System.out.println(LIST_SIZE + " messages, MessageJsonCache:    " + measure(cachedList, MEASURED_ROUNDS / LIST_SIZE));
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static String measure(Task task, int rounds) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS / 10 + rounds / 5; i++)
+            task.run();
+
+        long threadID = Thread.currentThread().getId();
+        long cpuBefore = THREADS.getCurrentThreadCpuTime();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(threadID);
+
+        for (int i = 0; i < rounds; i++)
+            task.run();
+
+        long cpuNanos = THREADS.getCurrentThreadCpuTime() - cpuBefore;
+        long bytes = THREADS.getThreadAllocatedBytes(threadID) - bytesBefore;
+
+        return String.format("%,8d ns CPU/op  %,8d bytes allocated/op", cpuNanos / rounds, bytes / rounds);
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+}
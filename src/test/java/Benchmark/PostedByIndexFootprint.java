@@ -0,0 +1,64 @@
+package Benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import Util.PostedByIndex;
+
+/**
+ * Reports the heap taken by PostedByIndex against a boxed HashMap<Integer, List<Integer>> holding the same
+ * posted_by -> message ids mapping, measured as the growth of the used heap after a full GC.
+ *
+ * Not a unit test; run it with
+ *  mvn -q test-compile exec:java -Dexec.mainClass=Benchmark.PostedByIndexFootprint -Dexec.classpathScope=test
+ * or straight from the IDE. Arguments: [messages] [accounts], default 1000000 10000.
+ */
+public class PostedByIndexFootprint {
+    public static void main(String[] args) {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+
+        // The same random posting history for both structures, in message_id (and so time) order
+        Random random = new Random(42);
+        int[] postedBy = new int[messages];
+        for (int i = 0; i < messages; i++)
+            postedBy[i] = 1 + random.nextInt(accounts);
+
+        long before = usedHeap();
+        PostedByIndex index = new PostedByIndex(1024);
+        for (int i = 0; i < messages; i++)
+            index.add(postedBy[i], i + 1, 1669947792L + i);
+        long indexBytes = usedHeap() - before;
+
+        before = usedHeap();
+        HashMap<Integer, List<Integer>> boxed = new HashMap<>();
+        for (int i = 0; i < messages; i++)
+            boxed.computeIfAbsent(postedBy[i], id -> new ArrayList<>()).add(i + 1);
+        long boxedBytes = usedHeap() - before;
+
+        System.out.printf("%,d messages over %,d accounts%n", messages, accounts);
+        System.out.printf("PostedByIndex (ids and times):  %,12d bytes measured, %,12d estimated, %5.1f bytes/message%n",
+                indexBytes, index.estimateBytes(), (double) indexBytes / messages);
+        System.out.printf("HashMap<Integer, List<Integer>> (ids only): %,12d bytes measured, %5.1f bytes/message%n",
+                boxedBytes, (double) boxedBytes / messages);
+
+        // Keeping both reachable until after the measurements
+        System.out.println("(checksum " + (index.size() + boxed.size()) + ")");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
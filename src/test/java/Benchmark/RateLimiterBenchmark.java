@@ -0,0 +1,107 @@
+package Benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Util.RateLimiter;
+
+/**
+ * Measures the CPU time of one RateLimiter check with 1 to 16 threads calling it at once, in four cases: every thread
+ * on the same account with tokens to spare, so each check is a contended compare-and-set; the same account with its
+ * bucket empty, a read only; each thread on accounts of its own; and a million accounts against a limit of 100,000
+ * buckets, so the sweeps that make room are counted in.
+ *
+ * Not a unit test; run it with
+ *  mvn -q test-compile exec:java -Dexec.mainClass=Benchmark.RateLimiterBenchmark -Dexec.classpathScope=test
+ * or straight from the IDE. The result depends on the cores the threads really get.
+ */
+public class RateLimiterBenchmark {
+    private static final int[] THREADS = { 1, 2, 4, 16 };
+    private static final long WARMUP_MILLIS = 1_000;
+    private static final long MEASURED_MILLIS = 2_000;
+
+    private static final ThreadMXBean CPU = ManagementFactory.getThreadMXBean();
+
+    private interface Keys {
+        int next(int thread);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+
+        for (int threads : THREADS) {
+            System.out.println(threads + " threads:");
+            System.out.println("  one account, allowed   " + run(new RateLimiter(1_000_000_000, 1_000_000_000, 100_000), threads, thread -> 1));
+            System.out.println("  one account, limited   " + run(new RateLimiter(1, 1, 100_000), threads, thread -> 1));
+            System.out.println("  account per thread     " + run(new RateLimiter(1_000, 100, 100_000), threads, thread -> thread));
+            System.out.println("  1M accounts, 100K kept " + run(new RateLimiter(1_000, 100, 100_000), threads,
+                    thread -> ThreadLocalRandom.current().nextInt(1_000_000)));
+        }
+    }
+
+    private static String run(RateLimiter limiter, int threads, Keys keys) throws Exception {
+        AtomicLong checks = new AtomicLong();
+        AtomicLong allowed = new AtomicLong();
+        AtomicLong cpuNanos = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] window = new long[2]; // measuring starts and ends, in nanoTime
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                long count = 0;
+                long passed = 0;
+                long cpuStart = 0;
+                boolean measuring = false;
+                while (true) {
+                    // Checking the clock only every 1024 calls, so that it is not what gets measured
+                    if ((count & 1023) == 0) {
+                        long now = System.nanoTime();
+                        if (!measuring && now - window[0] >= 0) {
+                            measuring = true;
+                            cpuStart = CPU.getCurrentThreadCpuTime();
+                            count = 0;
+                            passed = 0;
+                        } else if (now - window[1] >= 0) {
+                            break;
+                        }
+                    }
+
+                    if (limiter.tryAcquire(keys.next(thread)) == 0)
+                        passed++;
+                    count++;
+                }
+
+                cpuNanos.addAndGet(CPU.getCurrentThreadCpuTime() - cpuStart);
+                checks.addAndGet(count);
+                allowed.addAndGet(passed);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        window[0] = System.nanoTime() + WARMUP_MILLIS * 1_000_000;
+        window[1] = window[0] + MEASURED_MILLIS * 1_000_000;
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join();
+
+        // CPU time rather than wall time, so that threads waiting for a core are not counted as checking
+        double nanosPerCheck = (double) cpuNanos.get() / checks.get();
+        return String.format("%,7.1f ns CPU/check  %,12d checks/s  %5.1f%% allowed  evicted %,d",
+                nanosPerCheck, checks.get() * 1000 / MEASURED_MILLIS, 100.0 * allowed.get() / checks.get(),
+                limiter.getStats().getEvicted());
+    }
+}
@@ -0,0 +1,219 @@
+package Benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+/**
+ * Compares throughput and latency of the platform-thread and virtual-thread request modes (server.virtualThreads)
+ * with 1,000 and 10,000 concurrent clients. Every client sends its next request as soon as the previous one is
+ * answered, alternating between POST /messages and GET /messages/{id} of a random earlier message.
+ *
+ * The server runs in a child JVM of its own, started once per mode, so that the clients' sockets and the server's
+ * are not counted against one process's file limit and the mode can differ between runs. Virtual threads need the
+ * benchmark itself to run on JDK 21+, as the child uses the same java. Settings given to the benchmark with -D whose
+ * names start with db., server., messages. or storage. are passed on to the server.
+ *
+ * Not a unit test; run it with
+ *  mvn -q test-compile exec:exec -Dexec.executable=java -Dexec.args="-cp %classpath Benchmark.VirtualThreadBenchmark" -Dexec.classpathScope=test
+ * or straight from the IDE. It resets the database first.
+ */
+public class VirtualThreadBenchmark {
+    private static final int[] CLIENTS = { 1_000, 10_000 };
+    private static final long WARMUP_SECONDS = 10;
+    private static final long MEASURED_SECONDS = 20;
+    private static final int PORT = 8080;
+    private static final int SEEDED_MESSAGES = 1_000;
+
+    /**
+     * Latency histogram resolution and range
+     */
+    private static final long BUCKET_MICROS = 100;
+    private static final int BUCKETS = 600_000; // 60 seconds
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("server")) {
+            serve();
+            return;
+        }
+
+        for (boolean virtualThreads : new boolean[] { false, true }) {
+            Process server = startServer(virtualThreads);
+            try {
+                for (int clients : CLIENTS)
+                    System.out.println((virtualThreads ? "virtual " : "platform") + " threads, " + String.format("%,6d", clients)
+                            + " clients: " + run(clients));
+            } finally {
+                server.getOutputStream().close(); // The server stops when its stdin closes
+                server.waitFor(30, TimeUnit.SECONDS);
+                server.destroy();
+            }
+        }
+    }
+
+    /**
+     * The child JVM: resets the database, seeds it and serves until its stdin is closed
+     */
+    private static void serve() throws Exception {
+        ConnectionUtil.resetTestDatabase();
+        Javalin app = new SocialMediaController().startAPI();
+        app.start(PORT);
+
+        HttpClient client = HttpClient.newHttpClient();
+        for (int i = 0; i < SEEDED_MESSAGES; i++)
+            client.send(createMessage(), HttpResponse.BodyHandlers.discarding());
+
+        System.out.println("ready");
+        while (System.in.read() != -1) {
+        }
+
+        app.stop();
+        System.exit(0);
+    }
+
+    private static Process startServer(boolean virtualThreads) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("db.") || name.startsWith("server.") || name.startsWith("messages.") || name.startsWith("storage."))
+                command.add("-D" + name + "=" + System.getProperty(name));
+        }
+        if (System.getProperty("messages.rateLimit.perSecond") == null)
+            command.add("-Dmessages.rateLimit.perSecond=0"); // Every client posts as account 1
+        command.add("-Dserver.virtualThreads=" + virtualThreads);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(VirtualThreadBenchmark.class.getName());
+        command.add("server");
+
+        Process server = new ProcessBuilder(command).redirectErrorStream(true).start();
+        BufferedReader output = new BufferedReader(new InputStreamReader(server.getInputStream()));
+        String line;
+        while ((line = output.readLine()) != null && !line.equals("ready")) {
+        }
+        if (line == null)
+            throw new IllegalStateException("The server exited before it was ready");
+
+        // Keeps draining the server's output so that it never blocks on a full pipe
+        Thread drain = new Thread(() -> {
+            try {
+                while (output.readLine() != null) {
+                }
+            } catch (Exception e) {
+            }
+        });
+        drain.setDaemon(true);
+        drain.start();
+
+        return server;
+    }
+
+    /**
+     * Runs one closed-loop load: warm up, then measure
+     */
+    private static String run(int clients) throws Exception {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+        Load load = new Load(client);
+
+        // Connecting gradually, so that the server's accept queue does not overflow
+        for (int i = 0; i < clients; i++) {
+            load.next();
+            if (i % 100 == 99)
+                Thread.sleep(20);
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(WARMUP_SECONDS));
+        load.reset();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(MEASURED_SECONDS));
+        String result = load.summary(MEASURED_SECONDS);
+
+        load.stop();
+        Thread.sleep(5_000); // Lets the outstanding requests finish before the next run
+        return result;
+    }
+
+    /**
+     * The clients: each completed request immediately starts the client's next one
+     */
+    private static class Load {
+        private final HttpClient client;
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private volatile boolean running = true;
+
+        Load(HttpClient client) {
+            this.client = client;
+        }
+
+        void next() {
+            if (!running)
+                return;
+
+            HttpRequest request = ThreadLocalRandom.current().nextBoolean() ? createMessage()
+                    : HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/messages/"
+                            + (1 + ThreadLocalRandom.current().nextInt(SEEDED_MESSAGES)))).timeout(Duration.ofSeconds(60)).build();
+
+            long start = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                long micros = (System.nanoTime() - start) / 1000;
+                histogram.incrementAndGet((int) Math.min(BUCKETS - 1, micros / BUCKET_MICROS));
+                completed.incrementAndGet();
+                if (failure != null || response.statusCode() != 200)
+                    errors.incrementAndGet();
+                next();
+            });
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++)
+                histogram.set(i, 0);
+            completed.set(0);
+            errors.set(0);
+        }
+
+        void stop() {
+            running = false;
+        }
+
+        String summary(long seconds) {
+            long total = completed.get();
+            return String.format("%,8d requests/s  p50 %,7.1f ms  p99 %,7.1f ms  errors %,d",
+                    total / seconds, percentile(total, 0.50), percentile(total, 0.99), errors.get());
+        }
+
+        private double percentile(long total, double fraction) {
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank && rank > 0)
+                    return (i + 1) * BUCKET_MICROS / 1000.0;
+            }
+
+            return Double.NaN;
+        }
+    }
+
+    private static HttpRequest createMessage() {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/messages"))
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"A typical message of average length\",\"time_posted_epoch\":1669947792}"))
+                .build();
+    }
+}
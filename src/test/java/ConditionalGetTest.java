@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConditionalGetTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 with the ETag of a previous response, before and
+     * after the message is updated
+     *
+     * Expected Response:
+     *  Status Code: 304 while unchanged, then 200 with the updated message and a new ETag
+     */
+    @Test
+    public void getMessageIfNoneMatch() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("http://localhost:8080/messages/1", null);
+        Assert.assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        Assert.assertNotNull(etag);
+
+        HttpResponse<String> unchanged = get("http://localhost:8080/messages/1", etag);
+        Assert.assertEquals(304, unchanged.statusCode());
+        Assert.assertTrue(unchanged.body().isEmpty());
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> changed = get("http://localhost:8080/messages/1", etag);
+        Assert.assertEquals(200, changed.statusCode());
+        Assert.assertNotEquals(etag, changed.headers().firstValue("ETag").orElse(null));
+        Message expectedResult = new Message(1, 1, "updated message", 1669947792);
+        Assert.assertEquals(expectedResult, objectMapper.readValue(changed.body(), Message.class));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages with the ETag of a previous response, before
+     * and after the account posts a message
+     *
+     * Expected Response:
+     *  Status Code: 304 while unchanged, then 200 with a new ETag
+     */
+    @Test
+    public void getTimelineIfNoneMatch() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("http://localhost:8080/accounts/1/messages", null);
+        Assert.assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        Assert.assertNotNull(etag);
+
+        Assert.assertEquals(304, get("http://localhost:8080/accounts/1/messages", etag).statusCode());
+
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> changed = get("http://localhost:8080/accounts/1/messages", etag);
+        Assert.assertEquals(200, changed.statusCode());
+        Assert.assertNotEquals(etag, changed.headers().firstValue("ETag").orElse(null));
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/1 with and without Accept-Encoding: gzip, each with the
+     * ETag of the other
+     *
+     * Expected Response:
+     *  A weak ETag, the same for both encodings, so either one validates the other with 304
+     */
+    @Test
+    public void etagIsWeakAcrossEncodings() throws IOException, InterruptedException {
+        HttpResponse<String> identity = get("http://localhost:8080/messages/1", null);
+        String etag = identity.headers().firstValue("ETag").orElse(null);
+        Assert.assertNotNull(etag);
+        Assert.assertTrue(etag.startsWith("W/\""));
+
+        HttpRequest gzip = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .header("Accept-Encoding", "gzip")
+                .header("If-None-Match", etag)
+                .build();
+        HttpResponse<byte[]> notModified = webClient.send(gzip, HttpResponse.BodyHandlers.ofByteArray());
+        Assert.assertEquals(304, notModified.statusCode());
+        Assert.assertEquals(etag, notModified.headers().firstValue("ETag").orElse(null));
+
+        // A strong tag of the same version, as a client may send back, still matches
+        Assert.assertEquals(304, get("http://localhost:8080/messages/1", etag.substring(2)).statusCode());
+    }
+
+    private HttpResponse<String> get(String uri, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create(uri));
+        if (ifNoneMatch != null)
+            request.header("If-None-Match", ifNoneMatch);
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,92 @@
+package Controller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class DatabaseExecutorOverflowTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+    CountDownLatch release;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app with a database executor of one thread and
+     * a queue of one task.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        System.setProperty("db.executor.threads", "1");
+        System.setProperty("db.executor.queueSize", "1");
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        release = new CountDownLatch(1);
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        app.stop();
+        System.clearProperty("db.executor.threads");
+        System.clearProperty("db.executor.queueSize");
+    }
+
+    /**
+     * With the executor's thread held on a latch and its queue full, sending an http request to GET
+     * localhost:8080/messages/1
+     *
+     * Expected Response:
+     *  The next submit is rejected, and the request is answered with 503
+     *  Once the thread is released, the queued task runs and the same request is answered with 200
+     */
+    @Test
+    public void fullExecutorAnswers503() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CompletableFuture<Void> blocker = socialMediaController.databaseExecutor.submit(() -> {
+            running.countDown();
+            release.await();
+        });
+        Assert.assertTrue(running.await(5, TimeUnit.SECONDS)); // The only thread is taken
+        CompletableFuture<Void> queued = socialMediaController.databaseExecutor.submit(() -> { }); // The queue is full
+
+        try {
+            socialMediaController.databaseExecutor.submit(() -> { });
+            Assert.fail("A task was taken past the queue's capacity");
+        } catch (RejectedExecutionException e) {
+        }
+
+        Assert.assertEquals(503, getMessage().statusCode());
+        Assert.assertEquals(2, socialMediaController.databaseExecutor.getStats().getRejected());
+
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(200, getMessage().statusCode());
+    }
+
+    private HttpResponse<String> getMessage() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
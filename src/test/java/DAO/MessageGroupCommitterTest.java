@@ -0,0 +1,160 @@
+package DAO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import Model.Message;
+import Util.GroupCommitStats;
+
+public class MessageGroupCommitterTest {
+    static final int CALLERS = 8;
+
+    /**
+     * Callers that queue while a batch is committing are inserted together, with one CreateMessages call, and none of
+     * them is answered before that call returns
+     */
+    @Test
+    public void concurrentCallersShareOneBatch() throws Exception {
+        CountDownLatch commitStarted = new CountDownLatch(1);
+        CountDownLatch finishCommit = new CountDownLatch(1);
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        MessageRepository repository = Mockito.mock(MessageRepository.class);
+        Mockito.when(repository.CreateMessages(ArgumentMatchers.any())).thenAnswer(invocation -> {
+            List<Message> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            if (batch.get(0).getMessage_text().equals("blocker")) {
+                commitStarted.countDown();
+                finishCommit.await(); // Holding the writer in its commit while the others queue
+            }
+            return stored(batch);
+        });
+
+        MessageGroupCommitter committer = new MessageGroupCommitter(repository, 0, 64);
+        ExecutorService threads = Executors.newFixedThreadPool(CALLERS + 1); // A thread for every waiting caller
+
+        CompletableFuture<Message> blocker = CompletableFuture.supplyAsync(
+                () -> committer.CreateMessage(new Message(1, "blocker", 1669947792)), threads);
+        Assert.assertTrue(commitStarted.await(5, TimeUnit.SECONDS));
+
+        List<CompletableFuture<Message>> callers = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            String text = "message " + i;
+            callers.add(CompletableFuture.supplyAsync(() -> committer.CreateMessage(new Message(1, text, 1669947792)), threads));
+        }
+        waitForQueued(committer, CALLERS);
+
+        // Nobody is answered while the commit is still running
+        Thread.sleep(100);
+        Assert.assertFalse(blocker.isDone());
+        for (CompletableFuture<Message> caller : callers)
+            Assert.assertFalse(caller.isDone());
+
+        finishCommit.countDown();
+        Assert.assertEquals("blocker", blocker.get(5, TimeUnit.SECONDS).getMessage_text());
+        for (int i = 0; i < CALLERS; i++)
+            Assert.assertEquals("message " + i, callers.get(i).get(5, TimeUnit.SECONDS).getMessage_text());
+        threads.shutdown();
+
+        Assert.assertEquals(List.of(1, CALLERS), batchSizes);
+        Mockito.verify(repository, Mockito.never()).CreateMessage(ArgumentMatchers.any());
+
+        GroupCommitStats stats = committer.GetStats();
+        Assert.assertEquals(2, stats.getBatches());
+        Assert.assertEquals(CALLERS + 1, stats.getMessages());
+        Assert.assertEquals(CALLERS, stats.getLargestBatch());
+        Assert.assertEquals(0, stats.getQueued());
+        Assert.assertEquals(0, stats.getFallbacks());
+        Assert.assertTrue(stats.getMaxCommitMicros() >= 100_000); // The held commit took at least the sleep
+    }
+
+    /**
+     * When the batch insert fails, every message is inserted on its own, so only the bad one is answered with null
+     */
+    @Test
+    public void failedBatchFallsBackToSingleInserts() throws Exception {
+        MessageRepository repository = Mockito.mock(MessageRepository.class);
+        Mockito.when(repository.CreateMessages(ArgumentMatchers.any())).thenReturn(null);
+        AtomicInteger ids = new AtomicInteger();
+        Mockito.when(repository.CreateMessage(ArgumentMatchers.any())).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            if (message.getMessage_text().equals("bad"))
+                return null;
+            return new Message(ids.incrementAndGet(), message.getPosted_by(), message.getMessage_text(),
+                    message.getTime_posted_epoch());
+        });
+
+        // A batch is flushed when both messages are in, long before the interval ends
+        MessageGroupCommitter committer = new MessageGroupCommitter(repository, 60000, 2);
+        CompletableFuture<Message> good = CompletableFuture.supplyAsync(
+                () -> committer.CreateMessage(new Message(1, "good", 1669947792)));
+        CompletableFuture<Message> bad = CompletableFuture.supplyAsync(
+                () -> committer.CreateMessage(new Message(1, "bad", 1669947792)));
+
+        Assert.assertEquals("good", good.get(5, TimeUnit.SECONDS).getMessage_text());
+        Assert.assertNull(bad.get(5, TimeUnit.SECONDS));
+
+        Mockito.verify(repository, Mockito.times(1)).CreateMessages(ArgumentMatchers.any());
+        Mockito.verify(repository, Mockito.times(2)).CreateMessage(ArgumentMatchers.any());
+        GroupCommitStats stats = committer.GetStats();
+        Assert.assertEquals(1, stats.getBatches());
+        Assert.assertEquals(2, stats.getLargestBatch());
+        Assert.assertEquals(1, stats.getFallbacks());
+    }
+    /**
+     * An Error thrown by the repository answers the callers of that batch with null, and the writer thread lives on
+     * to commit the next batch
+     */
+    @Test
+    public void errorFailsBatchAndWriterSurvives() throws Exception {
+        MessageRepository repository = Mockito.mock(MessageRepository.class);
+        ArrayList<Message> created = new ArrayList<>();
+        created.add(new Message(7, 1, "second", 1669947792));
+        Mockito.when(repository.CreateMessages(ArgumentMatchers.any()))
+                .thenThrow(new OutOfMemoryError("test"))
+                .thenReturn(created);
+
+        MessageGroupCommitter committer = new MessageGroupCommitter(repository, 0, 16);
+
+        Message failed = CompletableFuture.supplyAsync(() -> committer.CreateMessage(new Message(1, "first", 1669947792)))
+                .get(5, TimeUnit.SECONDS);
+        Assert.assertNull(failed);
+
+        Message stored = CompletableFuture.supplyAsync(() -> committer.CreateMessage(new Message(1, "second", 1669947792)))
+                .get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(7, stored.getMessage_id());
+    }
+
+    /**
+     * Waits until the committer has this many callers queued
+     */
+    private static void waitForQueued(MessageGroupCommitter committer, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (committer.GetStats().getQueued() < queued) {
+            Assert.assertTrue("Callers did not queue", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * @return the batch as the repository would store it, with ids counting up from 1
+     */
+    private static ArrayList<Message> stored(List<Message> batch) {
+        ArrayList<Message> created = new ArrayList<>();
+        for (Message message : batch)
+            created.add(new Message(created.size() + 1, message.getPosted_by(), message.getMessage_text(),
+                    message.getTime_posted_epoch()));
+        return created;
+    }
+}
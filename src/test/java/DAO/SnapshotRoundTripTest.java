@@ -0,0 +1,153 @@
+package DAO;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import Model.Account;
+import Model.Message;
+
+public class SnapshotRoundTripTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A message snapshot loaded into an empty repository gives back every message, after updates and deletes, with
+     * its indexes rebuilt and new ids continuing after the largest one ever handed out
+     */
+    @Test
+    public void messagesSurviveRoundTrip() throws IOException {
+        InMemoryMessageRepository saved = new InMemoryMessageRepository();
+        saved.CreateMessage(new Message(1, "first", 100));
+        saved.CreateMessage(new Message(2, "second with \u00fcn\u00efc\u00f6d\u00e9 and \ud83d\ude00", 200));
+        saved.CreateMessage(new Message(1, "third", 300));
+        saved.CreateMessage(new Message(1, "deleted", 400));
+        saved.UpdateMessage(1, "first, edited");
+        saved.DeleteMessage(4);
+
+        Path file = folder.getRoot().toPath().resolve("messages.snapshot");
+        saved.SaveSnapshot(file);
+
+        InMemoryMessageRepository loaded = new InMemoryMessageRepository();
+        loaded.LoadSnapshot(file);
+
+        ArrayList<Message> expected = new ArrayList<>();
+        saved.ForEachMessage(expected::add);
+        ArrayList<Message> actual = new ArrayList<>();
+        loaded.ForEachMessage(actual::add);
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals("first, edited", loaded.GetMessageByID(1).getMessage_text());
+        Assert.assertNull(loaded.GetMessageByID(4));
+
+        // The indexes serve the loaded messages, newest first
+        Assert.assertEquals(Arrays.asList(loaded.GetMessageByID(3), loaded.GetMessageByID(1)),
+                loaded.GetAllMessagesByAccountID(1));
+        Assert.assertEquals(3, loaded.GetTimePostedIndex().size());
+
+        // The deleted message's id is not handed out again
+        Assert.assertEquals(5, loaded.CreateMessage(new Message(2, "after load", 500)).getMessage_id());
+    }
+
+    /**
+     * An account snapshot loaded into an empty repository keeps ids, names, passwords and the existence bits
+     */
+    @Test
+    public void accountsSurviveRoundTrip() throws IOException {
+        InMemoryAccountRepository saved = new InMemoryAccountRepository();
+        saved.Register(new Account("testuser1", "password"));
+        saved.Register(new Account("testuser2", "p\u00e4ssw\u00f6rd"));
+
+        Path file = folder.getRoot().toPath().resolve("accounts.snapshot");
+        saved.SaveSnapshot(file);
+
+        InMemoryAccountRepository loaded = new InMemoryAccountRepository();
+        loaded.LoadSnapshot(file);
+
+        Assert.assertEquals(saved.GetAccountByID(1), loaded.GetAccountByID(1));
+        Assert.assertEquals(saved.GetAccountByID(2), loaded.GetAccountByID(2));
+        Assert.assertNotNull(loaded.Login(new Account("testuser2", "p\u00e4ssw\u00f6rd")));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(1, 2)), loaded.GetExistingAccountIDs(Arrays.asList(1, 2, 3)));
+
+        // A name taken before the save is still taken, and the next id follows the saved ones
+        Assert.assertNull(loaded.Register(new Account("testuser1", "other")));
+        Assert.assertEquals(4, loaded.Register(new Account("testuser3", "password")).getAccount_id());
+    }
+
+    /**
+     * A snapshot of the other kind of repository is refused rather than misread
+     */
+    @Test
+    public void otherKindOfSnapshotIsRefused() throws IOException {
+        InMemoryAccountRepository accounts = new InMemoryAccountRepository();
+        accounts.Register(new Account("testuser1", "password"));
+        Path file = folder.getRoot().toPath().resolve("accounts.snapshot");
+        accounts.SaveSnapshot(file);
+
+        InMemoryMessageRepository messages = new InMemoryMessageRepository();
+        try {
+            messages.LoadSnapshot(file);
+            Assert.fail("An account snapshot was loaded as messages");
+        } catch (IOException e) {
+        }
+        Assert.assertNull(messages.GetMessageByID(1));
+    }
+
+    /**
+     * A snapshot cut short loads nothing at all, not the messages before the cut
+     */
+    @Test
+    public void truncatedSnapshotLoadsNothing() throws IOException {
+        Path file = truncatedMessageSnapshot();
+
+        InMemoryMessageRepository loaded = new InMemoryMessageRepository();
+        try {
+            loaded.LoadSnapshot(file);
+            Assert.fail("A truncated snapshot was loaded");
+        } catch (IOException e) {
+        }
+        Assert.assertNull(loaded.GetMessageByID(1));
+        Assert.assertEquals(0, loaded.GetTimePostedIndex().size());
+        Assert.assertEquals(1, loaded.CreateMessage(new Message(1, "after load", 500)).getMessage_id());
+    }
+
+    /**
+     * On startup, a snapshot that cannot be read is moved aside unchanged, so the first save cannot replace it
+     */
+    @Test
+    public void unreadableSnapshotIsKeptAside() throws IOException {
+        Path file = truncatedMessageSnapshot();
+        byte[] original = Files.readAllBytes(file);
+
+        InMemoryMessageRepository repository = new InMemoryMessageRepository();
+        Repositories.LoadSnapshot(repository, file);
+        repository.SaveSnapshot(file);
+
+        Path corrupt = file.resolveSibling("messages.snapshot.corrupt");
+        Assert.assertArrayEquals(original, Files.readAllBytes(corrupt));
+        Assert.assertNull(repository.GetMessageByID(1));
+    }
+
+    /**
+     * @return a snapshot of three messages with its last bytes cut off
+     */
+    private Path truncatedMessageSnapshot() throws IOException {
+        InMemoryMessageRepository saved = new InMemoryMessageRepository();
+        saved.CreateMessage(new Message(1, "first", 100));
+        saved.CreateMessage(new Message(1, "second", 200));
+        saved.CreateMessage(new Message(1, "third", 300));
+
+        Path file = folder.getRoot().toPath().resolve("messages.snapshot");
+        saved.SaveSnapshot(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 6));
+        return file;
+    }
+}
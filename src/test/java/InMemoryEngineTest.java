@@ -0,0 +1,225 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.InMemoryAccountRepository;
+import DAO.InMemoryMessageRepository;
+import Model.Account;
+import Model.Message;
+import Service.AccountService;
+import Service.MessageService;
+
+/**
+ * Runs the endpoint tests against the in-memory storage engine (storage.engine=memory). Each nested class inherits
+ * every test of an endpoint test class and only replaces its setUp, which starts the app on fresh in-memory
+ * repositories holding the same rows SocialMedia.sql seeds the test database with.
+ */
+@RunWith(Enclosed.class)
+public class InMemoryEngineTest {
+    /**
+     * @return a controller on new in-memory repositories with account 1 and message 1
+     */
+    static SocialMediaController memoryController() {
+        InMemoryAccountRepository accounts = new InMemoryAccountRepository();
+        InMemoryMessageRepository messages = new InMemoryMessageRepository();
+        accounts.Register(new Account("testuser1", "password"));
+        messages.CreateMessage(new Message(1, "test message 1", 1669947792));
+
+        return new SocialMediaController(new AccountService(accounts), new MessageService(messages));
+    }
+
+    public static class CreateMessage extends CreateMessageTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class CreateMessageBatch extends CreateMessageBatchTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class DeleteMessageByMessageId extends DeleteMessageByMessageIdTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class RetrieveAllMessagesForUser extends RetrieveAllMessagesForUserTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class RetrieveAllMessages extends RetrieveAllMessagesTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+
+        /**
+         * The inherited test removes message 1 with SQL, which the in-memory engine never sees, so it is deleted
+         * through the API first
+         */
+        @Override
+        @Test
+        public void getAllMessagesNoMessages() throws IOException, InterruptedException {
+            HttpRequest delete = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/1"))
+                    .DELETE()
+                    .build();
+            webClient.send(delete, HttpResponse.BodyHandlers.ofString());
+
+            super.getAllMessagesNoMessages();
+        }
+    }
+
+    public static class RetrieveMessageByMessageId extends RetrieveMessageByMessageIdTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class RetrieveMessagesInTimeRange extends RetrieveMessagesInTimeRangeTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class RetrieveMessagesPage extends RetrieveMessagesPageTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class RetrieveTimelinePage extends RetrieveTimelinePageTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class SearchMessages extends SearchMessagesTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class UpdateMessageText extends UpdateMessageTextTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class UserLogin extends UserLoginTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+
+    public static class UserRegistration extends UserRegistrationTest {
+        @Override
+        @Before
+        public void setUp() throws InterruptedException {
+            socialMediaController = memoryController();
+            app = socialMediaController.startAPI();
+            webClient = HttpClient.newHttpClient();
+            objectMapper = new ObjectMapper();
+            app.start(8080);
+            Thread.sleep(1000);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesInTimeRangeTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?from=1669947700&to=1669947900
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages with from <= time_posted_epoch < to, newest first
+     */
+    @Test
+    public void getMessagesInTimeRange() throws IOException, InterruptedException {
+        postMessage(1, "too old", 1669947699);
+        postMessage(1, "first in range", 1669947700);
+        postMessage(1, "last in range", 1669947899);
+        postMessage(1, "too new", 1669947900);
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(4, 1, "last in range", 1669947899));
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedResult.add(new Message(3, 1, "first in range", 1669947700));
+
+        Assert.assertEquals(expectedResult, getAll("/messages?from=1669947700&to=1669947900&limit=2"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?to=1669947900&posted_by=2 and following the cursors
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only the messages of account 2 before the end of the range, one per page
+     */
+    @Test
+    public void getMessagesInTimeRangeByAccount() throws IOException, InterruptedException {
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"testuser2\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(registerRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        postMessage(2, "second account", 1669947792);
+        postMessage(1, "first account", 1669947800);
+        postMessage(2, "second account again", 1669947800);
+        postMessage(2, "second account later", 1669947900);
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(4, 2, "second account again", 1669947800));
+        expectedResult.add(new Message(2, 2, "second account", 1669947792));
+
+        Assert.assertEquals(expectedResult, getAll("/messages?to=1669947900&posted_by=2&limit=1"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with a malformed or inverted range
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesInTimeRangeMalformed() throws IOException, InterruptedException {
+        for (String uri : new String[] { "/messages?from=abc", "/messages?from=10&to=5", "/messages?posted_by=x" }) {
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + uri)).build();
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(400, response.statusCode());
+        }
+    }
+
+    /**
+     * Follows the X-Next-Cursor headers from a first page until the last one
+     */
+    private List<Message> getAll(String firstPage) throws IOException, InterruptedException {
+        List<Message> messages = new ArrayList<>();
+        String cursor = null;
+        do {
+            String uri = "http://localhost:8080" + firstPage + (cursor == null ? "" : "&cursor=" + cursor);
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(uri)).build();
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+            Assert.assertEquals(200, response.statusCode());
+            messages.addAll(objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){}));
+            cursor = response.headers().firstValue("X-Next-Cursor").orElse(null);
+        } while (cursor != null);
+
+        return messages;
+    }
+
+    private void postMessage(int postedBy, String text, long timePosted) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":" + postedBy + ", " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": " + timePosted + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesPageTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=2 with three messages in db, then following the
+     * cursor of the first page
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the first two messages, then the third one
+     *  Response Header: X-Next-Cursor on the first page only
+     */
+    @Test
+    public void getMessagesPageFollowCursor() throws IOException, InterruptedException {
+        postMessage("second message");
+        postMessage("third message");
+
+        HttpRequest firstPageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=2"))
+                .build();
+        HttpResponse<String> firstPage = webClient.send(firstPageRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, firstPage.statusCode());
+
+        List<Message> expectedFirstPage = new ArrayList<>();
+        expectedFirstPage.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedFirstPage.add(new Message(2, 1, "second message", 1669947792));
+        List<Message> actualFirstPage = objectMapper.readValue(firstPage.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedFirstPage, actualFirstPage);
+
+        String cursor = firstPage.headers().firstValue("X-Next-Cursor").orElse(null);
+        Assert.assertNotNull(cursor);
+
+        HttpRequest secondPageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=2&cursor=" + cursor))
+                .build();
+        HttpResponse<String> secondPage = webClient.send(secondPageRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, secondPage.statusCode());
+
+        List<Message> expectedSecondPage = new ArrayList<>();
+        expectedSecondPage.add(new Message(3, 1, "third message", 1669947792));
+        List<Message> actualSecondPage = objectMapper.readValue(secondPage.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedSecondPage, actualSecondPage);
+        Assert.assertFalse(secondPage.headers().firstValue("X-Next-Cursor").isPresent());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?after_id=1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only the messages with a larger message_id
+     */
+    @Test
+    public void getMessagesPageAfterID() throws IOException, InterruptedException {
+        postMessage("second message");
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?after_id=1"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(2, 1, "second message", 1669947792));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with a malformed cursor
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesPageMalformedCursor() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?cursor=not-a-cursor"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+    }
+
+    private void postMessage(String text) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+    }
+}
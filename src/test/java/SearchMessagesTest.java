@@ -0,0 +1,182 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SearchMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search with words and with a quoted phrase
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages holding every word, or the phrase in order, most recent first
+     */
+    @Test
+    public void searchWordsAndPhrase() throws IOException, InterruptedException {
+        postMessage("Red hot chili peppers", 1669947800);
+        postMessage("peppers, hot and red", 1669947900);
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(3, 1, "peppers, hot and red", 1669947900));
+        expectedResult.add(new Message(2, 1, "Red hot chili peppers", 1669947800));
+        Assert.assertEquals(expectedResult, search("red PEPPERS", null).body);
+
+        expectedResult.remove(0);
+        Assert.assertEquals(expectedResult, search("\"red hot\" peppers", null).body);
+
+        Assert.assertEquals(new ArrayList<Message>(), search("red \"hot peppers\"", null).body);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?limit=1 and following the cursors
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one match per page, every match exactly once, most recent first
+     */
+    @Test
+    public void searchFollowCursor() throws IOException, InterruptedException {
+        postMessage("message two", 1669947792);
+        postMessage("message three", 1669947700);
+        postMessage("nothing to see", 1669947999);
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedResult.add(new Message(2, 1, "message two", 1669947792));
+        expectedResult.add(new Message(3, 1, "message three", 1669947700));
+
+        List<Message> actualResult = new ArrayList<>();
+        String cursor = null;
+        do {
+            SearchResult page = search("message", "limit=1" + (cursor == null ? "" : "&cursor=" + cursor));
+            actualResult.addAll(page.body);
+            cursor = page.nextCursor;
+        } while (cursor != null);
+
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search after updating and deleting messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: matches on the current text only
+     */
+    @Test
+    public void searchAfterUpdateAndDelete() throws IOException, InterruptedException {
+        postMessage("a second message", 1669947800);
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"renamed post\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(2, 1, "a second message", 1669947800));
+        Assert.assertEquals(expectedResult, search("message", null).body);
+
+        expectedResult.set(0, new Message(1, 1, "renamed post", 1669947792));
+        Assert.assertEquals(expectedResult, search("renamed", null).body);
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .DELETE()
+                .build();
+        Assert.assertEquals(200, webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        Assert.assertEquals(new ArrayList<Message>(), search("message", null).body);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search without a usable query
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchWithoutQuery() throws IOException, InterruptedException {
+        for (String uri : new String[] { "/messages/search", "/messages/search?q=" + URLEncoder.encode(" ?! ", StandardCharsets.UTF_8) }) {
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + uri)).build();
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(400, response.statusCode());
+        }
+    }
+
+    private SearchResult search(String query, String parameters) throws IOException, InterruptedException {
+        String uri = "http://localhost:8080/messages/search?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8)
+                + (parameters == null ? "" : "&" + parameters);
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(uri)).build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+
+        SearchResult result = new SearchResult();
+        result.body = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        result.nextCursor = response.headers().firstValue("X-Next-Cursor").orElse(null);
+        return result;
+    }
+
+    private void postMessage(String text, long timePosted) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": " + timePosted + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+    }
+
+    private static class SearchResult {
+        List<Message> body;
+        String nextCursor;
+    }
+}
@@ -0,0 +1,104 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import DAO.MessageRepository;
+import Model.Message;
+
+public class MessageServiceTest {
+    MessageRepository repository;
+    MessageService messageService;
+
+    /**
+     * Before every test, build the service on an empty mocked repository, which leaves the indexes to the service
+     */
+    @Before
+    public void setUp() {
+        repository = Mockito.mock(MessageRepository.class);
+        Mockito.when(repository.ForEachMessage(ArgumentMatchers.any())).thenReturn(true);
+        messageService = new MessageService(repository);
+    }
+
+    /**
+     * A message created and then deleted leaves the indexes as they were
+     */
+    @Test
+    public void deletedMessageLeavesIndexes() {
+        Message stored = new Message(1, 1, "hello message", 1669947792);
+        Mockito.when(repository.CreateMessage(ArgumentMatchers.any())).thenReturn(stored);
+        Mockito.when(repository.DeleteMessage(1)).thenReturn(stored);
+
+        messageService.CreateMessage(new Message(1, "hello message", 1669947792));
+        Assert.assertEquals(1, messageService.GetPostedByIndexStats().getMessages());
+        Assert.assertEquals(1, messageService.GetSearchIndexStats().getMessages());
+
+        messageService.DeleteMessage(1);
+        Assert.assertEquals(0, messageService.GetPostedByIndexStats().getMessages());
+        Assert.assertEquals(0, messageService.GetSearchIndexStats().getMessages());
+    }
+
+    /**
+     * A delete that runs after the insert has committed but before the creator has indexed the message wins: the
+     * creator indexes nothing, rather than leave an entry for a message that is gone
+     */
+    @Test
+    public void deleteBeforePublicationLeavesNoIndexEntry() {
+        Message stored = new Message(1, 1, "hello message", 1669947792);
+        Mockito.when(repository.DeleteMessage(1)).thenReturn(stored);
+        Mockito.when(repository.CreateMessage(ArgumentMatchers.any())).thenAnswer(invocation -> {
+            // Committed; another request deletes the message before this one returns
+            CompletableFuture.runAsync(() -> messageService.DeleteMessage(1)).get(5, TimeUnit.SECONDS);
+            return stored;
+        });
+
+        Assert.assertEquals(stored, messageService.CreateMessage(new Message(1, "hello message", 1669947792)));
+        Assert.assertEquals(0, messageService.GetPostedByIndexStats().getMessages());
+        Assert.assertEquals(0, messageService.GetSearchIndexStats().getMessages());
+    }
+
+    /**
+     * The timeline of an account the index has no messages for, e.g. one another process posted for, is read from the
+     * repository, with a next cursor when there is more than a page
+     */
+    @Test
+    public void unindexedTimelineIsReadFromRepository() {
+        List<Message> timeline = List.of(new Message(3, 1, "third", 300), new Message(2, 1, "second", 200),
+                new Message(1, 1, "first", 100));
+        Mockito.when(repository.ForEachTimelineMessage(ArgumentMatchers.eq(1), ArgumentMatchers.anyLong(),
+                ArgumentMatchers.anyInt(), ArgumentMatchers.anyLong(), ArgumentMatchers.anyInt(),
+                ArgumentMatchers.anyInt(), ArgumentMatchers.any())).thenAnswer(invocation -> {
+                    int limit = invocation.getArgument(5);
+                    Consumer<Message> consumer = invocation.getArgument(6);
+                    timeline.stream().limit(limit).forEach(consumer);
+                    return true;
+                });
+
+        String[] cursor = new String[1];
+        List<Message> page = new ArrayList<>();
+        Assert.assertTrue(messageService.StreamTimelinePage(1, null, 2, new MessageSink() {
+            public void Begin(String nextCursor) {
+                cursor[0] = nextCursor;
+            }
+
+            public void Accept(Message message) {
+                page.add(message);
+            }
+
+            public void End() {
+            }
+        }));
+
+        Assert.assertEquals(timeline.subList(0, 2), page);
+        Assert.assertArrayEquals(new long[] { 200, 2 }, messageService.DecodeTimelineCursor(cursor[0]));
+    }
+}
@@ -119,4 +119,39 @@ public class UserLoginTest {
         Assert.assertEquals("", response.body().toString());
 
     }
+    /**
+     * Sending an http request to POST localhost:8080/login with a username that does not exist yet, then
+     * registering that username and logging in again, so the second login must not be answered by the cached miss
+     *
+     * Expected Response:
+     *  Status Code: 401, then 200
+     *  Response Body: JSON representation of the new user object
+     */
+    @Test
+    public void loginAfterRegisteringUnknownUsername() throws IOException, InterruptedException {
+        String body = "{" +
+                "\"username\": \"testuser404\", " +
+                "\"password\": \"password\" }";
+        HttpRequest loginRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(401, webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(registerRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse response = webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        ObjectMapper om = new ObjectMapper();
+        Account expectedResult = new Account(2, "testuser404", "password");
+        Account actualResult = om.readValue(response.body().toString(), Account.class);
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
 }
@@ -141,4 +141,39 @@ public class UserRegistrationTest {
         Assert.assertEquals("", response.body().toString());
 
     }
+
+    /**
+     * Sending an http request to POST localhost:8080/register and then POST localhost:8080/login with the same
+     * credentials
+     * 
+     * Expected Response:
+     *  Status Code: 200 for both
+     *  Response Body: the login returns the registered account
+     */
+    @Test
+    public void registerUserThenLogin() throws IOException, InterruptedException {
+        String credentials = "{" +
+                "\"username\": \"newuser\", " +
+                "\"password\": \"newpassword\" }";
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+
+        HttpRequest loginRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse loginResponse = webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, loginResponse.statusCode());
+
+        ObjectMapper om = new ObjectMapper();
+        Account expectedAccount = new Account(2, "newuser", "newpassword");
+        Account actualAccount = om.readValue(loginResponse.body().toString(), Account.class);
+        Assert.assertEquals(expectedAccount, actualAccount);
+    }
 }
@@ -0,0 +1,204 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+    JdbcDataSource source;
+    ConnectionPool pool;
+
+    /**
+     * Before every test, point a data source at a private in-memory database with one table
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        source = new JdbcDataSource();
+        source.setURL("jdbc:h2:mem:connectionPoolTest;DB_CLOSE_DELAY=-1");
+        source.setUser("sa");
+        source.setPassword("sa");
+
+        try (Connection connection = source.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS item");
+            statement.execute("CREATE TABLE item (id INT PRIMARY KEY)");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    /**
+     * Borrowing and returning one connection at a time reuses a single physical connection
+     */
+    @Test
+    public void returnedConnectionIsReused() throws SQLException {
+        pool = new ConnectionPool(source, 0, 4, 1000, 60000, 5000, 8);
+
+        for (int i = 0; i < 5; i++) {
+            Connection connection = pool.getConnection();
+            Assert.assertEquals(1, pool.getStats().getActive());
+            connection.close();
+        }
+
+        PoolStats stats = pool.getStats();
+        Assert.assertEquals(1, stats.getOpen());
+        Assert.assertEquals(0, stats.getActive());
+        Assert.assertEquals(1, stats.getIdle());
+        Assert.assertEquals(5, stats.getAcquireCount());
+    }
+
+    /**
+     * With every connection lent out, the next borrower waits for the acquire timeout and then fails
+     */
+    @Test
+    public void exhaustedPoolTimesOut() throws SQLException {
+        pool = new ConnectionPool(source, 0, 2, 200, 60000, 5000, 8);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+
+        long start = System.nanoTime();
+        try {
+            pool.getConnection();
+            Assert.fail("A third connection was lent out of a pool of two");
+        } catch (SQLException e) {
+            Assert.assertEquals("08001", e.getSQLState());
+        }
+        Assert.assertTrue(System.nanoTime() - start >= 150_000_000L);
+        Assert.assertEquals(1, pool.getStats().getAcquireTimeouts());
+
+        // Giving one back lets the next borrower through
+        first.close();
+        pool.getConnection().close();
+        second.close();
+        Assert.assertEquals(2, pool.getStats().getOpen());
+    }
+
+    /**
+     * A waiting borrower gets the connection as soon as another borrower returns it
+     */
+    @Test
+    public void waitingBorrowerGetsReturnedConnection() throws Exception {
+        pool = new ConnectionPool(source, 0, 1, 5000, 60000, 5000, 8);
+        Connection held = pool.getConnection();
+
+        Thread returner = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+                held.close();
+            } catch (Exception e) {
+            }
+        });
+        returner.start();
+
+        pool.getConnection().close();
+        returner.join();
+        Assert.assertEquals(0, pool.getStats().getAcquireTimeouts());
+        Assert.assertEquals(1, pool.getStats().getOpen());
+    }
+
+    /**
+     * A returned connection can not be used any more, and closing it twice returns it once
+     */
+    @Test
+    public void returnedConnectionIsUnusable() throws SQLException {
+        pool = new ConnectionPool(source, 0, 2, 1000, 60000, 5000, 8);
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+
+        Assert.assertTrue(connection.isClosed());
+        Assert.assertEquals(0, pool.getStats().getActive());
+        try {
+            connection.createStatement();
+            Assert.fail("A returned connection was still usable");
+        } catch (SQLException e) {
+            Assert.assertEquals("08003", e.getSQLState());
+        }
+    }
+
+    /**
+     * A transaction left open by a borrower is rolled back before the connection is lent out again
+     */
+    @Test
+    public void openTransactionIsRolledBackOnReturn() throws SQLException {
+        pool = new ConnectionPool(source, 0, 1, 1000, 60000, 5000, 8);
+
+        Connection connection = pool.getConnection();
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO item (id) VALUES (1)")) {
+            insert.executeUpdate();
+        }
+        connection.close(); // Without commit
+
+        try (Connection next = pool.getConnection();
+                PreparedStatement count = next.prepareStatement("SELECT COUNT(*) FROM item");
+                ResultSet result = count.executeQuery()) {
+            Assert.assertTrue(next.getAutoCommit());
+            result.next();
+            Assert.assertEquals(0, result.getInt(1));
+        }
+    }
+
+    /**
+     * The evictor closes idle connections down to the minimum size
+     */
+    @Test
+    public void idleConnectionsAreEvicted() throws Exception {
+        pool = new ConnectionPool(source, 1, 3, 1000, 100, 5000, 8); // The evictor runs every second
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        Connection third = pool.getConnection();
+        first.close();
+        second.close();
+        third.close();
+        Assert.assertEquals(3, pool.getStats().getOpen());
+
+        Thread.sleep(2500);
+
+        PoolStats stats = pool.getStats();
+        Assert.assertEquals(1, stats.getOpen());
+        Assert.assertEquals(2, stats.getEvicted());
+    }
+
+    /**
+     * Statements, cached or not, answer getConnection() with the borrowed connection, and closing that returns it to
+     * the pool rather than closing the physical connection
+     */
+    @Test
+    public void statementConnectionIsTheBorrowedOne() throws SQLException {
+        pool = new ConnectionPool(source, 0, 1, 1000, 60000, 5000, 8);
+        Connection connection = pool.getConnection();
+
+        PreparedStatement cached = connection.prepareStatement("SELECT 1");
+        Statement plain = connection.createStatement();
+        PreparedStatement uncached = connection.prepareStatement("SELECT 1"); // Same SQL while the first is open
+        Assert.assertSame(connection, cached.getConnection());
+        Assert.assertSame(connection, plain.getConnection());
+        Assert.assertSame(connection, uncached.getConnection());
+
+        uncached.close();
+        plain.close();
+        cached.close();
+        connection.close();
+
+        // The physical connection is still open and goes to the next borrower
+        try (Connection next = pool.getConnection();
+                PreparedStatement statement = next.prepareStatement("SELECT 1")) {
+            statement.getConnection().close();
+            Assert.assertEquals(1, pool.getStats().getOpen());
+            Assert.assertEquals(0, pool.getStats().getActive());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package Util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DatabaseExecutorTest {
+    /**
+     * With every thread busy and the queue full the next task is rejected at once; the queued ones still run
+     */
+    @Test
+    public void fullQueueRejects() throws Exception {
+        DatabaseExecutor executor = new DatabaseExecutor(1, 2);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> blocker = executor.submit(() -> {
+                running.countDown();
+                release.await();
+            });
+            Assert.assertTrue(running.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Void> first = executor.submit(() -> { });
+            CompletableFuture<Void> second = executor.submit(() -> { });
+
+            try {
+                executor.submit(() -> { });
+                Assert.fail("A task was taken past the queue's capacity");
+            } catch (RejectedExecutionException e) {
+            }
+
+            DatabaseExecutorStats stats = executor.getStats();
+            Assert.assertEquals(1, stats.getActive());
+            Assert.assertEquals(2, stats.getQueued());
+            Assert.assertEquals(1, stats.getRejected());
+
+            release.countDown();
+            CompletableFuture.allOf(blocker, first, second).get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Whatever a task throws completes its future exceptionally, and the thread goes on to the next task
+     */
+    @Test
+    public void taskFailureCompletesFuture() throws Exception {
+        DatabaseExecutor executor = new DatabaseExecutor(1, 1);
+        try {
+            CompletableFuture<Void> failed = executor.submit(() -> {
+                throw new IllegalStateException("test");
+            });
+            try {
+                failed.get(5, TimeUnit.SECONDS);
+                Assert.fail("The task's exception was lost");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+
+            executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A shut down executor takes no more tasks
+     */
+    @Test
+    public void shutdownRejects() {
+        DatabaseExecutor executor = new DatabaseExecutor(1, 1);
+        executor.shutdown();
+        try {
+            executor.submit(() -> { });
+            Assert.fail("A shut down executor took a task");
+        } catch (RejectedExecutionException e) {
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageTextIndexTest {
+    /**
+     * A message is found by any of its terms, case and punctuation aside, and by all of them together
+     */
+    @Test
+    public void addedMessageIsFoundByItsTerms() {
+        MessageTextIndex index = new MessageTextIndex();
+        index.add(1, "Red hot chili peppers", 100);
+        index.add(2, "red, green; blue", 200);
+
+        assertSearch(index, "red", new int[] { 2, 1 });
+        assertSearch(index, "RED peppers", new int[] { 1 });
+        assertSearch(index, "purple", new int[0]);
+        Assert.assertEquals(2, index.documentCount());
+    }
+
+    /**
+     * Quoted words must also be next to each other, in order
+     */
+    @Test
+    public void phraseNeedsAdjacentTerms() {
+        MessageTextIndex index = new MessageTextIndex();
+        index.add(1, "hot chili peppers", 100);
+        index.add(2, "chili is hot", 200);
+
+        assertSearch(index, "\"hot chili\"", new int[] { 1 });
+        assertSearch(index, "\"chili hot\"", new int[0]);
+        assertSearch(index, "hot chili", new int[] { 2, 1 });
+    }
+
+    /**
+     * Removing a message drops it from every term, and a term no message contains any more is pruned
+     */
+    @Test
+    public void removePrunesEmptyTerms() {
+        MessageTextIndex index = new MessageTextIndex();
+        index.add(1, "shared alpha", 100);
+        index.add(2, "shared beta", 200);
+        Assert.assertEquals(3, index.termCount());
+
+        index.remove(1, "shared alpha");
+        assertSearch(index, "shared", new int[] { 2 });
+        assertSearch(index, "alpha", new int[0]);
+        Assert.assertEquals(2, index.termCount());
+        Assert.assertEquals(1, index.documentCount());
+
+        index.remove(2, "shared beta");
+        Assert.assertEquals(0, index.termCount());
+        Assert.assertEquals(0, index.documentCount());
+
+        // A pruned term comes back with the next message that has it
+        index.add(3, "alpha", 300);
+        assertSearch(index, "alpha", new int[] { 3 });
+    }
+
+    /**
+     * An update replaces the terms of the old text with those of the new one, and prunes the ones it leaves empty
+     */
+    @Test
+    public void updateReplacesTerms() {
+        MessageTextIndex index = new MessageTextIndex();
+        index.add(1, "old words stay", 100);
+        index.add(2, "words elsewhere", 200);
+
+        index.update(1, "old words stay", "new words stay here", 100);
+        assertSearch(index, "old", new int[0]);
+        assertSearch(index, "new", new int[] { 1 });
+        assertSearch(index, "words", new int[] { 2, 1 });
+        assertSearch(index, "\"stay here\"", new int[] { 1 });
+        assertSearch(index, "\"words stay\"", new int[] { 1 });
+        Assert.assertEquals(5, index.termCount()); // new, words, stay, here and elsewhere; old was pruned
+    }
+
+    /**
+     * Matches come back newest first, ties by message_id ascending, and a cursor inside a run of equal times resumes
+     * after its id within that run
+     */
+    @Test
+    public void pagesResumeAtTimestampBoundaries() {
+        MessageTextIndex index = new MessageTextIndex();
+        for (int id = 1; id <= 6; id++)
+            index.add(id, "term", id <= 3 ? 100 : 200); // Two runs of three
+
+        MessageTextIndex.Query query = MessageTextIndex.Query.parse("term");
+        assertPage(index, query, Long.MAX_VALUE, Integer.MIN_VALUE, 4, new int[] { 4, 5, 6, 1 });
+        assertPage(index, query, 200, 4, 2, new int[] { 5, 6 }); // Inside the newer run
+        assertPage(index, query, 200, 6, 2, new int[] { 1, 2 }); // At the end of the newer run
+        assertPage(index, query, 100, 3, 2, new int[0]); // After the oldest
+        assertPage(index, query, Long.MAX_VALUE, Integer.MIN_VALUE, 0, new int[0]);
+    }
+
+    /**
+     * Paging one match at a time visits every message once when the ids cross the varint byte boundaries and the
+     * initial size of the time array, and the bulk loader builds the same index as adding one at a time
+     */
+    @Test
+    public void pagingAcrossGrowthVisitsEveryMessageOnce() {
+        int[] ids = { 1, 127, 128, 129, 1023, 1024, 1025, 16383, 16384, 70000 };
+        MessageTextIndex added = new MessageTextIndex();
+        MessageTextIndex loaded = new MessageTextIndex();
+        MessageTextIndex.Loader loader = loaded.loader(2);
+        for (int id : ids) {
+            added.add(id, "common word" + (id % 2), id / 4); // Some share a time
+            loader.add(id, "common word" + (id % 2), id / 4);
+        }
+        loader.finish();
+
+        for (MessageTextIndex index : new MessageTextIndex[] { added, loaded }) {
+            MessageTextIndex.Query query = MessageTextIndex.Query.parse("common");
+            ArrayList<Integer> seen = new ArrayList<>();
+            int[] page = new int[1];
+            long[] times = new long[1];
+            long afterTime = Long.MAX_VALUE;
+            int afterID = Integer.MIN_VALUE;
+            while (index.search(query, afterTime, afterID, page, times) == 1) {
+                seen.add(page[0]);
+                afterTime = times[0];
+                afterID = page[0];
+            }
+
+            Assert.assertEquals(ids.length, seen.size());
+            Assert.assertEquals(Integer.valueOf(70000), seen.get(0));
+            Assert.assertEquals(Integer.valueOf(1), seen.get(ids.length - 1));
+            Assert.assertEquals(3, index.termCount());
+        }
+    }
+
+    /**
+     * Paging through matches spread over many blocks, with times that mostly but not always grow with the id, after
+     * bulk loading, out-of-order adds, updates and removes, gives every match once and in timeline order
+     */
+    @Test
+    public void pagingThroughBlocksMatchesFullRanking() {
+        Random random = new Random(42);
+        String[] texts = { "common red fox", "common fox red", "common blue", "red fox", "common" };
+        TreeMap<Integer, String> stored = new TreeMap<>();
+        TreeMap<Integer, Long> storedTimes = new TreeMap<>();
+        MessageTextIndex index = new MessageTextIndex();
+
+        MessageTextIndex.Loader loader = index.loader(2);
+        for (int id = 1; id <= 3000; id += 2) {
+            String text = texts[random.nextInt(texts.length)];
+            long time = id / 3 + (random.nextInt(10) == 0 ? random.nextInt(2000) - 1000 : 0);
+            loader.add(id, text, time);
+            stored.put(id, text);
+            storedTimes.put(id, time);
+        }
+        loader.finish();
+
+        // The even ids arrive late, below the ids already indexed
+        for (int id = 2; id <= 3000; id += 2) {
+            String text = texts[random.nextInt(texts.length)];
+            long time = id / 3;
+            index.add(id, text, time);
+            stored.put(id, text);
+            storedTimes.put(id, time);
+        }
+        for (int i = 0; i < 300; i++) {
+            int id = 1 + random.nextInt(3000);
+            if (!stored.containsKey(id))
+                continue;
+
+            if (random.nextBoolean()) {
+                index.remove(id, stored.remove(id));
+                storedTimes.remove(id);
+            } else {
+                String text = texts[random.nextInt(texts.length)];
+                index.update(id, stored.put(id, text), text, storedTimes.get(id));
+            }
+        }
+
+        for (String text : new String[] { "common", "\"red fox\"", "common red", "blue" }) {
+            MessageTextIndex.Query query = MessageTextIndex.Query.parse(text);
+            List<Integer> expected = new ArrayList<>();
+            for (Map.Entry<Integer, String> message : stored.entrySet()) {
+                if (query.matches(message.getValue()))
+                    expected.add(message.getKey());
+            }
+            expected.sort(Comparator.comparing((Integer id) -> -storedTimes.get(id)).thenComparing(id -> id));
+
+            List<Integer> seen = new ArrayList<>();
+            int[] page = new int[7];
+            long[] times = new long[7];
+            long afterTime = Long.MAX_VALUE;
+            int afterID = Integer.MIN_VALUE;
+            int read;
+            while ((read = index.search(query, afterTime, afterID, page, times)) > 0) {
+                for (int i = 0; i < read; i++)
+                    seen.add(page[i]);
+                afterTime = times[read - 1];
+                afterID = page[read - 1];
+            }
+
+            Assert.assertEquals(text, expected, seen);
+        }
+    }
+
+    /**
+     * Writers that add and remove messages of the same terms while readers search leave exactly the messages that
+     * were not removed, and no term is lost to a prune that raced with an add
+     */
+    @Test
+    public void concurrentWritesPublishConsistentViews() throws InterruptedException {
+        MessageTextIndex index = new MessageTextIndex();
+        int writers = 4;
+        int perWriter = 4000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<String> failure = new AtomicReference<>();
+        MessageTextIndex.Query query = MessageTextIndex.Query.parse("shared");
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perWriter; i++) {
+                    int id = writer * perWriter + i + 1;
+                    index.add(id, "shared churn", id % 101);
+                    if (i % 2 == 1) {
+                        index.remove(id, "shared churn"); // Often leaving churn empty, and pruned, for a moment
+                        index.remove(id - 1, "shared churn");
+                        index.add(id - 1, "shared kept", (id - 1) % 101);
+                    }
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            await(start);
+            int[] ids = new int[128];
+            long[] times = new long[128];
+            for (int round = 0; round < 2000 && failure.get() == null; round++) {
+                int read = index.search(query, Long.MAX_VALUE, Integer.MIN_VALUE, ids, times);
+                for (int i = 1; i < read; i++) {
+                    boolean ordered = times[i - 1] > times[i] || (times[i - 1] == times[i] && ids[i - 1] < ids[i]);
+                    if (!ordered)
+                        failure.set("Out of order at " + i + ": " + ids[i - 1] + ", " + ids[i]);
+                }
+            }
+        }));
+
+        for (Thread thread : threads)
+            thread.start();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        Assert.assertNull(failure.get());
+        int kept = writers * perWriter / 2;
+        Assert.assertEquals(kept, index.documentCount());
+        Assert.assertEquals(kept, count(index, "shared"));
+        Assert.assertEquals(kept, count(index, "kept"));
+        Assert.assertEquals(0, count(index, "churn"));
+        Assert.assertEquals(2, index.termCount()); // churn was pruned
+    }
+
+    private static int count(MessageTextIndex index, String query) {
+        int[] ids = new int[100000];
+        return index.search(MessageTextIndex.Query.parse(query), Long.MAX_VALUE, Integer.MIN_VALUE, ids, new long[ids.length]);
+    }
+
+    private static void assertSearch(MessageTextIndex index, String query, int[] expected) {
+        assertPage(index, MessageTextIndex.Query.parse(query), Long.MAX_VALUE, Integer.MIN_VALUE, 10, expected);
+    }
+
+    private static void assertPage(MessageTextIndex index, MessageTextIndex.Query query, long afterTime, int afterID,
+            int pageSize, int[] expected) {
+        int[] ids = new int[pageSize];
+        long[] times = new long[pageSize];
+        int read = index.search(query, afterTime, afterID, ids, times);
+
+        int[] actual = new int[read];
+        System.arraycopy(ids, 0, actual, 0, read);
+        Assert.assertArrayEquals(expected, actual);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
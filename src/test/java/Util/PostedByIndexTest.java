@@ -0,0 +1,183 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PostedByIndexTest {
+    /**
+     * Messages come back newest first, ties by message_id ascending, whatever order they were added in
+     */
+    @Test
+    public void pageIsInTimelineOrder() {
+        PostedByIndex index = new PostedByIndex(4);
+        index.add(1, 5, 200);
+        index.add(1, 2, 100);
+        index.add(1, 9, 200);
+        index.add(1, 3, 300);
+        index.add(1, 7, 200);
+
+        assertPage(index, 1, Long.MAX_VALUE, Integer.MIN_VALUE, 10, new int[] { 3, 5, 7, 9, 2 });
+        Assert.assertEquals(5, index.count(1));
+        Assert.assertEquals(0, index.count(2));
+    }
+
+    /**
+     * Adding a message twice keeps one copy; removing it, or one that is not there, leaves the rest in order
+     */
+    @Test
+    public void addIsIdempotentAndRemoveKeepsOrder() {
+        PostedByIndex index = new PostedByIndex(4);
+        index.add(1, 1, 100);
+        index.add(1, 2, 200);
+        index.add(1, 2, 200);
+        index.add(1, 3, 300);
+        Assert.assertEquals(3, index.count(1));
+
+        index.remove(1, 2, 200);
+        index.remove(1, 2, 200);
+        index.remove(1, 4, 400);
+        index.remove(7, 1, 100); // An account without a slot
+        index.remove(1000, 1, 100); // Past the account array
+        assertPage(index, 1, Long.MAX_VALUE, Integer.MIN_VALUE, 10, new int[] { 3, 1 });
+        Assert.assertEquals(2, index.size());
+    }
+
+    /**
+     * A message whose time changes is removed under its old key and added under the new one
+     */
+    @Test
+    public void updateMovesMessage() {
+        PostedByIndex index = new PostedByIndex(4);
+        index.add(1, 1, 100);
+        index.add(1, 2, 200);
+        index.add(1, 3, 300);
+
+        index.remove(1, 1, 100);
+        index.add(1, 1, 400);
+
+        assertPage(index, 1, Long.MAX_VALUE, Integer.MIN_VALUE, 10, new int[] { 1, 3, 2 });
+        Assert.assertEquals(3, index.count(1));
+    }
+
+    /**
+     * A cursor inside a run of equal times resumes after its id within that run, and a page that ends exactly at a
+     * run's end continues with the next older run
+     */
+    @Test
+    public void pagesResumeAtTimestampBoundaries() {
+        PostedByIndex index = new PostedByIndex(4);
+        for (int id = 1; id <= 6; id++)
+            index.add(1, id, id <= 3 ? 100 : 200); // Two runs of three
+
+        assertPage(index, 1, 200, 4, 2, new int[] { 5, 6 }); // Inside the newer run
+        assertPage(index, 1, 200, 6, 2, new int[] { 1, 2 }); // At the end of the newer run
+        assertPage(index, 1, 200, 5, 3, new int[] { 6, 1, 2 }); // Across the two
+        assertPage(index, 1, 100, 3, 3, new int[0]); // After the oldest
+        assertPage(index, 1, 150, Integer.MIN_VALUE, 10, new int[] { 1, 2, 3 }); // A time between the runs
+    }
+
+    /**
+     * Paging through an account one entry at a time visits every message once, across the capacity doublings of its
+     * arrays and the growth of the account array
+     */
+    @Test
+    public void pagingAcrossGrowthVisitsEveryMessageOnce() {
+        PostedByIndex index = new PostedByIndex(1);
+        int accountID = 37; // Past the initial account array
+        for (int id = 1; id <= 33; id++)
+            index.add(accountID, id, 1000 + id / 4); // Runs of four, so runs and capacities do not line up
+
+        ArrayList<Integer> seen = new ArrayList<>();
+        int[] ids = new int[1];
+        long[] times = new long[1];
+        long afterTime = Long.MAX_VALUE;
+        int afterID = Integer.MIN_VALUE;
+        while (index.page(accountID, afterTime, afterID, ids, times) == 1) {
+            seen.add(ids[0]);
+            afterTime = times[0];
+            afterID = ids[0];
+        }
+
+        Assert.assertEquals(33, seen.size());
+        Assert.assertEquals(33, index.count(accountID));
+        Assert.assertEquals(1, index.accountCount());
+        Assert.assertEquals(33, index.size());
+        Assert.assertEquals(Integer.valueOf(32), seen.get(0)); // Newest run, 32..33, lowest id first
+        Assert.assertEquals(Integer.valueOf(3), seen.get(32)); // Oldest run, 1..3, highest id last
+    }
+
+    /**
+     * Readers paging while writers add to the same account only ever see a sorted page without duplicates, and
+     * every write is in the index afterwards
+     */
+    @Test
+    public void concurrentWritesPublishConsistentViews() throws InterruptedException {
+        PostedByIndex index = new PostedByIndex(1);
+        int writers = 4;
+        int perWriter = 5000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perWriter; i++) {
+                    int id = writer * perWriter + i + 1;
+                    index.add(1, id, id % 97); // Lots of equal times, added out of order
+                    if (i % 10 == 0)
+                        index.add(2 + writer, id, id); // Growing the account array meanwhile
+                }
+            }));
+        }
+        Thread reader = new Thread(() -> {
+            await(start);
+            int[] ids = new int[256];
+            long[] times = new long[256];
+            while (failure.get() == null && index.count(1) < writers * perWriter) {
+                int read = index.page(1, Long.MAX_VALUE, Integer.MIN_VALUE, ids, times);
+                for (int i = 1; i < read; i++) {
+                    boolean ordered = times[i - 1] > times[i] || (times[i - 1] == times[i] && ids[i - 1] < ids[i]);
+                    if (!ordered)
+                        failure.set("Out of order at " + i + ": " + ids[i - 1] + ", " + ids[i]);
+                }
+            }
+        });
+        threads.add(reader);
+
+        for (Thread thread : threads)
+            thread.start();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        Assert.assertNull(failure.get());
+        Assert.assertEquals(writers * perWriter, index.count(1));
+        for (int w = 0; w < writers; w++)
+            Assert.assertEquals(perWriter / 10, index.count(2 + w));
+    }
+
+    private static void assertPage(PostedByIndex index, int postedBy, long afterTime, int afterID, int pageSize,
+            int[] expected) {
+        int[] ids = new int[pageSize];
+        long[] times = new long[pageSize];
+        int read = index.page(postedBy, afterTime, afterID, ids, times);
+
+        int[] actual = new int[read];
+        System.arraycopy(ids, 0, actual, 0, read);
+        Assert.assertArrayEquals(expected, actual);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package Util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    /**
+     * A full bucket lets a burst through and then asks the caller to wait
+     */
+    @Test
+    public void burstIsLetThroughThenLimited() {
+        RateLimiter limiter = new RateLimiter(1, 3, 10);
+
+        for (int i = 0; i < 3; i++)
+            Assert.assertEquals(0, limiter.tryAcquire(1));
+        Assert.assertTrue(limiter.tryAcquire(1) > 0);
+
+        RateLimiterStats stats = limiter.getStats();
+        Assert.assertEquals(3, stats.getAllowed());
+        Assert.assertEquals(1, stats.getLimited());
+    }
+
+    /**
+     * Several tokens are taken all or none, and released tokens can be taken again
+     */
+    @Test
+    public void tokensAreTakenAllOrNoneAndReleased() {
+        RateLimiter limiter = new RateLimiter(1, 3, 10);
+
+        Assert.assertEquals(0, limiter.tryAcquire(1, 2));
+        Assert.assertTrue(limiter.tryAcquire(1, 2) > 0);
+        Assert.assertEquals(0, limiter.tryAcquire(1, 1)); // The failed attempt took nothing
+
+        limiter.release(1, 2);
+        Assert.assertEquals(0, limiter.tryAcquire(1, 2));
+        Assert.assertTrue(limiter.tryAcquire(1) > 0);
+    }
+
+    /**
+     * More tokens than the burst need a full bucket, and leave it in debt for all of them, so the key waits as long as
+     * it would have for the same tokens one by one
+     */
+    @Test
+    public void tokensOverBurstAreOwed() {
+        RateLimiter limiter = new RateLimiter(1, 3, 10);
+
+        Assert.assertEquals(0, limiter.tryAcquire(1, 10));
+        long wait = limiter.tryAcquire(1);
+        Assert.assertTrue(wait > 7_000_000_000L); // 10 tokens at one a second, less the burst, plus this one
+        Assert.assertTrue(wait <= 8_000_000_000L);
+
+        // Giving them back clears the debt
+        limiter.release(1, 10);
+        Assert.assertEquals(0, limiter.tryAcquire(1));
+
+        Assert.assertEquals(0, limiter.tryAcquire(2));
+        Assert.assertTrue(limiter.tryAcquire(2, 10) > 0);
+    }
+
+    /**
+     * With every bucket in use, a new key is turned away rather than let through
+     */
+    @Test
+    public void newKeyIsRejectedWhenFull() {
+        RateLimiter limiter = new RateLimiter(1, 3, 2);
+        Assert.assertEquals(0, limiter.tryAcquire(1));
+        Assert.assertEquals(0, limiter.tryAcquire(2));
+
+        Assert.assertTrue(limiter.tryAcquire(3) > 0);
+
+        RateLimiterStats stats = limiter.getStats();
+        Assert.assertEquals(2, stats.getAccounts());
+        Assert.assertEquals(1, stats.getFull());
+        Assert.assertEquals(0, stats.getEvicted());
+    }
+
+    /**
+     * Buckets that have filled up again are dropped to make room, a sweep step at a time
+     */
+    @Test
+    public void fullBucketsAreSweptForRoom() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(1000, 1, RateLimiter.SWEEP_STEP * 2);
+        for (int key = 0; key < RateLimiter.SWEEP_STEP * 2; key++)
+            Assert.assertEquals(0, limiter.tryAcquire(key));
+
+        Thread.sleep(10); // Every bucket is full again after a millisecond
+
+        Assert.assertEquals(0, limiter.tryAcquire(-1));
+        RateLimiterStats stats = limiter.getStats();
+        Assert.assertEquals(RateLimiter.SWEEP_STEP, stats.getEvicted()); // One step, not the whole map
+        Assert.assertEquals(RateLimiter.SWEEP_STEP + 1, stats.getAccounts());
+        Assert.assertEquals(0, stats.getFull());
+    }
+}
@@ -0,0 +1,163 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatementCacheTest {
+    Connection physical;
+    StatementCache.Counters counters;
+
+    /**
+     * Before every test, open a connection to a private in-memory database
+     * @throws SQLException
+     */
+    @Before
+    public void setUp() throws SQLException {
+        physical = DriverManager.getConnection("jdbc:h2:mem:statementCacheTest", "sa", "sa");
+        counters = new StatementCache.Counters();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        physical.close();
+    }
+
+    /**
+     * Preparing the same SQL again after closing it hands back the same statement
+     */
+    @Test
+    public void closedStatementIsReused() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 4, counters);
+
+        PreparedStatement first = cache.prepare("SELECT ?", Statement.NO_GENERATED_KEYS, physical);
+        first.setInt(1, 7);
+        first.close();
+        PreparedStatement second = cache.prepare("SELECT ?", Statement.NO_GENERATED_KEYS, physical);
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, counters.hits.get());
+        Assert.assertEquals(1, counters.misses.get());
+
+        // The parameters of the earlier user are cleared
+        try {
+            second.executeQuery();
+            Assert.fail("A parameter of the earlier user was kept");
+        } catch (SQLException e) {
+        }
+        second.close();
+    }
+
+    /**
+     * The same SQL with and without generated keys are separate statements
+     */
+    @Test
+    public void generatedKeysAreKeyedSeparately() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 4, counters);
+
+        PreparedStatement plain = cache.prepare("SELECT 1", Statement.NO_GENERATED_KEYS, physical);
+        plain.close();
+        PreparedStatement keyed = cache.prepare("SELECT 1", Statement.RETURN_GENERATED_KEYS, physical);
+        keyed.close();
+
+        Assert.assertNotSame(plain, keyed);
+        Assert.assertEquals(2, counters.misses.get());
+    }
+
+    /**
+     * SQL that is already in use is prepared again rather than shared, and the second copy is not cached
+     */
+    @Test
+    public void statementInUseIsNotShared() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 4, counters);
+
+        PreparedStatement outer = cache.prepare("SELECT 1", Statement.NO_GENERATED_KEYS, physical);
+        PreparedStatement inner = cache.prepare("SELECT 1", Statement.NO_GENERATED_KEYS, physical);
+        Assert.assertNotSame(outer, inner);
+        inner.close();
+        outer.close();
+
+        Assert.assertSame(outer, cache.prepare("SELECT 1", Statement.NO_GENERATED_KEYS, physical));
+        Assert.assertEquals(2, counters.misses.get());
+        Assert.assertEquals(1, counters.hits.get());
+    }
+
+    /**
+     * Past the maximum size the least recently used statement is closed
+     */
+    @Test
+    public void leastRecentlyUsedIsEvicted() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 2, counters);
+
+        PreparedStatement a = cache.prepare("SELECT 'a'", Statement.NO_GENERATED_KEYS, physical);
+        a.close();
+        PreparedStatement b = cache.prepare("SELECT 'b'", Statement.NO_GENERATED_KEYS, physical);
+        b.close();
+        cache.prepare("SELECT 'a'", Statement.NO_GENERATED_KEYS, physical).close(); // b is now the least recent
+        cache.prepare("SELECT 'c'", Statement.NO_GENERATED_KEYS, physical).close();
+
+        Assert.assertEquals(1, counters.evictions.get());
+        Assert.assertSame(a, cache.prepare("SELECT 'a'", Statement.NO_GENERATED_KEYS, physical));
+        Assert.assertNotSame(b, cache.prepare("SELECT 'b'", Statement.NO_GENERATED_KEYS, physical));
+    }
+
+    /**
+     * A statement evicted while in use stays usable until its user closes it
+     */
+    @Test
+    public void statementEvictedInUseStaysOpen() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 1, counters);
+
+        PreparedStatement a = cache.prepare("SELECT 'a'", Statement.NO_GENERATED_KEYS, physical);
+        cache.prepare("SELECT 'b'", Statement.NO_GENERATED_KEYS, physical).close(); // Evicts a
+
+        try (ResultSet result = a.executeQuery()) {
+            Assert.assertTrue(result.next());
+            Assert.assertEquals("a", result.getString(1));
+        }
+        a.close();
+        Assert.assertTrue(a.isClosed());
+        Assert.assertEquals(1, counters.evictions.get());
+    }
+
+    /**
+     * A size of 0 prepares every statement anew
+     */
+    @Test
+    public void zeroSizeDisablesCaching() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 0, counters);
+
+        PreparedStatement first = cache.prepare("SELECT 1", Statement.NO_GENERATED_KEYS, physical);
+        first.close();
+        PreparedStatement second = cache.prepare("SELECT 1", Statement.NO_GENERATED_KEYS, physical);
+        second.close();
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(0, counters.hits.get());
+    }
+
+    /**
+     * The statement answers getConnection() with the connection passed as its owner
+     */
+    @Test
+    public void statementReportsItsOwner() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 4, counters);
+        Connection owner = DriverManager.getConnection("jdbc:h2:mem:statementCacheTest", "sa", "sa");
+
+        try {
+            PreparedStatement statement = cache.prepare("SELECT 1", Statement.NO_GENERATED_KEYS, owner);
+            Assert.assertSame(owner, statement.getConnection());
+            statement.close();
+        } finally {
+            owner.close();
+        }
+    }
+}
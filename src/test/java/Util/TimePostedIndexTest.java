@@ -0,0 +1,190 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimePostedIndexTest {
+    /**
+     * Messages come back newest first, ties by message_id ascending, whatever order they were added in; adding one
+     * twice keeps one copy
+     */
+    @Test
+    public void pageIsInTimelineOrder() {
+        TimePostedIndex index = new TimePostedIndex();
+        index.add(5, 200);
+        index.add(2, 100);
+        index.add(9, 200);
+        index.add(3, 300);
+        index.add(7, 200);
+        index.add(7, 200);
+
+        assertPage(index, Long.MAX_VALUE, Integer.MIN_VALUE, 10, new int[] { 3, 5, 7, 9, 2 });
+        Assert.assertEquals(5, index.size());
+    }
+
+    /**
+     * Removing a message leaves the rest of its bucket in order; removing the last one drops the bucket, and a later
+     * add at that time starts a new one
+     */
+    @Test
+    public void removeEmptiesAndDropsBucket() {
+        TimePostedIndex index = new TimePostedIndex();
+        index.add(1, 100);
+        index.add(2, 100);
+        index.add(3, 200);
+        long withBucket = index.estimateBytes();
+
+        index.remove(1, 100);
+        index.remove(1, 100);
+        index.remove(4, 100); // Not there
+        index.remove(3, 999); // Not at that time
+        assertPage(index, Long.MAX_VALUE, Integer.MIN_VALUE, 10, new int[] { 3, 2 });
+
+        index.remove(3, 200);
+        Assert.assertTrue(index.estimateBytes() < withBucket);
+        assertPage(index, Long.MAX_VALUE, Integer.MIN_VALUE, 10, new int[] { 2 });
+
+        index.add(3, 200);
+        assertPage(index, Long.MAX_VALUE, Integer.MIN_VALUE, 10, new int[] { 3, 2 });
+    }
+
+    /**
+     * A message whose time changes is removed from its old bucket and added to the new one
+     */
+    @Test
+    public void updateMovesMessage() {
+        TimePostedIndex index = new TimePostedIndex();
+        index.add(1, 100);
+        index.add(2, 200);
+
+        index.remove(1, 100);
+        index.add(1, 300);
+
+        assertPage(index, Long.MAX_VALUE, Integer.MIN_VALUE, 10, new int[] { 1, 2 });
+        Assert.assertEquals(2, index.size());
+    }
+
+    /**
+     * A cursor resumes after its id inside its bucket, continues with the next older bucket at the end of one, and
+     * works for a time or an id the index does not hold
+     */
+    @Test
+    public void pagesResumeAtBucketBoundaries() {
+        TimePostedIndex index = new TimePostedIndex();
+        for (int id = 1; id <= 6; id++)
+            index.add(id, id <= 3 ? 100 : 200); // Two buckets of three
+
+        assertPage(index, 200, 4, 2, new int[] { 5, 6 }); // Inside the newer bucket
+        assertPage(index, 200, 6, 2, new int[] { 1, 2 }); // At the end of the newer bucket
+        assertPage(index, 200, 5, 3, new int[] { 6, 1, 2 }); // Across the two
+        assertPage(index, 200, 0, 1, new int[] { 4 }); // An id before the bucket's first
+        assertPage(index, 150, Integer.MIN_VALUE, 10, new int[] { 1, 2, 3 }); // A time between the buckets
+        assertPage(index, 100, 3, 3, new int[0]); // After the oldest
+    }
+
+    /**
+     * Paging one entry at a time visits every message once across bucket capacity doublings
+     */
+    @Test
+    public void pagingAcrossGrowthVisitsEveryMessageOnce() {
+        TimePostedIndex index = new TimePostedIndex();
+        for (int id = 33; id >= 1; id--)
+            index.add(id, 1000 + id / 9); // Added newest first, buckets of up to nine
+
+        ArrayList<Integer> seen = new ArrayList<>();
+        int[] ids = new int[1];
+        long[] times = new long[1];
+        long afterTime = Long.MAX_VALUE;
+        int afterID = Integer.MIN_VALUE;
+        while (index.page(afterTime, afterID, ids, times) == 1) {
+            seen.add(ids[0]);
+            afterTime = times[0];
+            afterID = ids[0];
+        }
+
+        Assert.assertEquals(33, seen.size());
+        Assert.assertEquals(Integer.valueOf(27), seen.get(0)); // Newest bucket, 27..33, lowest id first
+        Assert.assertEquals(Integer.valueOf(8), seen.get(32)); // Oldest bucket, 1..8, highest id last
+    }
+
+    /**
+     * Writers that add to and empty the same buckets while a reader pages never lose an add to a bucket that was
+     * being dropped, and the reader only ever sees sorted pages
+     */
+    @Test
+    public void concurrentWritesPublishConsistentViews() throws InterruptedException {
+        TimePostedIndex index = new TimePostedIndex();
+        int writers = 4;
+        int perWriter = 5000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicBoolean done = new AtomicBoolean();
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perWriter; i++) {
+                    int id = writer * perWriter + i + 1;
+                    index.add(id, id % 7); // Few buckets, shared by every writer
+                    if (i % 2 == 1)
+                        index.remove(id, id % 7); // Often emptying a bucket for a moment
+                }
+            }));
+        }
+        Thread reader = new Thread(() -> {
+            await(start);
+            int[] ids = new int[512];
+            long[] times = new long[512];
+            while (!done.get() && failure.get() == null) {
+                int read = index.page(Long.MAX_VALUE, Integer.MIN_VALUE, ids, times);
+                for (int i = 1; i < read; i++) {
+                    boolean ordered = times[i - 1] > times[i] || (times[i - 1] == times[i] && ids[i - 1] < ids[i]);
+                    if (!ordered)
+                        failure.set("Out of order at " + i + ": " + ids[i - 1] + ", " + ids[i]);
+                }
+            }
+        });
+
+        for (Thread thread : threads)
+            thread.start();
+        reader.start();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        done.set(true);
+        reader.join();
+
+        Assert.assertNull(failure.get());
+        Assert.assertEquals(writers * perWriter / 2, index.size());
+        int[] ids = new int[writers * perWriter];
+        int read = index.page(Long.MAX_VALUE, Integer.MIN_VALUE, ids, new long[ids.length]);
+        Assert.assertEquals(writers * perWriter / 2, read);
+        for (int i = 0; i < read; i++)
+            Assert.assertEquals(0, (ids[i] - 1) % perWriter % 2); // Only the ids that were never removed
+    }
+
+    private static void assertPage(TimePostedIndex index, long afterTime, int afterID, int pageSize, int[] expected) {
+        int[] ids = new int[pageSize];
+        long[] times = new long[pageSize];
+        int read = index.page(afterTime, afterID, ids, times);
+
+        int[] actual = new int[read];
+        System.arraycopy(ids, 0, actual, 0, read);
+        Assert.assertArrayEquals(expected, actual);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
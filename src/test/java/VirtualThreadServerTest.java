@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+import io.javalin.util.ConcurrencyUtil;
+
+public class VirtualThreadServerTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+    boolean javalinLoom;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app with server.virtualThreads set and a single
+     * request permit. On a JDK without virtual threads the server falls back to platform threads, but the opt-in path
+     * is the same.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        System.setProperty("server.virtualThreads", "true");
+        System.setProperty("server.virtualThreads.maxActiveRequests", "1");
+        javalinLoom = ConcurrencyUtil.INSTANCE.getUseLoom();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("server.virtualThreads");
+        System.clearProperty("server.virtualThreads.maxActiveRequests");
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/1 more times than there are request permits
+     *
+     * Expected Response:
+     *  Status Code: 200 every time, as each request gives its permit back
+     *  Response Body: JSON represenation of message 1
+     */
+    @Test
+    public void requestsAreServedOnVirtualThreadServer() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(200, response.statusCode());
+
+            Message expectedResult = new Message(1, 1, "test message 1", 1669947792);
+            Assert.assertEquals(expectedResult, objectMapper.readValue(response.body(), Message.class));
+        }
+    }
+
+    /**
+     * Javalin's Loom mode is switched off only while the server runs, and is as it was for the apps started after it
+     */
+    @Test
+    public void loomModeIsRestoredWhenServerStops() {
+        Assert.assertFalse(ConcurrencyUtil.INSTANCE.getUseLoom());
+
+        app.stop();
+        Assert.assertEquals(javalinLoom, ConcurrencyUtil.INSTANCE.getUseLoom());
+    }
+}
@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.javalin.Javalin;
+
+public class WriteRateLimitTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app with writes limited to one a second per
+     * account and bursts of three.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        System.setProperty("messages.rateLimit.perSecond", "1");
+        System.setProperty("messages.rateLimit.burst", "3");
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("messages.rateLimit.perSecond");
+        System.clearProperty("messages.rateLimit.burst");
+    }
+
+    /**
+     * Sending http requests to POST localhost:8080/messages as account 1 until one is turned away
+     *
+     * Expected Response:
+     *  Status Code: 200 for the first three, then 429 with a Retry-After header
+     *  A POST as account 2 (does not exist) is still answered with 400, and no bucket is made for it
+     */
+    @Test
+    public void createMessageOverRateIsLimited() throws IOException, InterruptedException {
+        for (int i = 0; i < 3; i++)
+            Assert.assertEquals(200, send(createMessage(1)).statusCode());
+
+        HttpResponse<String> limited = sendUntilLimited(createMessage(1));
+        Assert.assertEquals(429, limited.statusCode());
+        Assert.assertTrue(limited.headers().firstValue("Retry-After").isPresent());
+        Assert.assertTrue(Long.parseLong(limited.headers().firstValue("Retry-After").get()) >= 1);
+
+        Assert.assertEquals(400, send(createMessage(2)).statusCode());
+        Assert.assertEquals(1, rateLimiterAccounts());
+    }
+
+    /**
+     * Sending http requests to POST localhost:8080/messages/batch with two messages from account 1, twice
+     *
+     * Expected Response:
+     *  Status Code: 200 for the first batch, which takes two of the three writes, then 429 with a Retry-After header
+     *  A single POST to /messages still gets the write left over
+     */
+    @Test
+    public void createMessagesOverRateIsLimitedByItems() throws IOException, InterruptedException {
+        Assert.assertEquals(200, send(createMessages(1, 2)).statusCode());
+
+        HttpResponse<String> limited = send(createMessages(1, 2));
+        Assert.assertEquals(429, limited.statusCode());
+        Assert.assertTrue(limited.headers().firstValue("Retry-After").isPresent());
+
+        Assert.assertEquals(200, send(createMessage(1)).statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with ten messages from account 1, more than the
+     * burst, then one to POST localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200 for the batch, then 429 with a Retry-After of at least seven seconds: the batch is paid for at
+     *  one write a second like any other writes
+     */
+    @Test
+    public void createMessagesOverBurstIsOwed() throws IOException, InterruptedException {
+        Assert.assertEquals(200, send(createMessages(1, 10)).statusCode());
+
+        HttpResponse<String> limited = send(createMessage(1));
+        Assert.assertEquals(429, limited.statusCode());
+        Assert.assertTrue(Long.parseLong(limited.headers().firstValue("Retry-After").get()) >= 7);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with messages from account 2 (does not exist)
+     *
+     * Expected Response:
+     *  Status Code: 200, with every item turned down, and no bucket is made for account 2
+     */
+    @Test
+    public void createMessagesFromMissingAccountIsNotCharged() throws IOException, InterruptedException {
+        Assert.assertEquals(200, send(createMessages(2, 5)).statusCode());
+        Assert.assertEquals(0, rateLimiterAccounts());
+    }
+
+    /**
+     * Sending http requests to PATCH localhost:8080/messages/1 (owned by account 1) until one is turned away
+     *
+     * Expected Response:
+     *  Status Code: 200 for the first three, then 429 with a Retry-After header
+     *  A PATCH of message 100 (does not exist) is still answered with 400
+     */
+    @Test
+    public void updateMessageOverRateIsLimited() throws IOException, InterruptedException {
+        for (int i = 0; i < 3; i++)
+            Assert.assertEquals(200, send(updateMessage(1)).statusCode());
+
+        HttpResponse<String> limited = sendUntilLimited(updateMessage(1));
+        Assert.assertEquals(429, limited.statusCode());
+        Assert.assertTrue(limited.headers().firstValue("Retry-After").isPresent());
+
+        Assert.assertEquals(400, send(updateMessage(100)).statusCode());
+    }
+
+    /**
+     * Sends the request until it is answered with anything but 200, or 20 times; at one write a second the bucket
+     * runs dry long before that
+     */
+    private HttpResponse<String> sendUntilLimited(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = null;
+        for (int i = 0; i < 20; i++) {
+            response = send(request);
+            if (response.statusCode() != 200)
+                break;
+        }
+
+        return response;
+    }
+
+    /**
+     * @return the number of accounts with a bucket, from GET /metrics
+     */
+    private int rateLimiterAccounts() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        return objectMapper.readTree(send(request).body()).get("rateLimiter").get("accounts").asInt();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest createMessage(int postedBy) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":" + postedBy
+                        + ", \"message_text\": \"hello message\", \"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private HttpRequest createMessages(int postedBy, int count) {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                body.append(',');
+            body.append("{\"posted_by\":").append(postedBy)
+                    .append(", \"message_text\": \"batch message ").append(i)
+                    .append("\", \"time_posted_epoch\": 1669947792}");
+        }
+
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(body.append(']').toString()))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private HttpRequest updateMessage(int messageID) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageID))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+}